@@ -0,0 +1,214 @@
+package com.edumentic.classbuilder;
+
+import com.edumentic.classbuilder.io.AllocationWriter;
+import com.edumentic.classbuilder.io.Datafile;
+import com.edumentic.classbuilder.io.DatafileParseException;
+import com.edumentic.classbuilder.io.StdInMonitor;
+import com.edumentic.classbuilder.io.StringReadConsumer;
+import com.edumentic.classbuilder.io.WorkbookReader;
+import com.edumentic.classbuilder.solution.ClassBuilderSolution;
+import com.edumentic.classbuilder.solution.ConstraintSnapshot;
+import com.edumentic.classbuilder.solution.FeasibilityCheck;
+import com.edumentic.classbuilder.solution.ScoreCalculatorType;
+import com.edumentic.classbuilder.solution.SolverConfigs;
+import com.edumentic.classbuilder.solution.SolverProfile;
+import org.optaplanner.core.api.solver.Solver;
+import org.optaplanner.core.api.solver.SolverFactory;
+import org.optaplanner.core.api.solver.event.BestSolutionChangedEvent;
+import org.optaplanner.core.config.solver.SolverConfig;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Solves a workbook without a user interface, for overnight runs on a machine with no display.
+ *
+ * <p>
+ *     Nothing here touches JavaFX, so no JavaFX class is ever loaded. Run it from the class path:
+ * </p>
+ * <pre>
+ * java -cp &lt;class path&gt; com.edumentic.classbuilder.ClassBuilderBatch school.xlsx --profile overnight --seconds 3600
+ * </pre>
+ * <p>
+ *     Progress goes to standard output a line at a time, each starting with a keyword so a script can follow it:
+ *     {@code best <millis> <score>} for each new best solution, and {@code done <millis> <score> <result file>}
+ *     at the end. Logging goes to standard error. While solving, these commands are read from standard input, one
+ *     per line:
+ *     <ul>
+ *         <li>{@code stop}: stop solving, then write the result as usual;</li>
+ *         <li>{@code best}: print the best score so far and write it to the result file now;</li>
+ *         <li>{@code time <seconds>}: change the time budget, counted from the start, or {@code time none} to
+ *             solve until the profile's other limits or {@code stop};</li>
+ *         <li>{@code help}: list the commands.</li>
+ *     </ul>
+ *     The result is a CSV file of each student's class and teacher, by default next to the workbook.
+ * </p>
+ */
+public class ClassBuilderBatch implements StringReadConsumer {
+
+    private static final String USAGE = """
+            Usage: ClassBuilderBatch <workbook.xlsx> [options]
+              --profile <id>             solver profile, built in or from the workbook's profiles file (default %s)
+              --seconds <n>              time budget, replacing the profile's time limit
+              --out <file.csv>           result file (default <workbook>-allocation.csv)
+              --move-threads <n>         NONE, AUTO or a number of move threads (default NONE)
+            """;
+
+    private static final String COMMANDS = "commands: stop | best | time <seconds> | time none | help";
+
+    private final PrintStream out;
+    private final File resultFile;
+    private final long startMillis = System.currentTimeMillis();
+
+    private volatile Solver<ClassBuilderSolution> solver;
+    private volatile ClassBuilderSolution bestSolution;
+    // Millis since the start at which to stop, or 0 for no time budget
+    private volatile long budgetMillis;
+
+    ClassBuilderBatch(PrintStream out, File resultFile, Long budgetSeconds) {
+        this.out = out;
+        this.resultFile = resultFile;
+        this.budgetMillis = budgetSeconds == null ? 0 : budgetSeconds * 1000;
+    }
+
+    public static void main(String[] args) {
+        HeadlessOptions.configureLogging();
+        System.exit(run(args));
+    }
+
+    /**
+     * @return the process exit code: 0 once a result is written, 1 if the workbook or result can't be processed,
+     * 2 for bad arguments
+     */
+    static int run(String[] args) {
+        HeadlessOptions options = new HeadlessOptions("workbook", USAGE);
+        if (!options.parse(args)) return 2;
+        File workbook = options.getInput();
+        SolverProfile profile = options.findProfile(workbook);
+        if (profile == null) return 2;
+        File resultFile = options.getOut() != null ? options.getOut()
+                : AllocationWriter.resultFileFor(workbook, workbook.getAbsoluteFile().getParentFile());
+
+        Datafile datafile;
+        try {
+            datafile = WorkbookReader.read(workbook, options.getRelationshipOptions());
+        } catch (DatafileParseException e) {
+            System.err.println(e.getSummary());
+            e.getProblems().forEach(System.err::println);
+            return 1;
+        }
+        Long seconds = options.getSeconds() != null ? options.getSeconds() : profile.getSecondsSpentLimit();
+        ClassBuilderBatch batch = new ClassBuilderBatch(System.out, resultFile, seconds);
+        return batch.solve(datafile, profile, options.getScoreCalculatorType(), options.getMoveThreadCount());
+    }
+
+    int solve(Datafile datafile, SolverProfile profile, ScoreCalculatorType scoreCalculatorType, String moveThreadCount) {
+        ConstraintSnapshot constraints = ConstraintSnapshot.current();
+        out.println("loaded " + datafile.getStudents().size() + " students " + datafile.getClasses().size() + " classes");
+        for (String problem : FeasibilityCheck.findProblems(datafile.getStudents(), datafile.getClasses(), constraints)) {
+            out.println("infeasible " + problem);
+        }
+
+        ClassBuilderSolution problem = ClassBuilderSolution.createUnassigned(
+                datafile.getStudents(), datafile.getClasses(), constraints);
+
+        // The time budget is kept here instead, so it can be changed while solving. A partitioned search still
+        // stops at half the budget it started with
+        long startBudgetMillis = budgetMillis;
+        SolverProfile budgetedProfile = profile
+                .withSecondsSpentLimit(startBudgetMillis == 0 ? null : startBudgetMillis / 1000)
+                .forProblem(problem);
+        SolverConfig solverConfig = SolverConfigs.create(scoreCalculatorType, moveThreadCount, budgetedProfile);
+        solverConfig.getTerminationConfig().setSecondsSpentLimit(null);
+        Solver<ClassBuilderSolution> currentSolver = SolverFactory.<ClassBuilderSolution>create(solverConfig).buildSolver();
+        currentSolver.addEventListener(this::onBestSolutionFound);
+        solver = currentSolver;
+
+        ScheduledExecutorService budget = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ClassBuilderBatch-budget");
+            thread.setDaemon(true);
+            return thread;
+        });
+        budget.scheduleWithFixedDelay(() -> {
+            long limit = budgetMillis;
+            if (limit > 0 && elapsedMillis() >= limit) {
+                currentSolver.terminateEarly();
+            }
+        }, 100, 100, TimeUnit.MILLISECONDS);
+        new StdInMonitor(this).start();
+        try {
+            bestSolution = currentSolver.solve(problem);
+        } finally {
+            budget.shutdownNow();
+        }
+
+        try {
+            writeResult(bestSolution);
+        } catch (IOException e) {
+            System.err.println("Could not write " + resultFile + ": " + e.getMessage());
+            return 1;
+        }
+        out.println("done " + elapsedMillis() + " " + bestSolution.getScore() + " " + resultFile);
+        return 0;
+    }
+
+    private void onBestSolutionFound(BestSolutionChangedEvent<ClassBuilderSolution> event) {
+        bestSolution = event.getNewBestSolution();
+        out.println("best " + elapsedMillis() + " " + bestSolution.getScore());
+    }
+
+    @Override
+    public void consumeStdInString(String data) {
+        String[] words = data.trim().split("\\s+");
+        switch (words[0]) {
+            case "" -> { }
+            case "stop" -> {
+                out.println("stopping");
+                Solver<ClassBuilderSolution> currentSolver = solver;
+                if (currentSolver != null) currentSolver.terminateEarly();
+            }
+            case "best" -> {
+                ClassBuilderSolution solution = bestSolution;
+                if (solution == null || !solution.getScore().isSolutionInitialized()) {
+                    out.println("error no complete solution yet");
+                    return;
+                }
+                try {
+                    writeResult(solution);
+                    out.println("best " + elapsedMillis() + " " + solution.getScore() + " " + resultFile);
+                } catch (IOException e) {
+                    out.println("error could not write " + resultFile + ": " + e.getMessage());
+                }
+            }
+            case "time" -> {
+                if (words.length != 2) {
+                    out.println("error " + COMMANDS);
+                } else if (words[1].equals("none")) {
+                    budgetMillis = 0;
+                    out.println("budget none");
+                } else {
+                    try {
+                        budgetMillis = Math.max(Long.parseLong(words[1]), 1) * 1000;
+                        out.println("budget " + budgetMillis / 1000);
+                    } catch (NumberFormatException e) {
+                        out.println("error not a number of seconds: " + words[1]);
+                    }
+                }
+            }
+            case "help" -> out.println(COMMANDS);
+            default -> out.println("error unknown command " + words[0] + "; " + COMMANDS);
+        }
+    }
+
+    private synchronized void writeResult(ClassBuilderSolution solution) throws IOException {
+        AllocationWriter.writeCsv(solution, resultFile);
+    }
+
+    private long elapsedMillis() {
+        return System.currentTimeMillis() - startMillis;
+    }
+}
@@ -0,0 +1,389 @@
+package com.edumentic.classbuilder;
+
+import com.edumentic.classbuilder.io.AllocationWriter;
+import com.edumentic.classbuilder.io.Datafile;
+import com.edumentic.classbuilder.io.DatafileParseException;
+import com.edumentic.classbuilder.io.RelationshipOptions;
+import com.edumentic.classbuilder.io.StdInMonitor;
+import com.edumentic.classbuilder.io.StringReadConsumer;
+import com.edumentic.classbuilder.io.WorkbookReader;
+import com.edumentic.classbuilder.solution.ClassBuilderSolution;
+import com.edumentic.classbuilder.solution.ConstraintSnapshot;
+import com.edumentic.classbuilder.solution.FeasibilityCheck;
+import com.edumentic.classbuilder.solution.SolverConfigs;
+import com.edumentic.classbuilder.solution.SolverProfile;
+import lombok.extern.slf4j.Slf4j;
+import org.optaplanner.core.api.solver.SolverFactory;
+import org.optaplanner.core.api.solver.SolverManager;
+import org.optaplanner.core.config.solver.SolverConfig;
+import org.optaplanner.core.config.solver.SolverManagerConfig;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Solves every workbook in a folder without a user interface, such as one per year level or campus.
+ *
+ * <p>
+ *     The workbooks are read in parallel, then queued on OptaPlanner's {@link SolverManager}, which solves as many at
+ *     once as the machine has room for and starts the next as each finishes. Each result is written as soon as its
+ *     solve ends, to {@code <workbook>-allocation.csv}. Like {@link ClassBuilderBatch}, run it from the class path:
+ * </p>
+ * <pre>
+ * java -cp &lt;class path&gt; com.edumentic.classbuilder.ClassBuilderQueue term3/ --profile quick --seconds 600
+ * </pre>
+ * <p>
+ *     Progress goes to standard output a line at a time, each starting with a keyword and the job, which is the
+ *     workbook's name without {@code .xlsx}: {@code loaded}, {@code infeasible}, {@code invalid} (one line for each
+ *     problem with a workbook, before it {@code failed}), {@code failed}, {@code solving},
+ *     {@code done <job> <millis> <score> <result file>} and {@code cancelled}. While solving, these commands are
+ *     read from standard input, one per line:
+ *     <ul>
+ *         <li>{@code status}: one {@code status <job> <state> <millis> <best score>} line per job;</li>
+ *         <li>{@code stop <job>|all}: cancel a job that hasn't started, or stop one that is solving and write its
+ *             result as usual;</li>
+ *         <li>{@code time <job>|all <seconds>}: change the time budget, counted from when the job started solving,
+ *             or {@code none} to solve until the profile's other limits or {@code stop};</li>
+ *         <li>{@code help}: list the commands.</li>
+ *     </ul>
+ * </p>
+ */
+@Slf4j
+public class ClassBuilderQueue implements StringReadConsumer {
+
+    private static final String USAGE = """
+            Usage: ClassBuilderQueue <folder> [options]
+              --profile <id>             solver profile, built in or from the folder's profiles file (default %s)
+              --seconds <n>              time budget for each workbook, replacing the profile's time limit
+              --out <folder>             folder for the result files (default the workbooks' folder)
+              --solvers <n>              workbooks solved at once, or AUTO for half the processors (default AUTO)
+              --move-threads <n>         NONE, AUTO or a number of move threads per solve (default NONE)
+            """;
+
+    private static final String COMMANDS = "commands: status | stop <job>|all | time <job>|all <seconds>|none | help";
+
+    enum JobState {
+        READING, QUEUED, SOLVING, DONE, CANCELLED, FAILED
+    }
+
+    /**
+     * One workbook's way through the queue. The state only changes while holding the job's lock, so a job can't
+     * be cancelled and started at the same time.
+     */
+    private static final class Job {
+        final long id;
+        final String name;
+        final File workbook;
+        final File resultFile;
+        final CompletableFuture<JobState> finished = new CompletableFuture<>();
+
+        JobState state = JobState.READING;
+        Datafile datafile;
+        long startMillis;
+        // Millis after starting at which to stop, or 0 for no time budget
+        volatile long budgetMillis;
+        volatile ClassBuilderSolution bestSolution;
+
+        Job(long id, File workbook, File resultFile, long budgetMillis) {
+            this.id = id;
+            this.name = workbook.getName().replaceFirst("\\.[^.]*$", "");
+            this.workbook = workbook;
+            this.resultFile = resultFile;
+            this.budgetMillis = budgetMillis;
+        }
+
+        synchronized long elapsedMillis() {
+            return startMillis == 0 ? 0 : System.currentTimeMillis() - startMillis;
+        }
+    }
+
+    private final PrintStream out;
+    private final Map<String, Job> jobs = new LinkedHashMap<>();
+    private final ConstraintSnapshot constraints = ConstraintSnapshot.current();
+    private final RelationshipOptions relationshipOptions;
+    private final SolverManager<ClassBuilderSolution, Long> solverManager;
+
+    ClassBuilderQueue(PrintStream out, SolverConfig solverConfig, String parallelSolverCount,
+                      RelationshipOptions relationshipOptions) {
+        this.out = out;
+        this.relationshipOptions = relationshipOptions;
+        this.solverManager = SolverManager.create(SolverFactory.create(solverConfig),
+                new SolverManagerConfig().withParallelSolverCount(parallelSolverCount));
+    }
+
+    public static void main(String[] args) {
+        HeadlessOptions.configureLogging();
+        System.exit(run(args));
+    }
+
+    /**
+     * @return the process exit code: 0 once every job is done or cancelled, 1 if any workbook or result couldn't be
+     * processed, 2 for bad arguments
+     */
+    static int run(String[] args) {
+        HeadlessOptions options = new HeadlessOptions("folder", USAGE)
+                .withOption("--solvers", SolverManagerConfig.PARALLEL_SOLVER_COUNT_AUTO);
+        if (!options.parse(args)) return 2;
+        File folder = options.getInput();
+        if (!folder.isDirectory()) {
+            options.printUsageError("Not a folder: " + folder);
+            return 2;
+        }
+
+        // Skips the lock files Excel leaves next to open workbooks
+        File[] workbooks = folder.listFiles(file -> file.isFile()
+                && file.getName().toLowerCase().endsWith(".xlsx") && !file.getName().startsWith("~$"));
+        if (workbooks == null || workbooks.length == 0) {
+            System.err.println("No workbooks in " + folder);
+            return 1;
+        }
+        Arrays.sort(workbooks, Comparator.comparing(File::getName));
+
+        SolverProfile profile = options.findProfile(workbooks[0]);
+        if (profile == null) return 2;
+        File resultFolder = options.getOut() != null ? options.getOut() : folder.getAbsoluteFile();
+        Long budgetSeconds = options.getSeconds() != null ? options.getSeconds() : profile.getSecondsSpentLimit();
+
+        // The time budgets are kept on each job instead, so they can differ and change while solving. A partitioned
+        // search still stops at half the budget the jobs start with, and every job shares one configuration, so a
+        // workbook with too few groups of related students is left to RelationshipPartitioner to solve as one part
+        SolverConfig solverConfig = SolverConfigs.create(options.getScoreCalculatorType(), options.getMoveThreadCount(),
+                profile.withSecondsSpentLimit(budgetSeconds));
+        solverConfig.getTerminationConfig().setSecondsSpentLimit(null);
+        ClassBuilderQueue queue;
+        try {
+            queue = new ClassBuilderQueue(System.out, solverConfig, options.getOption("--solvers"),
+                    options.getRelationshipOptions());
+        } catch (IllegalArgumentException e) {
+            options.printUsageError(e.getMessage());
+            return 2;
+        }
+        for (File workbook : workbooks) {
+            queue.add(workbook, AllocationWriter.resultFileFor(workbook, resultFolder),
+                    budgetSeconds == null ? 0 : budgetSeconds * 1000);
+        }
+        return queue.solveAll();
+    }
+
+    void add(File workbook, File resultFile, long budgetMillis) {
+        Job job = new Job(jobs.size(), workbook, resultFile, budgetMillis);
+        jobs.put(job.name, job);
+    }
+
+    int solveAll() {
+        ExecutorService readers = Executors.newFixedThreadPool(
+                Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), jobs.size())),
+                daemonThreads("ClassBuilderQueue-reader"));
+        ScheduledExecutorService budgets = Executors.newSingleThreadScheduledExecutor(daemonThreads("ClassBuilderQueue-budget"));
+        try {
+            for (Job job : jobs.values()) {
+                readers.execute(() -> read(job));
+            }
+            budgets.scheduleWithFixedDelay(this::enforceBudgets, 100, 100, TimeUnit.MILLISECONDS);
+            new StdInMonitor(this).start();
+
+            boolean allSucceeded = true;
+            for (Job job : jobs.values()) {
+                allSucceeded &= job.finished.join() != JobState.FAILED;
+            }
+            return allSucceeded ? 0 : 1;
+        } finally {
+            readers.shutdownNow();
+            budgets.shutdownNow();
+            solverManager.close();
+        }
+    }
+
+    private void read(Job job) {
+        Datafile datafile;
+        try {
+            datafile = WorkbookReader.read(job.workbook, relationshipOptions);
+        } catch (DatafileParseException e) {
+            for (String problem : e.getProblems()) {
+                out.println("invalid " + job.name + " " + problem);
+            }
+            fail(job, e.getSummary());
+            return;
+        }
+        synchronized (job) {
+            if (job.state != JobState.READING) return;
+            job.datafile = datafile;
+            job.state = JobState.QUEUED;
+        }
+        out.println("loaded " + job.name + " " + datafile.getStudents().size() + " students "
+                + datafile.getClasses().size() + " classes");
+        for (String problem : FeasibilityCheck.findProblems(datafile.getStudents(), datafile.getClasses(), constraints)) {
+            out.println("infeasible " + job.name + " " + problem);
+        }
+        // A job cancelled from here on is still handed to the solver manager, and given up on in start
+        solverManager.solveAndListen(job.id, id -> start(job),
+                solution -> job.bestSolution = solution,
+                solution -> finish(job, solution),
+                (id, throwable) -> fail(job, String.valueOf(throwable.getMessage())));
+    }
+
+    /**
+     * Called on the solver thread, once the solver manager has room for the job.
+     */
+    private ClassBuilderSolution start(Job job) {
+        Datafile datafile;
+        synchronized (job) {
+            if (job.state != JobState.QUEUED) {
+                // Cancelled in the moment between being picked up and getting here
+                throw new IllegalStateException("Job " + job.name + " was cancelled");
+            }
+            job.state = JobState.SOLVING;
+            job.startMillis = System.currentTimeMillis();
+            datafile = job.datafile;
+            job.datafile = null;
+        }
+        out.println("solving " + job.name);
+        return ClassBuilderSolution.createUnassigned(datafile.getStudents(), datafile.getClasses(), constraints);
+    }
+
+    private void finish(Job job, ClassBuilderSolution solution) {
+        job.bestSolution = solution;
+        try {
+            AllocationWriter.writeCsv(solution, job.resultFile);
+        } catch (IOException e) {
+            fail(job, "could not write " + job.resultFile + ": " + e.getMessage());
+            return;
+        }
+        synchronized (job) {
+            job.state = JobState.DONE;
+        }
+        out.println("done " + job.name + " " + job.elapsedMillis() + " " + solution.getScore() + " " + job.resultFile);
+        job.finished.complete(JobState.DONE);
+    }
+
+    private void fail(Job job, String message) {
+        synchronized (job) {
+            if (job.state == JobState.CANCELLED) {
+                job.finished.complete(JobState.CANCELLED);
+                return;
+            }
+            job.state = JobState.FAILED;
+        }
+        log.warn("Job {} failed: {}", job.name, message);
+        out.println("failed " + job.name + " " + message);
+        job.finished.complete(JobState.FAILED);
+    }
+
+    private void stop(Job job) {
+        synchronized (job) {
+            switch (job.state) {
+                case READING, QUEUED -> job.state = JobState.CANCELLED;
+                case SOLVING -> {
+                    // Ends up in finish, with the best solution so far
+                    solverManager.terminateEarly(job.id);
+                    return;
+                }
+                default -> {
+                    return;
+                }
+            }
+            job.datafile = null;
+        }
+        // Removes it from the queue if it was waiting there
+        solverManager.terminateEarly(job.id);
+        out.println("cancelled " + job.name);
+        job.finished.complete(JobState.CANCELLED);
+    }
+
+    private void enforceBudgets() {
+        for (Job job : jobs.values()) {
+            long limit = job.budgetMillis;
+            boolean solving;
+            synchronized (job) {
+                solving = job.state == JobState.SOLVING;
+            }
+            if (solving && limit > 0 && job.elapsedMillis() >= limit) {
+                solverManager.terminateEarly(job.id);
+            }
+        }
+    }
+
+    @Override
+    public void consumeStdInString(String data) {
+        String[] words = data.trim().split("\\s+");
+        switch (words[0]) {
+            case "" -> { }
+            case "status" -> {
+                for (Job job : jobs.values()) {
+                    JobState state;
+                    synchronized (job) {
+                        state = job.state;
+                    }
+                    ClassBuilderSolution solution = job.bestSolution;
+                    out.println("status " + job.name + " " + state + " " + job.elapsedMillis() + " "
+                            + (solution == null ? "-" : solution.getScore()));
+                }
+            }
+            case "stop" -> {
+                if (words.length != 2) {
+                    out.println("error " + COMMANDS);
+                    return;
+                }
+                for (Job job : select(words[1])) {
+                    stop(job);
+                }
+            }
+            case "time" -> {
+                if (words.length != 3) {
+                    out.println("error " + COMMANDS);
+                    return;
+                }
+                long budgetMillis;
+                if (words[2].equals("none")) {
+                    budgetMillis = 0;
+                } else {
+                    try {
+                        budgetMillis = Math.max(Long.parseLong(words[2]), 1) * 1000;
+                    } catch (NumberFormatException e) {
+                        out.println("error not a number of seconds: " + words[2]);
+                        return;
+                    }
+                }
+                for (Job job : select(words[1])) {
+                    job.budgetMillis = budgetMillis;
+                    out.println("budget " + job.name + " " + (budgetMillis == 0 ? "none" : budgetMillis / 1000));
+                }
+            }
+            case "help" -> out.println(COMMANDS);
+            default -> out.println("error unknown command " + words[0] + "; " + COMMANDS);
+        }
+    }
+
+    private List<Job> select(String name) {
+        if (name.equals("all")) {
+            return new ArrayList<>(jobs.values());
+        }
+        Job job = jobs.get(name);
+        if (job == null) {
+            out.println("error no job " + name);
+            return List.of();
+        }
+        return List.of(job);
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
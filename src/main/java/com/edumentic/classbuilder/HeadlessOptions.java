@@ -0,0 +1,162 @@
+package com.edumentic.classbuilder;
+
+import com.edumentic.classbuilder.io.RelationshipOptions;
+import com.edumentic.classbuilder.model.RelationshipType;
+import com.edumentic.classbuilder.solution.ClassBuilderConstraints;
+import com.edumentic.classbuilder.solution.ScoreCalculatorType;
+import com.edumentic.classbuilder.solution.SolverProfile;
+import com.edumentic.classbuilder.solution.SolverProfiles;
+import lombok.Getter;
+import org.optaplanner.core.config.solver.SolverConfig;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.LogManager;
+
+/**
+ * The command line of the headless runners, {@link ClassBuilderBatch} and {@link ClassBuilderQueue}: one file or
+ * folder to solve, the options they share, and any of their own added with {@link #withOption}.
+ */
+final class HeadlessOptions {
+
+    private static final String SHARED_USAGE = """
+              --calculator <type>        EASY, INCREMENTAL or CONSTRAINT_STREAMS (default INCREMENTAL)
+              --min-class-size <n>       (default %d)
+              --max-class-size <n>       (default %d)
+              --deduplicate <bool>       keep a student named twice in one relationship column once (default true)
+              --symmetric <types>        comma separated relationships that go both ways, such as
+                                         MUST_INCLUDE,CANNOT_BE_WITH (default NONE)
+            """;
+
+    private final String inputName;
+    private final String usage;
+    private final Map<String, String> ownOptions = new LinkedHashMap<>();
+    private final ClassBuilderConstraints constraints = ClassBuilderConstraints.getInstance();
+
+    @Getter
+    private File input;
+    private String profileId = SolverProfiles.DEFAULT_PROFILE_ID;
+    /** The time budget, replacing the profile's time limit, or {@code null} to keep it. */
+    @Getter
+    private Long seconds;
+    /** Where the results go, or {@code null} for the runner's default. */
+    @Getter
+    private File out;
+    @Getter
+    private String moveThreadCount = SolverConfig.MOVE_THREAD_COUNT_NONE;
+    @Getter
+    private ScoreCalculatorType scoreCalculatorType = ScoreCalculatorType.INCREMENTAL;
+    private boolean deduplicate = RelationshipOptions.DEFAULT.isDeduplicate();
+    private Set<RelationshipType> symmetric = RelationshipOptions.DEFAULT.getSymmetric();
+
+    /**
+     * @param inputName what the one argument that isn't an option is, such as {@code workbook}
+     * @param usage     the runner's own usage lines, with a {@code %s} for the default profile id; the shared
+     *                  options are listed after them
+     */
+    HeadlessOptions(String inputName, String usage) {
+        this.inputName = inputName;
+        this.usage = usage.formatted(SolverProfiles.DEFAULT_PROFILE_ID)
+                + SHARED_USAGE.formatted(constraints.getMinClassSize(), constraints.getMaxClassSize());
+    }
+
+    /**
+     * Reads the logging configuration the runners share, before anything logs.
+     */
+    static void configureLogging() {
+        try (InputStream inputStream = HeadlessOptions.class.getResourceAsStream("/logging.properties")) {
+            LogManager.getLogManager().readConfiguration(inputStream);
+        } catch (IOException e) {
+            System.err.println("Error loading logging configuration: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Adds an option only this runner has, such as {@code --solvers}, read back with {@link #getOption}.
+     *
+     * @param option the option, with its {@code --}
+     */
+    HeadlessOptions withOption(String option, String defaultValue) {
+        ownOptions.put(option, defaultValue);
+        return this;
+    }
+
+    /**
+     * @return the value given for one of the runner's own options, or its default
+     */
+    String getOption(String option) {
+        return ownOptions.get(option);
+    }
+
+    /**
+     * @return whether {@code args} were understood; if not, the problem and the usage have been printed
+     */
+    boolean parse(String[] args) {
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (!arg.startsWith("--")) {
+                    if (input != null) throw new IllegalArgumentException("More than one " + inputName + " given");
+                    input = new File(arg);
+                    continue;
+                }
+                if (i + 1 >= args.length) throw new IllegalArgumentException(arg + " needs a value");
+                String value = args[++i];
+                switch (arg) {
+                    case "--profile" -> profileId = value;
+                    case "--seconds" -> seconds = Long.valueOf(value);
+                    case "--out" -> out = new File(value);
+                    case "--move-threads" -> moveThreadCount = value;
+                    case "--calculator" -> scoreCalculatorType = ScoreCalculatorType.valueOf(value);
+                    case "--min-class-size" -> constraints.setMinClassSize(Integer.parseInt(value));
+                    case "--max-class-size" -> constraints.setMaxClassSize(Integer.parseInt(value));
+                    case "--deduplicate" -> {
+                        if (!value.equals("true") && !value.equals("false")) throw new IllegalArgumentException("--deduplicate is true or false");
+                        deduplicate = Boolean.parseBoolean(value);
+                    }
+                    case "--symmetric" -> symmetric = RelationshipOptions.parseTypes(value);
+                    default -> {
+                        if (!ownOptions.containsKey(arg)) throw new IllegalArgumentException("Unknown option " + arg);
+                        ownOptions.put(arg, value);
+                    }
+                }
+            }
+            if (input == null) throw new IllegalArgumentException("No " + inputName + " given");
+        } catch (IllegalArgumentException e) {
+            printUsageError(e.getMessage());
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Prints {@code message} and the usage to standard error, for arguments that only turn out to be wrong later.
+     */
+    void printUsageError(String message) {
+        System.err.println(message);
+        System.err.print(usage);
+    }
+
+    RelationshipOptions getRelationshipOptions() {
+        return new RelationshipOptions(deduplicate, symmetric);
+    }
+
+    /**
+     * @return the profile chosen with {@code --profile}, from the built in profiles and the profiles file next to
+     * {@code workbook}, or {@code null} once it has been reported missing
+     */
+    SolverProfile findProfile(File workbook) {
+        SolverProfile profile = SolverProfiles.loadFor(workbook).stream()
+                .filter(candidate -> candidate.getId().equals(profileId))
+                .findFirst()
+                .orElse(null);
+        if (profile == null) {
+            System.err.println("No solver profile with id " + profileId);
+        }
+        return profile;
+    }
+}
@@ -0,0 +1,59 @@
+package com.edumentic.classbuilder.io;
+
+import com.edumentic.classbuilder.model.StudentClass;
+import com.edumentic.classbuilder.solution.ClassBuilderSolution;
+import com.edumentic.classbuilder.solution.StudentClassAssignment;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Writes a solution as a CSV file of each student's class and teacher, for the headless runners.
+ */
+@Slf4j
+public final class AllocationWriter {
+
+    private AllocationWriter() {
+    }
+
+    /**
+     * @return the default result file for {@code workbook}, {@code <workbook>-allocation.csv} in {@code folder}
+     */
+    public static File resultFileFor(File workbook, File folder) {
+        String name = workbook.getName().replaceFirst("\\.[^.]*$", "");
+        return new File(folder, name + "-allocation.csv");
+    }
+
+    /**
+     * Writes to a temporary file first, so a reader never sees a half written result.
+     */
+    public static void writeCsv(ClassBuilderSolution solution, File resultFile) throws IOException {
+        Path target = resultFile.getAbsoluteFile().toPath();
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            writer.write("Student,Class,Teacher\n");
+            for (StudentClassAssignment assignment : solution.getAssignments()) {
+                StudentClass studentClass = assignment.getStudentClass();
+                writer.write(csv(assignment.getStudent().getName()) + ","
+                        + csv(studentClass == null ? "" : studentClass.getClassCode()) + ","
+                        + csv(studentClass == null ? "" : studentClass.getTeacher()) + "\n");
+            }
+        }
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log.info("Wrote {} with score {}", target, solution.getScore());
+    }
+
+    private static String csv(String value) {
+        if (value == null) return "";
+        if (value.contains(",") || value.contains("\"") || value.contains("\n")) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+        return value;
+    }
+}
@@ -0,0 +1,46 @@
+package com.edumentic.classbuilder.io;
+
+import com.edumentic.classbuilder.model.StudentClass;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Turns the rows of a "Classes" sheet, given one at a time and header included, into classes.
+ */
+@Slf4j
+class ClassSheetParser {
+
+    // Columns: class code, teacher
+    static final int COLUMN_COUNT = 2;
+
+    private final List<StudentClass> classes = new ArrayList<>();
+
+    /**
+     * @param rowIndex zero based
+     * @param cells the row's first {@link #COLUMN_COUNT} cells, null where there is none
+     */
+    void addRow(int rowIndex, SheetCell[] cells) {
+        // Skip the header
+        if (rowIndex < 1) return;
+        // Required: class code and teacher
+        String code = (cells[0] != null) ? cells[0].getString().trim() : "";
+        String teacher = (cells[1] != null) ? cells[1].getString().trim() : "";
+        if (code.isEmpty() && teacher.isEmpty()) return;
+
+        if (code.isEmpty() || teacher.isEmpty()) {
+            log.warn("Skipping class row {}: Missing required class code or teacher name", rowIndex + 1);
+            return;
+        }
+        StudentClass sc = new StudentClass();
+        sc.setId((long) classes.size());
+        sc.setClassCode(code);
+        sc.setTeacher(teacher);
+        classes.add(sc);
+    }
+
+    List<StudentClass> finish() {
+        return classes;
+    }
+}
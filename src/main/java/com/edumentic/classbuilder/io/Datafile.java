@@ -0,0 +1,18 @@
+package com.edumentic.classbuilder.io;
+
+import com.edumentic.classbuilder.model.Student;
+import com.edumentic.classbuilder.model.StudentClass;
+import lombok.Value;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * The students and classes read from a workbook by {@link WorkbookReader}.
+ */
+@Value
+public class Datafile {
+    File file;
+    List<Student> students;
+    List<StudentClass> classes;
+}
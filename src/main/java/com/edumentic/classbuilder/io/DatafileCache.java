@@ -0,0 +1,299 @@
+package com.edumentic.classbuilder.io;
+
+import com.edumentic.classbuilder.model.Gender;
+import com.edumentic.classbuilder.model.RelationshipType;
+import com.edumentic.classbuilder.model.Student;
+import com.edumentic.classbuilder.model.StudentClass;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the students and classes read from each workbook as a compact binary snapshot, named by a SHA-256 hash of
+ * the workbook's content and the {@link RelationshipOptions}, so loading a workbook that hasn't changed since skips
+ * POI altogether.
+ *
+ * <p>
+ *     A snapshot holds each student's name, scores and gender, each relationship as arrays of student indexes, and
+ *     each class's code and teacher. It is read back through a memory mapping, while the workbook is only hashed
+ *     with plain reads, so the cache never stops Excel saving it. A snapshot that is missing, from an older format
+ *     or damaged is ignored, and the workbook is read with {@link WorkbookReader} and snapshotted again. Failing to
+ *     read or write the cache never fails a load: it is logged and the workbook read as usual. Only the
+ *     {@value #MAX_SNAPSHOTS} most recently used snapshots are kept.
+ * </p>
+ */
+@Slf4j
+public final class DatafileCache {
+
+    // "CBSS"
+    private static final int MAGIC = 0x43425353;
+    // Bump on any change to the layout below, or to the order of Gender or RelationshipType
+    private static final int FORMAT_VERSION = 1;
+    private static final String SNAPSHOT_SUFFIX = ".snapshot";
+    static final int MAX_SNAPSHOTS = 50;
+    private static final int HASH_BUFFER_SIZE = 64 * 1024;
+
+    private final Path directory;
+
+    public DatafileCache(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @return the cache in {@code .classbuilder/cache} in the user's home folder
+     */
+    public static DatafileCache inUserHome() {
+        return new DatafileCache(Path.of(System.getProperty("user.home"), ".classbuilder", "cache"));
+    }
+
+    /**
+     * As {@link WorkbookReader#read(File, RelationshipOptions)}, but from the workbook's snapshot if there is one.
+     */
+    public Datafile read(File workbook, RelationshipOptions relationshipOptions) throws DatafileParseException {
+        if (workbook == null || !workbook.canRead()) {
+            return WorkbookReader.read(workbook, relationshipOptions);
+        }
+        byte[] hash;
+        try {
+            hash = hash(workbook.toPath());
+        } catch (IOException e) {
+            log.warn("Cannot hash {}, reading it without the cache: {}", workbook, e.getMessage());
+            return WorkbookReader.read(workbook, relationshipOptions);
+        }
+        // Reading with other options doesn't replace the snapshot read with these
+        Path snapshot = directory.resolve(HexFormat.of().formatHex(hash) + "-"
+                + (relationshipOptions.isDeduplicate() ? "d" : "") + symmetricBits(relationshipOptions) + SNAPSHOT_SUFFIX);
+
+        long start = System.nanoTime();
+        Datafile cached = readSnapshot(snapshot, workbook, hash, relationshipOptions);
+        if (cached != null) {
+            log.debug("Read {} from its snapshot in {}ms", workbook.getName(), (System.nanoTime() - start) / 1_000_000);
+            return cached;
+        }
+
+        Datafile datafile = WorkbookReader.read(workbook, relationshipOptions);
+        try {
+            // Not kept if the workbook was saved again while being read, as the snapshot could be of either version
+            if (Arrays.equals(hash, hash(workbook.toPath()))) {
+                writeSnapshot(snapshot, datafile, hash, relationshipOptions);
+                prune();
+            }
+        } catch (IOException e) {
+            log.warn("Cannot write a snapshot of {} to {}: {}", workbook, directory, e.getMessage());
+        }
+        return datafile;
+    }
+
+    private static byte[] hash(Path workbook) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Every Java platform has SHA-256", e);
+        }
+        // Read rather than mapped: on Windows a mapping outlives the channel until it is garbage collected, and
+        // Excel can't save over a workbook that is still mapped
+        ByteBuffer buffer = ByteBuffer.allocate(HASH_BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(workbook, StandardOpenOption.READ)) {
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return digest.digest();
+    }
+
+    /*
+     * Layout, big endian, strings as their length in bytes then UTF-8:
+     *   magic, format version, deduplicate (byte), symmetric relationship types (bit per ordinal), workbook hash (32)
+     *   student count, class count
+     *   per student: name, numeracy, literacy, social-emotional, gender ordinal (byte)
+     *   per relationship type: offsets (student count + 1), then the student indexes named, offsets[s] to offsets[s + 1]
+     *   per class: class code, teacher
+     */
+
+    private static void writeSnapshot(Path snapshot, Datafile datafile, byte[] hash, RelationshipOptions relationshipOptions)
+            throws IOException {
+        Files.createDirectories(snapshot.getParent());
+        List<Student> students = datafile.getStudents();
+        Map<Student, Integer> indexes = new HashMap<>(students.size() * 2);
+        for (int s = 0; s < students.size(); s++) {
+            indexes.put(students.get(s), s);
+        }
+
+        Path temporary = Files.createTempFile(snapshot.getParent(), snapshot.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                writeOptions(out, relationshipOptions);
+                out.write(hash);
+                out.writeInt(students.size());
+                out.writeInt(datafile.getClasses().size());
+                for (Student student : students) {
+                    writeString(out, student.getName());
+                    out.writeInt(student.getNumeracy());
+                    out.writeInt(student.getLiteracy());
+                    out.writeInt(student.getSocialEmotional());
+                    out.writeByte((student.getGender() == null ? Gender.NA : student.getGender()).ordinal());
+                }
+                for (RelationshipType type : RelationshipType.values()) {
+                    int offset = 0;
+                    out.writeInt(offset);
+                    for (Student student : students) {
+                        offset += type.of(student).size();
+                        out.writeInt(offset);
+                    }
+                    for (Student student : students) {
+                        for (Student other : type.of(student)) {
+                            out.writeInt(indexes.get(other));
+                        }
+                    }
+                }
+                for (StudentClass studentClass : datafile.getClasses()) {
+                    writeString(out, studentClass.getClassCode());
+                    writeString(out, studentClass.getTeacher());
+                }
+            }
+            Files.move(temporary, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private static void writeOptions(DataOutputStream out, RelationshipOptions relationshipOptions) throws IOException {
+        out.writeByte(relationshipOptions.isDeduplicate() ? 1 : 0);
+        out.writeInt(symmetricBits(relationshipOptions));
+    }
+
+    private static int symmetricBits(RelationshipOptions relationshipOptions) {
+        int bits = 0;
+        for (RelationshipType type : relationshipOptions.getSymmetric()) {
+            bits |= 1 << type.ordinal();
+        }
+        return bits;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * @return the snapshot's students and classes, or {@code null} if there is no usable snapshot
+     */
+    static Datafile readSnapshot(Path snapshot, File workbook, byte[] hash, RelationshipOptions relationshipOptions) {
+        if (!Files.isRegularFile(snapshot)) return null;
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (in.getInt() != MAGIC || in.getInt() != FORMAT_VERSION) return null;
+            if ((in.get() == 1) != relationshipOptions.isDeduplicate()) return null;
+            if (in.getInt() != symmetricBits(relationshipOptions)) return null;
+            byte[] snapshotHash = new byte[hash.length];
+            in.get(snapshotHash);
+            if (!Arrays.equals(hash, snapshotHash)) return null;
+
+            int studentCount = in.getInt();
+            int classCount = in.getInt();
+            List<Student> students = new ArrayList<>(studentCount);
+            for (int s = 0; s < studentCount; s++) {
+                Student student = new Student();
+                student.setId((long) s);
+                student.setName(readString(in));
+                student.setNumeracy(in.getInt());
+                student.setLiteracy(in.getInt());
+                student.setSocialEmotional(in.getInt());
+                student.setGender(Gender.values()[in.get()]);
+                students.add(student);
+            }
+            for (RelationshipType type : RelationshipType.values()) {
+                int[] offsets = new int[studentCount + 1];
+                in.asIntBuffer().get(offsets);
+                in.position(in.position() + offsets.length * Integer.BYTES);
+                int[] targets = new int[offsets[studentCount]];
+                in.asIntBuffer().get(targets);
+                in.position(in.position() + targets.length * Integer.BYTES);
+                for (int s = 0; s < studentCount; s++) {
+                    List<Student> others = new ArrayList<>(offsets[s + 1] - offsets[s]);
+                    for (int i = offsets[s]; i < offsets[s + 1]; i++) {
+                        others.add(students.get(targets[i]));
+                    }
+                    type.set(students.get(s), others);
+                }
+            }
+            List<StudentClass> classes = new ArrayList<>(classCount);
+            for (int c = 0; c < classCount; c++) {
+                StudentClass studentClass = new StudentClass();
+                studentClass.setId((long) c);
+                studentClass.setClassCode(readString(in));
+                studentClass.setTeacher(readString(in));
+                classes.add(studentClass);
+            }
+            if (in.hasRemaining()) return null;
+
+            // Marks it as recently used, for prune()
+            Files.setLastModifiedTime(snapshot, FileTime.fromMillis(System.currentTimeMillis()));
+            return new Datafile(workbook, students, classes);
+        } catch (IOException | BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException
+                 | NegativeArraySizeException e) {
+            log.warn("Ignoring the unreadable snapshot {}: {}", snapshot, e.toString());
+            return null;
+        }
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Deletes all but the {@value #MAX_SNAPSHOTS} most recently used snapshots.
+     */
+    private void prune() throws IOException {
+        List<Path> snapshots;
+        try (Stream<Path> files = Files.list(directory)) {
+            snapshots = files.filter(file -> file.getFileName().toString().endsWith(SNAPSHOT_SUFFIX)).toList();
+        }
+        if (snapshots.size() <= MAX_SNAPSHOTS) return;
+        Map<Path, Long> lastUsed = new HashMap<>();
+        for (Path snapshot : snapshots) {
+            lastUsed.put(snapshot, Files.getLastModifiedTime(snapshot).toMillis());
+        }
+        List<Path> oldestFirst = new ArrayList<>(snapshots);
+        oldestFirst.sort(Comparator.comparing(lastUsed::get));
+        for (Path snapshot : oldestFirst.subList(0, snapshots.size() - MAX_SNAPSHOTS)) {
+            try {
+                Files.deleteIfExists(snapshot);
+            } catch (IOException e) {
+                // Still mapped, on Windows: it goes next time
+                log.debug("Cannot delete the old snapshot {}: {}", snapshot, e.getMessage());
+            }
+        }
+    }
+}
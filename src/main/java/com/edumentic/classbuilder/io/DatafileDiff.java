@@ -0,0 +1,144 @@
+package com.edumentic.classbuilder.io;
+
+import com.edumentic.classbuilder.model.RelationshipType;
+import com.edumentic.classbuilder.model.Student;
+import com.edumentic.classbuilder.model.StudentClass;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * What changed between two reads of a workbook: which students and classes were added, removed or changed.
+ *
+ * <p>
+ *     Students are matched by name and classes by class code, ignoring case, in sheet order where a name is used
+ *     more than once. A student is unchanged if their scores, gender and the names in each relationship are all
+ *     the same. Anything else about them, such as their row, doesn't matter.
+ * </p>
+ */
+public final class DatafileDiff {
+
+    // Each unchanged student in the current read, to themselves in the previous read
+    private final Map<Student, Student> unchangedStudents;
+    private final int addedStudents;
+    private final int changedStudents;
+    private final int removedStudents;
+    private final int addedClasses;
+    private final int changedClasses;
+    private final int removedClasses;
+
+    private DatafileDiff(Map<Student, Student> unchangedStudents, int addedStudents, int changedStudents,
+                         int removedStudents, int addedClasses, int changedClasses, int removedClasses) {
+        this.unchangedStudents = unchangedStudents;
+        this.addedStudents = addedStudents;
+        this.changedStudents = changedStudents;
+        this.removedStudents = removedStudents;
+        this.addedClasses = addedClasses;
+        this.changedClasses = changedClasses;
+        this.removedClasses = removedClasses;
+    }
+
+    public static DatafileDiff between(Datafile previous, Datafile current) {
+        Map<String, Deque<Student>> previousStudents = byKey(previous.getStudents(), Student::getName);
+        Map<Student, Student> unchanged = new IdentityHashMap<>();
+        int added = 0;
+        int changed = 0;
+        for (Student student : current.getStudents()) {
+            Deque<Student> sameName = previousStudents.get(normalize(student.getName()));
+            Student match = sameName == null ? null : sameName.poll();
+            if (match == null) {
+                added++;
+            } else if (isSame(match, student)) {
+                unchanged.put(student, match);
+            } else {
+                changed++;
+            }
+        }
+        int removed = previousStudents.values().stream().mapToInt(Deque::size).sum();
+
+        Map<String, Deque<StudentClass>> previousClasses = byKey(previous.getClasses(), StudentClass::getClassCode);
+        int addedClasses = 0;
+        int changedClasses = 0;
+        for (StudentClass studentClass : current.getClasses()) {
+            Deque<StudentClass> sameCode = previousClasses.get(normalize(studentClass.getClassCode()));
+            StudentClass match = sameCode == null ? null : sameCode.poll();
+            if (match == null) {
+                addedClasses++;
+            } else if (!Objects.equals(match.getTeacher(), studentClass.getTeacher())) {
+                changedClasses++;
+            }
+        }
+        int removedClasses = previousClasses.values().stream().mapToInt(Deque::size).sum();
+
+        return new DatafileDiff(unchanged, added, changed, removed, addedClasses, changedClasses, removedClasses);
+    }
+
+    /**
+     * @return {@code student}, from the current read, as they were in the previous read, or {@code null} if they
+     * are new or have changed
+     */
+    public Student previousOf(Student student) {
+        return unchangedStudents.get(student);
+    }
+
+    public boolean isEmpty() {
+        return addedStudents == 0 && changedStudents == 0 && removedStudents == 0
+                && addedClasses == 0 && changedClasses == 0 && removedClasses == 0;
+    }
+
+    public int getUnchangedStudentCount() {
+        return unchangedStudents.size();
+    }
+
+    /**
+     * @return the changes in words, such as {@code "2 students added, 1 changed"}, or {@code "no changes"}
+     */
+    @Override
+    public String toString() {
+        List<String> parts = new ArrayList<>();
+        if (addedStudents > 0) parts.add(addedStudents + (addedStudents == 1 ? " student" : " students") + " added");
+        if (changedStudents > 0) parts.add(changedStudents + (changedStudents == 1 ? " student" : " students") + " changed");
+        if (removedStudents > 0) parts.add(removedStudents + (removedStudents == 1 ? " student" : " students") + " removed");
+        if (addedClasses > 0) parts.add(addedClasses + (addedClasses == 1 ? " class" : " classes") + " added");
+        if (changedClasses > 0) parts.add(changedClasses + (changedClasses == 1 ? " class" : " classes") + " changed");
+        if (removedClasses > 0) parts.add(removedClasses + (removedClasses == 1 ? " class" : " classes") + " removed");
+        return parts.isEmpty() ? "no changes" : String.join(", ", parts);
+    }
+
+    private static boolean isSame(Student previous, Student current) {
+        if (previous.getNumeracy() != current.getNumeracy()
+                || previous.getLiteracy() != current.getLiteracy()
+                || previous.getSocialEmotional() != current.getSocialEmotional()
+                || previous.getGender() != current.getGender()) {
+            return false;
+        }
+        for (RelationshipType type : RelationshipType.values()) {
+            if (!namesOf(type.of(previous)).equals(namesOf(type.of(current)))) return false;
+        }
+        return true;
+    }
+
+    private static List<String> namesOf(List<Student> students) {
+        return students.stream().map(student -> normalize(student.getName())).toList();
+    }
+
+    private static <T> Map<String, Deque<T>> byKey(List<T> items, Function<T, String> key) {
+        Map<String, Deque<T>> byKey = new HashMap<>(items.size() * 2);
+        for (T item : items) {
+            byKey.computeIfAbsent(normalize(key.apply(item)), k -> new ArrayDeque<>()).add(item);
+        }
+        return byKey;
+    }
+
+    private static String normalize(String name) {
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+}
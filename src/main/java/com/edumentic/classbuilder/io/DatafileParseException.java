@@ -0,0 +1,47 @@
+package com.edumentic.classbuilder.io;
+
+import java.util.List;
+
+public class DatafileParseException extends Exception{
+
+    // The most problems listed in the message; getProblems() has them all
+    static final int MAX_PROBLEMS_IN_MESSAGE = 20;
+
+    private final String summary;
+    private final List<String> problems;
+
+    public DatafileParseException(String message){
+        this(message, List.of());
+    }
+
+    /**
+     * @param summary what went wrong overall, such as how many problems were found
+     * @param problems each problem found, listed on lines of their own after the summary in the message
+     */
+    public DatafileParseException(String summary, List<String> problems){
+        super(listProblems(summary, problems));
+        this.summary = summary;
+        this.problems = List.copyOf(problems);
+    }
+
+    public String getSummary() {
+        return summary;
+    }
+
+    /**
+     * @return every problem found, or an empty list if there is only the {@link #getSummary() summary}
+     */
+    public List<String> getProblems() {
+        return problems;
+    }
+
+    private static String listProblems(String summary, List<String> problems) {
+        StringBuilder message = new StringBuilder(summary);
+        if (!problems.isEmpty()) message.append(':');
+        problems.stream().limit(MAX_PROBLEMS_IN_MESSAGE).forEach(problem -> message.append('\n').append(problem));
+        if (problems.size() > MAX_PROBLEMS_IN_MESSAGE) {
+            message.append('\n').append(String.format("... and %d more", problems.size() - MAX_PROBLEMS_IN_MESSAGE));
+        }
+        return message.toString();
+    }
+}
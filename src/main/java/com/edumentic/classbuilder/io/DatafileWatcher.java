@@ -0,0 +1,94 @@
+package com.edumentic.classbuilder.io;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches a workbook for changes, such as being saved from Excel, and calls back once it has stopped changing.
+ *
+ * <p>
+ *     The workbook's folder is watched, as saving often writes a new file and renames it over the old one. A save
+ *     also touches the file more than once, so the callback waits until there have been no changes for
+ *     {@value #SETTLE_MILLIS}ms. It runs on the watcher's own daemon thread.
+ * </p>
+ */
+@Slf4j
+public final class DatafileWatcher implements AutoCloseable {
+
+    static final long SETTLE_MILLIS = 750;
+
+    private final Path workbookName;
+    private final Runnable onChange;
+    private final WatchService watchService;
+    private final Thread thread;
+
+    /**
+     * Starts watching {@code workbook}.
+     *
+     * @throws IOException if its folder can't be watched
+     */
+    public DatafileWatcher(File workbook, Runnable onChange) throws IOException {
+        Path path = workbook.getAbsoluteFile().toPath();
+        this.workbookName = path.getFileName();
+        this.onChange = onChange;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        path.getParent().register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        this.thread = new Thread(this::watch, "DatafileWatcher");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                if (!isWorkbookEvent(watchService.take())) continue;
+                // Wait for the save to finish
+                WatchKey key;
+                while ((key = watchService.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    isWorkbookEvent(key);
+                }
+                try {
+                    onChange.run();
+                } catch (RuntimeException e) {
+                    log.error("Failed to act on a change to {}", workbookName, e);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Closed
+        }
+    }
+
+    /**
+     * @return true if any of the key's events is for the workbook, or may have been (events were lost)
+     */
+    private boolean isWorkbookEvent(WatchKey key) {
+        boolean workbookEvent = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || workbookName.equals(event.context())) {
+                workbookEvent = true;
+            }
+        }
+        key.reset();
+        return workbookEvent;
+    }
+
+    @Override
+    public void close() {
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            log.warn("Failed to stop watching {}: {}", workbookName, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.edumentic.classbuilder.io;
+
+import com.edumentic.classbuilder.model.RelationshipType;
+import lombok.Value;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * How the names in a workbook's relationship columns are turned into students.
+ */
+@Value
+public class RelationshipOptions {
+
+    public static final RelationshipOptions DEFAULT = new RelationshipOptions(true, Set.of());
+
+    /**
+     * Whether a student named twice in the same column, such as {@code "Bob, bob"}, is kept once. Kept twice, the
+     * relationship counts double when scoring.
+     */
+    boolean deduplicate;
+
+    /**
+     * The relationships that go both ways: for these, a student naming another is also named by them.
+     */
+    Set<RelationshipType> symmetric;
+
+    /**
+     * @param types comma separated {@link RelationshipType} names, or {@code NONE}
+     * @throws IllegalArgumentException for a name that isn't a relationship type
+     */
+    public static Set<RelationshipType> parseTypes(String types) {
+        if (types.trim().equalsIgnoreCase("NONE")) return Set.of();
+        EnumSet<RelationshipType> parsed = EnumSet.noneOf(RelationshipType.class);
+        Arrays.stream(types.split(","))
+                .map(type -> RelationshipType.valueOf(type.trim().toUpperCase()))
+                .forEach(parsed::add);
+        return parsed;
+    }
+}
@@ -0,0 +1,149 @@
+package com.edumentic.classbuilder.io;
+
+import com.edumentic.classbuilder.model.RelationshipType;
+import com.edumentic.classbuilder.model.Student;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Turns the names in the students' relationship columns into the students they name, once every student is known.
+ *
+ * <p>
+ *     Names are looked up in an index of the students, built once, by name ignoring case and surrounding spaces.
+ *     Where two students share a name, the first is found, as with the linear search this replaces. Every column
+ *     is resolved in full, collecting each name that names nobody or the student themselves, so a workbook's
+ *     problems are reported together rather than one at a time. The four columns are independent, so a large
+ *     cohort has them resolved in parallel.
+ * </p>
+ */
+@Slf4j
+class RelationshipResolver {
+
+    // Below this many students, starting the threads takes longer than resolving the columns one after another
+    static final int PARALLEL_MIN_STUDENTS = 5_000;
+
+    private final List<Student> students;
+    private final RelationshipOptions options;
+    private final Map<String, Student> studentsByName;
+
+    RelationshipResolver(List<Student> students, RelationshipOptions options) {
+        this.students = students;
+        this.options = options;
+        this.studentsByName = new HashMap<>(students.size() * 2);
+        for (Student student : students) {
+            Student first = studentsByName.putIfAbsent(normalize(student.getName()), student);
+            if (first != null) {
+                log.warn("More than one student is named {}: relationships naming them refer to the first", student.getName());
+            }
+        }
+    }
+
+    /**
+     * Sets every student's relationships, then, if every name was resolved, makes the
+     * {@link RelationshipOptions#getSymmetric() symmetric} ones go both ways.
+     *
+     * @param rows each student's row, in the order of the students, with {@link StudentSheetParser#columnOf}
+     *             giving each relationship's column
+     * @return every problem found, by student and then column, or an empty list once the relationships are set
+     */
+    List<String> resolve(List<SheetCell[]> rows) {
+        Stream<RelationshipType> types = Arrays.stream(RelationshipType.values());
+        if (students.size() >= PARALLEL_MIN_STUDENTS) {
+            types = types.parallel();
+        }
+        List<List<Problem>> problemsByType = types.map(type -> resolveColumn(type, rows)).toList();
+
+        // Each column's problems are in student order already, so a stable sort by student keeps the columns in order
+        List<Problem> problems = new ArrayList<>();
+        problemsByType.forEach(problems::addAll);
+        if (!problems.isEmpty()) {
+            problems.sort(Comparator.comparingInt(problem -> problem.student));
+            return problems.stream().map(problem -> problem.text).toList();
+        }
+
+        for (RelationshipType type : options.getSymmetric()) {
+            symmetrize(type);
+        }
+        return List.of();
+    }
+
+    private List<Problem> resolveColumn(RelationshipType type, List<SheetCell[]> rows) {
+        int column = StudentSheetParser.columnOf(type);
+        String fieldName = fieldName(type);
+        List<List<Student>> resolvedColumn = new ArrayList<>(students.size());
+        List<Problem> problems = new ArrayList<>();
+        for (int s = 0; s < students.size(); s++) {
+            Student student = students.get(s);
+            List<Student> resolved = new ArrayList<>();
+            resolvedColumn.add(resolved);
+            String names;
+            try {
+                SheetCell cell = rows.get(s)[column];
+                names = cell == null ? "" : cell.getString();
+            } catch (IllegalStateException e) {
+                problems.add(new Problem(s, String.format("In %s: %s's entry isn't text: %s", fieldName, student.getName(), e.getMessage())));
+                continue;
+            }
+            if (names.trim().isEmpty()) continue;
+            for (String name : names.split("\\s*,\\s*")) {
+                Student found = studentsByName.get(normalize(name));
+                if (found == null) {
+                    problems.add(new Problem(s, String.format("In %s: %s references unknown student '%s' in %s", fieldName, student.getName(), name, fieldName)));
+                } else if (found == student) {
+                    problems.add(new Problem(s, String.format("In %s: %s references themselves", fieldName, student.getName())));
+                } else if (!options.isDeduplicate() || !resolved.contains(found)) {
+                    resolved.add(found);
+                }
+            }
+        }
+        for (int s = 0; s < students.size(); s++) {
+            type.set(students.get(s), resolvedColumn.get(s));
+        }
+        return problems;
+    }
+
+    /**
+     * Adds each student to the list of everyone they name who doesn't name them back.
+     */
+    private void symmetrize(RelationshipType type) {
+        for (Student student : students) {
+            for (Student other : type.of(student)) {
+                List<Student> othersNamed = type.of(other);
+                if (!othersNamed.contains(student)) {
+                    othersNamed.add(student);
+                }
+            }
+        }
+    }
+
+    private static String normalize(String name) {
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static String fieldName(RelationshipType type) {
+        return switch (type) {
+            case MUST_INCLUDE -> "mustIncludeFriends";
+            case SHOULD_INCLUDE -> "shouldIncludeFriends";
+            case CANNOT_BE_WITH -> "cannotBeWith";
+            case AVOID_BEING_WITH -> "avoidBeingWith";
+        };
+    }
+
+    private static final class Problem {
+        final int student;
+        final String text;
+
+        Problem(int student, String text) {
+            this.student = student;
+            this.text = text;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.edumentic.classbuilder.io;
+
+import lombok.Value;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+
+/**
+ * The value of one spreadsheet cell, whether read from a POI {@link Cell} or streamed from the sheet's XML by
+ * {@link StreamingWorkbookReader}, so both are parsed by the same code and fail with the same messages.
+ */
+@Value
+class SheetCell {
+
+    /** {@link CellType#FORMULA} for a formula, whose value is then of {@link #resultType} */
+    CellType type;
+    CellType resultType;
+    /** The string value, or for any other type the text of the value */
+    String text;
+
+    static SheetCell of(Cell cell) {
+        if (cell == null) return null;
+        CellType type = cell.getCellType();
+        CellType resultType = type == CellType.FORMULA ? cell.getCachedFormulaResultType() : type;
+        String text = switch (resultType) {
+            case STRING -> cell.getStringCellValue();
+            case NUMERIC -> Double.toString(cell.getNumericCellValue());
+            case BOOLEAN -> Boolean.toString(cell.getBooleanCellValue());
+            default -> "";
+        };
+        return new SheetCell(type, resultType, text);
+    }
+
+    /**
+     * As {@link Cell#getStringCellValue()}: empty for a blank cell, and an {@link IllegalStateException} for any
+     * value that isn't a string.
+     */
+    String getString() {
+        if (resultType == CellType.STRING) return text;
+        if (resultType == CellType.BLANK) return "";
+        throw new IllegalStateException(String.format("Cannot get a %s value from a %s %scell",
+                CellType.STRING, resultType, type == CellType.FORMULA ? "formula " : ""));
+    }
+
+    boolean isNumeric() {
+        return type == CellType.NUMERIC;
+    }
+
+    double getNumber() {
+        return Double.parseDouble(text);
+    }
+
+    /**
+     * @return true if the cell has no text, as {@link Cell#toString()} would show it. A formula is never blank.
+     */
+    boolean isBlank() {
+        return type == CellType.BLANK || (type == CellType.STRING && text.trim().isEmpty());
+    }
+}
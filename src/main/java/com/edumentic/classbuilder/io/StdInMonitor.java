@@ -2,21 +2,35 @@ package com.edumentic.classbuilder.io;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 
+/**
+ * Reads standard input on its own thread and hands it over a line at a time, for line based command protocols.
+ * A daemon thread, so a process waiting on input can still exit.
+ */
 public class StdInMonitor extends Thread{
 
     private final StringReadConsumer consumer;
+    private final InputStream input;
+
     public StdInMonitor(StringReadConsumer consumer){
+        this(consumer, System.in);
+    }
+
+    public StdInMonitor(StringReadConsumer consumer, InputStream input){
+        super("StdInMonitor");
         this.consumer = consumer;
+        this.input = input;
+        setDaemon(true);
     }
 
     public void run(){
-        BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));
-        int inputChar;
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input));
+        String line;
         try {
-            while ((inputChar = reader.read()) != -1) {
-                consumer.consumeStdInString(Character.toString((char) inputChar));
+            while ((line = reader.readLine()) != null) {
+                consumer.consumeStdInString(line);
             }
         } catch (IOException e) {
             e.printStackTrace();
@@ -0,0 +1,201 @@
+package com.edumentic.classbuilder.io;
+
+import com.edumentic.classbuilder.model.Student;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.model.SharedStrings;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * Reads an .xlsx workbook by streaming the XML of its "Students" and "Classes" sheets, one row at a time, instead of
+ * building POI's model of the whole workbook. Only the current row and the workbook's shared strings are held, so
+ * memory doesn't grow with the size of the sheets.
+ */
+final class StreamingWorkbookReader {
+
+    private StreamingWorkbookReader() {
+    }
+
+    static Datafile read(File file, RelationshipOptions relationshipOptions) throws Exception {
+        OPCPackage workbook = OPCPackage.open(file, PackageAccess.READ);
+        try {
+            XSSFReader reader = new XSSFReader(workbook);
+            // Sheet names are matched ignoring case, as Workbook.getSheet does
+            PackagePart studentSheet = null;
+            PackagePart classSheet = null;
+            XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+            while (sheets.hasNext()) {
+                sheets.next().close();
+                if (studentSheet == null && sheets.getSheetName().equalsIgnoreCase("Students")) {
+                    studentSheet = sheets.getSheetPart();
+                } else if (classSheet == null && sheets.getSheetName().equalsIgnoreCase("Classes")) {
+                    classSheet = sheets.getSheetPart();
+                }
+            }
+            if (studentSheet == null || classSheet == null) {
+                throw new DatafileParseException("Missing required sheets. Ensure the spreadsheet has 'General', 'Students', and 'Classes' sheets.");
+            }
+
+            SharedStrings sharedStrings = new ReadOnlySharedStringsTable(workbook, false);
+            StudentSheetParser students = new StudentSheetParser(relationshipOptions);
+            readSheet(studentSheet, sharedStrings, StudentSheetParser.COLUMN_COUNT, students::addRow);
+            // Students are finished first, so a workbook with problems on both sheets fails on the students
+            List<Student> studentList = students.finish();
+            ClassSheetParser classes = new ClassSheetParser();
+            readSheet(classSheet, sharedStrings, ClassSheetParser.COLUMN_COUNT, classes::addRow);
+            return new Datafile(file, studentList, classes.finish());
+        } finally {
+            // Closing would try to save a package opened for reading
+            workbook.revert();
+        }
+    }
+
+    private static void readSheet(PackagePart sheet, SharedStrings sharedStrings, int columnCount,
+                                  RowConsumer rowConsumer) throws Exception {
+        XMLReader xmlReader = XMLHelper.newXMLReader();
+        xmlReader.setContentHandler(new SheetHandler(sharedStrings, columnCount, rowConsumer));
+        try (InputStream sheetStream = sheet.getInputStream()) {
+            xmlReader.parse(new InputSource(sheetStream));
+        } catch (SAXException e) {
+            if (e.getException() instanceof DatafileParseException parseException) throw parseException;
+            throw e;
+        }
+    }
+
+    @FunctionalInterface
+    private interface RowConsumer {
+        void addRow(int rowIndex, SheetCell[] cells) throws DatafileParseException;
+    }
+
+    /**
+     * Collects the cells of each {@code <row>} in the sheet's XML and passes the row on when it ends. Cells
+     * ({@code <c>}) carry their type in {@code t}: a shared string index ({@code s}), an inline string
+     * ({@code inlineStr}), a formula's string result ({@code str}), a boolean ({@code b}), an error ({@code e}), or
+     * by default a number. The value is in {@code <v>}, or {@code <is><t>} for an inline string.
+     */
+    private static class SheetHandler extends DefaultHandler {
+
+        private final SharedStrings sharedStrings;
+        private final int columnCount;
+        private final RowConsumer rowConsumer;
+
+        private int rowIndex = -1;
+        private SheetCell[] cells;
+        private int column;
+        private String cellType;
+        private boolean formula;
+        private boolean hasValue;
+        // Within the current cell's <v>, or an inline string's <t> outside phonetic runs
+        private boolean collecting;
+        private boolean inInlineString;
+        private boolean inPhoneticRun;
+        private final StringBuilder value = new StringBuilder();
+
+        SheetHandler(SharedStrings sharedStrings, int columnCount, RowConsumer rowConsumer) {
+            this.sharedStrings = sharedStrings;
+            this.columnCount = columnCount;
+            this.rowConsumer = rowConsumer;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            switch (localName) {
+                case "row" -> {
+                    String r = attributes.getValue("r");
+                    rowIndex = r != null ? Integer.parseInt(r) - 1 : rowIndex + 1;
+                    cells = new SheetCell[columnCount];
+                    column = -1;
+                }
+                case "c" -> {
+                    String r = attributes.getValue("r");
+                    column = r != null ? new CellReference(r).getCol() : column + 1;
+                    cellType = attributes.getValue("t");
+                    formula = false;
+                    hasValue = false;
+                    value.setLength(0);
+                }
+                case "f" -> formula = true;
+                case "v" -> {
+                    hasValue = true;
+                    collecting = true;
+                }
+                case "is" -> {
+                    hasValue = true;
+                    inInlineString = true;
+                }
+                case "rPh" -> inPhoneticRun = true;
+                case "t" -> collecting = inInlineString && !inPhoneticRun;
+                default -> {
+                }
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (collecting) value.append(ch, start, length);
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            switch (localName) {
+                case "v", "t" -> collecting = false;
+                case "is" -> inInlineString = false;
+                case "rPh" -> inPhoneticRun = false;
+                case "c" -> {
+                    if (column < columnCount) cells[column] = toCell();
+                }
+                case "row" -> {
+                    try {
+                        rowConsumer.addRow(rowIndex, cells);
+                    } catch (DatafileParseException e) {
+                        throw new SAXException(e);
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+
+        private SheetCell toCell() {
+            String text = value.toString();
+            if (!hasValue && !formula) return new SheetCell(CellType.BLANK, CellType.BLANK, "");
+            CellType resultType;
+            if (cellType == null || cellType.equals("n")) {
+                resultType = CellType.NUMERIC;
+                if (!hasValue) text = "0";
+            } else {
+                switch (cellType) {
+                    case "s" -> {
+                        resultType = CellType.STRING;
+                        text = sharedStrings.getItemAt(Integer.parseInt(text.trim())).getString();
+                    }
+                    case "inlineStr", "str" -> resultType = CellType.STRING;
+                    case "b" -> {
+                        resultType = CellType.BOOLEAN;
+                        text = Boolean.toString(text.equals("1"));
+                    }
+                    case "e" -> {
+                        resultType = CellType.ERROR;
+                        text = "";
+                    }
+                    default -> resultType = CellType.STRING;
+                }
+            }
+            return new SheetCell(formula ? CellType.FORMULA : resultType, resultType, text);
+        }
+    }
+}
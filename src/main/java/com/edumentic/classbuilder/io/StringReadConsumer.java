@@ -1,5 +1,8 @@
 package com.edumentic.classbuilder.io;
 
 public interface StringReadConsumer {
+    /**
+     * @param data one line of input, without its line terminator
+     */
     public void consumeStdInString(String data);
 }
@@ -0,0 +1,107 @@
+package com.edumentic.classbuilder.io;
+
+import com.edumentic.classbuilder.model.Gender;
+import com.edumentic.classbuilder.model.RelationshipType;
+import com.edumentic.classbuilder.model.Student;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Turns the rows of a "Students" sheet, given one at a time and header included, into students.
+ *
+ * <p>
+ *     Each row is checked for a name and its scores as it arrives. Friends and the rest name other students, who may
+ *     come later in the sheet, so their cells are kept and only resolved, by a {@link RelationshipResolver}, in
+ *     {@link #finish()}.
+ * </p>
+ */
+class StudentSheetParser {
+
+    // Columns: name, must include, should include, cannot be with, avoid being with, numeracy, literacy,
+    // social-emotional, gender
+    static final int COLUMN_COUNT = 9;
+
+    private final RelationshipOptions options;
+    private final List<Student> students = new ArrayList<>();
+    // Each student's row, until finish()
+    private final List<SheetCell[]> pendingCells = new ArrayList<>();
+
+    StudentSheetParser(RelationshipOptions options) {
+        this.options = options;
+    }
+
+    /**
+     * @param rowIndex zero based
+     * @param cells the row's first {@link #COLUMN_COUNT} cells, null where there is none
+     */
+    void addRow(int rowIndex, SheetCell[] cells) throws DatafileParseException {
+        // Skip the header
+        if (rowIndex < 1) return;
+
+        // Skip completely blank rows
+        boolean blank = true;
+        for (int c = 0; c <= 7; c++) {
+            if (cells[c] != null && !cells[c].isBlank()) { blank = false; break; }
+        }
+        if (blank) return;
+
+        // Required: name
+        if (cells[0] == null || cells[0].getString().trim().isEmpty()) {
+            throw new DatafileParseException(
+                    String.format("Missing required student name in row %d", rowIndex + 1)
+            );
+        }
+        //required: numeracy/literacy/social-emotional scores (cells 0, 5, 6, 7)
+        for (int c : new int[]{5, 6, 7}) {
+            if (cells[c] == null || !cells[c].isNumeric()) {
+                throw new DatafileParseException(
+                        String.format("Student row %d: Missing or non-numeric required score at column %d", rowIndex + 1, c + 1)
+                );
+            }
+        }
+
+        Student s = new Student();
+        s.setId((long) students.size());
+        s.setName(cells[0].getString().trim());
+        students.add(s);
+        pendingCells.add(cells);
+    }
+
+    /**
+     * Fills in each student's relationships, scores and gender, in sheet order.
+     *
+     * @throws DatafileParseException listing every relationship naming someone unknown or the student themselves
+     */
+    List<Student> finish() throws DatafileParseException {
+        List<String> problems = new RelationshipResolver(students, options).resolve(pendingCells);
+        if (!problems.isEmpty()) {
+            throw new DatafileParseException(String.format("%d %s with the students' relationships",
+                    problems.size(), problems.size() == 1 ? "problem" : "problems"), problems);
+        }
+        for (int j = 0; j < students.size(); j++) {
+            Student s = students.get(j);
+            SheetCell[] cells = pendingCells.get(j);
+            s.setNumeracy((int) cells[5].getNumber());
+            s.setLiteracy((int) cells[6].getNumber());
+            s.setSocialEmotional((int) cells[7].getNumber());
+            //gender
+            String genderStr = cells[8] == null ? "" : cells[8].getString();
+            switch(genderStr){
+                case "M": s.setGender(Gender.MALE); break;
+                case "F": s.setGender(Gender.FEMALE); break;
+                default: s.setGender(Gender.NA); break;
+            }
+        }
+        pendingCells.clear();
+        return students;
+    }
+
+    /**
+     * @return the column naming the students in {@code type}: must include, should include, cannot be with and
+     * avoid being with follow the name
+     */
+    static int columnOf(RelationshipType type) {
+        return 1 + type.ordinal();
+    }
+}
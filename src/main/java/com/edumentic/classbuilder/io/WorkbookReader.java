@@ -0,0 +1,121 @@
+package com.edumentic.classbuilder.io;
+
+import com.edumentic.classbuilder.model.Student;
+import com.edumentic.classbuilder.model.StudentClass;
+import org.apache.poi.poifs.filesystem.FileMagic;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.usermodel.WorkbookFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * Reads the students and classes from a ClassBuilder workbook, with a "Students" and a "Classes" sheet.
+ * An .xlsx workbook is streamed by {@link StreamingWorkbookReader}; either way the rows are parsed by
+ * {@link StudentSheetParser} and {@link ClassSheetParser}, so problems are reported the same.
+ *
+ * <p>
+ *     Used by both the application and the headless {@code ClassBuilderBatch}, so it must not depend on JavaFX.
+ * </p>
+ */
+public final class WorkbookReader {
+
+    private WorkbookReader() {
+    }
+
+    /**
+     * @throws DatafileParseException if the file can't be read or a sheet is missing or malformed
+     */
+    public static Datafile read(File file) throws DatafileParseException {
+        return read(file, RelationshipOptions.DEFAULT);
+    }
+
+    /**
+     * @throws DatafileParseException if the file can't be read or a sheet is missing or malformed. Relationships
+     * naming unknown students are all listed in {@link DatafileParseException#getProblems()}.
+     */
+    public static Datafile read(File file, RelationshipOptions relationshipOptions) throws DatafileParseException {
+        if (file == null || !file.exists() || !file.canRead()) {
+            throw new DatafileParseException("Cannot read file:  " + file);
+        }
+        try {
+            if (FileMagic.valueOf(file) == FileMagic.OOXML) {
+                return StreamingWorkbookReader.read(file, relationshipOptions);
+            }
+            return readWorkbook(file, relationshipOptions);
+        } catch (DatafileParseException e) {
+            throw new DatafileParseException("Failed to process the Excel file: " + e.getSummary(), e.getProblems());
+        } catch (Exception e) {
+            throw new DatafileParseException("Failed to process the Excel file: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reads any other format POI knows, such as .xls, through its model of the whole workbook.
+     */
+    static Datafile readWorkbook(File file, RelationshipOptions relationshipOptions) throws Exception {
+        try (InputStream fileStream = new FileInputStream(file);
+             Workbook workbook = WorkbookFactory.create(fileStream)) {
+
+            Sheet studentSheet = workbook.getSheet("Students");
+            Sheet classSheet = workbook.getSheet("Classes");
+
+            if (studentSheet == null || classSheet == null) {
+                throw new DatafileParseException("Missing required sheets. Ensure the spreadsheet has 'General', 'Students', and 'Classes' sheets.");
+            }
+
+            return new Datafile(file, fromStudentSheet(studentSheet, relationshipOptions), fromClassesSheet(classSheet));
+        }
+    }
+
+    /*
+    public void fromGeneralSheet(Sheet generalSheet) {
+
+        // Assumes the first row has "Min Class Size", "Max Class Size"
+        // And the second row has their respective values
+        Row valueRow = generalSheet.getRow(1);
+        if (valueRow != null) {
+            ClassBuilderConstraints.getInstance().setMinClassSize((int) valueRow.getCell(0).getNumericCellValue());
+            ClassBuilderConstraints.getInstance().setMaxClassSize((int) valueRow.getCell(1).getNumericCellValue());
+        }
+    }
+
+     */
+
+    public static List<Student> fromStudentSheet(Sheet studentSheet) throws DatafileParseException {
+        return fromStudentSheet(studentSheet, RelationshipOptions.DEFAULT);
+    }
+
+    public static List<Student> fromStudentSheet(Sheet studentSheet, RelationshipOptions relationshipOptions) throws DatafileParseException {
+        StudentSheetParser parser = new StudentSheetParser(relationshipOptions);
+        for (int i = 1; i <= studentSheet.getLastRowNum(); i++) {
+            Row row = studentSheet.getRow(i);
+            if (row == null) continue;
+            parser.addRow(i, cellsOf(row, StudentSheetParser.COLUMN_COUNT));
+        }
+        return parser.finish();
+    }
+
+    public static List<StudentClass> fromClassesSheet(Sheet classSheet) {
+        ClassSheetParser parser = new ClassSheetParser();
+        // Skip the header (assume first row, index 0)
+        for (int i = 1; i <= classSheet.getLastRowNum(); i++) {
+            Row row = classSheet.getRow(i);
+            if (row == null) continue;
+            parser.addRow(i, cellsOf(row, ClassSheetParser.COLUMN_COUNT));
+        }
+        return parser.finish();
+    }
+
+    private static SheetCell[] cellsOf(Row row, int columnCount) {
+        SheetCell[] cells = new SheetCell[columnCount];
+        for (int c = 0; c < columnCount; c++) {
+            cells[c] = SheetCell.of(row.getCell(c));
+        }
+        return cells;
+    }
+}
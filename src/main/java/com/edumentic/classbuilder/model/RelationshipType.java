@@ -0,0 +1,45 @@
+package com.edumentic.classbuilder.model;
+
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * The four directed relationships a {@link Student} can declare towards other students.
+ */
+public enum RelationshipType {
+    MUST_INCLUDE(Student::getMustIncludeFriends, Student::setMustIncludeFriends),
+    SHOULD_INCLUDE(Student::getShouldIncludeFriends, Student::setShouldIncludeFriends),
+    CANNOT_BE_WITH(Student::getCannotBeWith, Student::setCannotBeWith),
+    AVOID_BEING_WITH(Student::getAvoidBeingWith, Student::setAvoidBeingWith);
+
+    private final Function<Student, List<Student>> accessor;
+    private final BiConsumer<Student, List<Student>> mutator;
+
+    RelationshipType(Function<Student, List<Student>> accessor, BiConsumer<Student, List<Student>> mutator) {
+        this.accessor = accessor;
+        this.mutator = mutator;
+    }
+
+    /**
+     * @return the students {@code student} names under this relationship, never {@code null}
+     */
+    public List<Student> of(Student student) {
+        List<Student> others = accessor.apply(student);
+        return others == null ? List.of() : others;
+    }
+
+    public void set(Student student, List<Student> others) {
+        mutator.accept(student, others);
+    }
+
+    @Override
+    public String toString() {
+        return switch (this) {
+            case MUST_INCLUDE -> "Must include";
+            case SHOULD_INCLUDE -> "Should include";
+            case CANNOT_BE_WITH -> "Cannot be with";
+            case AVOID_BEING_WITH -> "Avoid being with";
+        };
+    }
+}
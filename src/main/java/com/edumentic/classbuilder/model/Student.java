@@ -2,11 +2,18 @@ package com.edumentic.classbuilder.model;
 
 import lombok.Getter;
 import lombok.Setter;
+import org.optaplanner.core.api.domain.lookup.PlanningId;
 
 import java.util.List;
 
 @Getter @Setter
 public class Student {
+    /**
+     * Unique within a datafile. Lets OptaPlanner match this student across the working copies of the solution
+     * used by move threads and problem changes.
+     */
+    @PlanningId
+    private Long id;
     private String name;
     private List<Student> mustIncludeFriends;
     private List<Student> shouldIncludeFriends;
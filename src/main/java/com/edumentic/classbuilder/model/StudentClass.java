@@ -2,6 +2,7 @@ package com.edumentic.classbuilder.model;
 
 import lombok.Getter;
 import lombok.Setter;
+import org.optaplanner.core.api.domain.lookup.PlanningId;
 
 /**
  * Represents a group or class to which students can be allocated in the optimization solution.
@@ -31,6 +32,14 @@ import lombok.Setter;
  */
 public class StudentClass {
 
+    /**
+     * Unique within a datafile. Moves refer to a class as their target value, so OptaPlanner needs this to
+     * rebase them onto the working copy of each move thread.
+     */
+    @Getter @Setter
+    @PlanningId
+    private Long id;
+
     @Getter @Setter
     private String classCode;
 
@@ -0,0 +1,194 @@
+package com.edumentic.classbuilder.solution;
+
+import com.edumentic.classbuilder.model.RelationshipType;
+import com.edumentic.classbuilder.model.StudentClass;
+import org.optaplanner.core.api.score.director.ScoreDirector;
+import org.optaplanner.core.impl.phase.custom.CustomPhaseCommand;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Places every unassigned group in one pass, dealing them out across the classes so the local search starts from
+ * a feasible and roughly balanced allocation instead of having to build one up.
+ *
+ * <p>
+ *     Groups are placed in two tiers:
+ *     <ol>
+ *         <li>the constrained ones first (must include groups, largest first, then students with the most cannot be
+ *             with relationships), while there is the most freedom in where they go;</li>
+ *         <li>everyone else, sorted into strata by gender and then by combined numeracy, literacy and social emotional
+ *             score, so that dealing them out in turn gives each class a similar share of each stratum.</li>
+ *     </ol>
+ *     Classes are dealt to in snake order (1, 2, 3, 3, 2, 1, 1, 2, ...), so no class is always first to receive
+ *     the stronger student of each round. A class is skipped while it is at the target size ({@code students /
+ *     classes}, rounded up) or holds someone the group cannot be with. When every class is skipped, the group goes
+ *     to the emptiest class it has no conflict with under the maximum size, or failing that the one it has fewest
+ *     conflicts with.
+ * </p>
+ *
+ * <p>
+ *     Groups that are already assigned are left where they are and counted towards their class.
+ * </p>
+ */
+public class BalancedConstructionPhaseCommand implements CustomPhaseCommand<ClassBuilderSolution> {
+
+    private static final String VARIABLE_NAME = "studentClass";
+
+    private CompiledProblem problem;
+    private int[] classOf;
+    private int[] classSize;
+    private boolean avoidConflicts;
+    // Position in the snake cycle of 2 * classCount steps
+    private int cursor;
+
+    @Override
+    public void changeWorkingSolution(ScoreDirector<ClassBuilderSolution> scoreDirector) {
+        ClassBuilderSolution solution = scoreDirector.getWorkingSolution();
+        problem = solution.getCompiledProblem();
+        int classCount = problem.getClassCount();
+        if (classCount == 0) return;
+        ConstraintSnapshot constraints = solution.requireConstraintSnapshot();
+        avoidConflicts = constraints.isMustAvoidOthers();
+        cursor = 0;
+
+        classOf = new int[problem.getStudentCount()];
+        classSize = new int[classCount];
+        for (StudentClassAssignment assignment : solution.getAssignments()) {
+            int classId = problem.classIdOf(assignment.getStudentClass());
+            classOf[problem.studentIdOf(assignment.getStudent())] = classId;
+            if (classId >= 0) classSize[classId]++;
+        }
+        int targetSize = Math.min(Math.max(constraints.getMaxClassSize(), 0),
+                (problem.getStudentCount() + classCount - 1) / classCount);
+        int maxSize = Math.max(constraints.getMaxClassSize(), targetSize);
+
+        List<StudentGroupAssignment> constrained = new ArrayList<>();
+        List<StudentGroupAssignment> unconstrained = new ArrayList<>();
+        for (StudentGroupAssignment group : solution.getGroupAssignments()) {
+            if (group.getStudentClass() != null) continue;
+            if (group.getSize() > 1 || (avoidConflicts && conflictCount(group) > 0)) {
+                constrained.add(group);
+            } else {
+                unconstrained.add(group);
+            }
+        }
+        constrained.sort(Comparator.comparingInt(StudentGroupAssignment::getSize)
+                .thenComparingInt(this::conflictCount)
+                .reversed());
+        unconstrained.sort(Comparator.comparingInt(this::genderOf)
+                .thenComparing(Comparator.comparingDouble(this::combinedScoreOf).reversed()));
+
+        for (StudentGroupAssignment group : constrained) {
+            place(scoreDirector, group, targetSize, maxSize);
+        }
+        for (StudentGroupAssignment group : unconstrained) {
+            place(scoreDirector, group, targetSize, maxSize);
+        }
+    }
+
+    private void place(ScoreDirector<ClassBuilderSolution> scoreDirector, StudentGroupAssignment group, int targetSize, int maxSize) {
+        int classId = nextInSnakeOrder(group, targetSize);
+        if (classId < 0) {
+            classId = fallbackClass(group, maxSize);
+        }
+        StudentClass studentClass = problem.getStudentClass(classId);
+        scoreDirector.beforeVariableChanged(group, VARIABLE_NAME);
+        group.setStudentClass(studentClass);
+        scoreDirector.afterVariableChanged(group, VARIABLE_NAME);
+        scoreDirector.triggerVariableListeners();
+        for (StudentClassAssignment member : group.getMembers()) {
+            classOf[problem.studentIdOf(member.getStudent())] = classId;
+        }
+        classSize[classId] += group.getSize();
+    }
+
+    /**
+     * @return the next class in snake order with room up to the target and no conflict, or -1 if there is none
+     */
+    private int nextInSnakeOrder(StudentGroupAssignment group, int targetSize) {
+        int classCount = classSize.length;
+        int cycle = 2 * classCount;
+        for (int step = 0; step < cycle; step++) {
+            int position = (cursor + step) % cycle;
+            int classId = position < classCount ? position : cycle - 1 - position;
+            if (classSize[classId] + group.getSize() <= targetSize && conflictsWith(group, classId) == 0) {
+                cursor = (position + 1) % cycle;
+                return classId;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the emptiest class under the maximum size with no conflict, otherwise the class with fewest
+     * conflicts, preferring one under the maximum size and then the emptiest
+     */
+    private int fallbackClass(StudentGroupAssignment group, int maxSize) {
+        int best = -1;
+        long bestRank = Long.MAX_VALUE;
+        for (int classId = 0; classId < classSize.length; classId++) {
+            int conflicts = conflictsWith(group, classId);
+            boolean fits = classSize[classId] + group.getSize() <= maxSize;
+            // Ordered by: a clean fit, then fewest conflicts, then fits, then emptiest
+            long rank = ((conflicts == 0 && fits ? 0L : 1L) << 62)
+                    | ((long) conflicts << 32)
+                    | ((fits ? 0L : 1L) << 31)
+                    | classSize[classId];
+            if (rank < bestRank) {
+                best = classId;
+                bestRank = rank;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return how many cannot be with relationships, in either direction, the group's members have with students
+     * already in the class
+     */
+    private int conflictsWith(StudentGroupAssignment group, int classId) {
+        if (!avoidConflicts) return 0;
+        int[] offsets = problem.relationshipOffsets(RelationshipType.CANNOT_BE_WITH);
+        int[] targets = problem.relationshipTargets(RelationshipType.CANNOT_BE_WITH);
+        int[] referrerOffsets = problem.referrerOffsets(RelationshipType.CANNOT_BE_WITH);
+        int[] referrers = problem.referrerTargets(RelationshipType.CANNOT_BE_WITH);
+        int conflicts = 0;
+        for (StudentClassAssignment member : group.getMembers()) {
+            int student = problem.studentIdOf(member.getStudent());
+            for (int i = offsets[student]; i < offsets[student + 1]; i++) {
+                if (classOf[targets[i]] == classId) conflicts++;
+            }
+            for (int i = referrerOffsets[student]; i < referrerOffsets[student + 1]; i++) {
+                if (classOf[referrers[i]] == classId) conflicts++;
+            }
+        }
+        return conflicts;
+    }
+
+    private int conflictCount(StudentGroupAssignment group) {
+        int[] offsets = problem.relationshipOffsets(RelationshipType.CANNOT_BE_WITH);
+        int[] referrerOffsets = problem.referrerOffsets(RelationshipType.CANNOT_BE_WITH);
+        int count = 0;
+        for (StudentClassAssignment member : group.getMembers()) {
+            int student = problem.studentIdOf(member.getStudent());
+            count += offsets[student + 1] - offsets[student] + referrerOffsets[student + 1] - referrerOffsets[student];
+        }
+        return count;
+    }
+
+    private int genderOf(StudentGroupAssignment group) {
+        int student = problem.studentIdOf(group.getMembers().getFirst().getStudent());
+        return problem.isMale(student) ? 0 : problem.isFemale(student) ? 1 : 2;
+    }
+
+    private double combinedScoreOf(StudentGroupAssignment group) {
+        double total = 0;
+        for (StudentClassAssignment member : group.getMembers()) {
+            int student = problem.studentIdOf(member.getStudent());
+            total += problem.getNumeracy(student) + problem.getLiteracy(student) + problem.getSocialEmotional(student);
+        }
+        return total / group.getSize();
+    }
+}
@@ -0,0 +1,76 @@
+package com.edumentic.classbuilder.solution;
+
+import com.edumentic.classbuilder.model.Gender;
+import com.edumentic.classbuilder.model.Student;
+import lombok.Getter;
+
+/**
+ * Totals for the students placed in one class: head count, metric sums and gender counts.
+ * <p>
+ *     Built in a single pass over the assignments by {@link ClassBuilderSolution#getClassAggregates()}, so the
+ *     averages and gender proportion of every class come from one scan rather than one scan per metric.
+ *     {@link IncrementalSolutionScoreCalculator} keeps one per class up to date from the {@link CompiledProblem}
+ *     columns as students move instead.
+ *     An empty class reports the neutral values used throughout the scoring: 2.5 for metric averages
+ *     and 0.5 for the proportion male.
+ * </p>
+ */
+@Getter
+public class ClassAggregate {
+    private int size;
+    private int numeracySum;
+    private int literacySum;
+    private int socialEmotionalSum;
+    private int maleCount;
+    private int femaleCount;
+
+    void add(Student student){
+        size++;
+        numeracySum += student.getNumeracy();
+        literacySum += student.getLiteracy();
+        socialEmotionalSum += student.getSocialEmotional();
+        if(student.getGender() == Gender.MALE) maleCount++;
+        else if(student.getGender() == Gender.FEMALE) femaleCount++;
+    }
+
+    /**
+     * As {@link #add(Student)}, but from the compiled columns, for {@link IncrementalSolutionScoreCalculator} as a
+     * student moves in.
+     */
+    void add(CompiledProblem problem, int studentId){
+        update(problem, studentId, 1);
+    }
+
+    /**
+     * Takes back an earlier {@link #add(CompiledProblem, int)}, as a student moves out.
+     */
+    void remove(CompiledProblem problem, int studentId){
+        update(problem, studentId, -1);
+    }
+
+    private void update(CompiledProblem problem, int studentId, int sign){
+        size += sign;
+        numeracySum += sign * problem.getNumeracy(studentId);
+        literacySum += sign * problem.getLiteracy(studentId);
+        socialEmotionalSum += sign * problem.getSocialEmotional(studentId);
+        if(problem.isMale(studentId)) maleCount += sign;
+        else if(problem.isFemale(studentId)) femaleCount += sign;
+    }
+
+    public double getAverageNumeracy(){
+        return size == 0 ? 2.5 : (double) numeracySum / size;
+    }
+
+    public double getAverageLiteracy(){
+        return size == 0 ? 2.5 : (double) literacySum / size;
+    }
+
+    public double getAverageSocialEmotional(){
+        return size == 0 ? 2.5 : (double) socialEmotionalSum / size;
+    }
+
+    public double getProportionMale(){
+        if(maleCount == 0 && femaleCount == 0) return 0.5;
+        return (double) maleCount / (maleCount + femaleCount);
+    }
+}
@@ -0,0 +1,223 @@
+package com.edumentic.classbuilder.solution;
+
+import com.edumentic.classbuilder.model.Gender;
+import com.edumentic.classbuilder.model.Student;
+import com.edumentic.classbuilder.model.StudentClass;
+import org.optaplanner.core.api.score.buildin.hardsoft.HardSoftScore;
+import org.optaplanner.core.api.score.stream.Constraint;
+import org.optaplanner.core.api.score.stream.ConstraintCollectors;
+import org.optaplanner.core.api.score.stream.ConstraintFactory;
+import org.optaplanner.core.api.score.stream.ConstraintProvider;
+import org.optaplanner.core.api.score.stream.Joiners;
+import org.optaplanner.core.api.score.stream.quad.QuadConstraintStream;
+import org.optaplanner.core.api.score.stream.tri.TriConstraintStream;
+import org.optaplanner.core.api.score.stream.uni.UniConstraintStream;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+/**
+ * Constraint streams formulation of the rules in {@link SolutionScoreCalculator}, so that OptaPlanner can
+ * score moves incrementally and report individual constraint matches.
+ *
+ * <p>
+ *     Every constraint is defined, and each one checks the solution's {@link ConstraintSnapshot} problem fact
+ *     for whether it is enabled and for its limits. A snapshot swapped in by a problem change is therefore picked
+ *     up incrementally, like any other fact change, without rebuilding the solver.
+ * </p>
+ *
+ * <p>
+ *     Each constraint is scored on its own, so soft constraints count while hard ones are broken, exactly as in
+ *     {@link SolutionScoreCalculator}: every solution scores the same under both, and picking this one only
+ *     changes the speed of a solve.
+ * </p>
+ */
+public class ClassBuilderConstraintProvider implements ConstraintProvider {
+
+    @Override
+    public Constraint[] defineConstraints(ConstraintFactory constraintFactory) {
+        return new Constraint[]{
+                minimumClassSize(constraintFactory),
+                emptyClass(constraintFactory),
+                maximumClassSize(constraintFactory),
+                cannotBeWith(constraintFactory),
+                mustIncludeFriends(constraintFactory),
+                shouldIncludeFriends(constraintFactory),
+                avoidBeingWith(constraintFactory),
+                balanceAverage(constraintFactory, Student::getNumeracy, ConstraintSnapshot::isBalanceNumeracy,
+                        "Balance numeracy"),
+                balanceAverage(constraintFactory, Student::getLiteracy, ConstraintSnapshot::isBalanceLiteracy,
+                        "Balance literacy"),
+                balanceAverage(constraintFactory, Student::getSocialEmotional, ConstraintSnapshot::isBalanceSocialEmotional,
+                        "Balance social emotional"),
+                balanceGender(constraintFactory)
+        };
+    }
+
+    // ************************************************************************
+    // Hard constraints
+    // ************************************************************************
+
+    Constraint minimumClassSize(ConstraintFactory constraintFactory){
+        return assigned(constraintFactory)
+                .groupBy(StudentClassAssignment::getStudentClass, ConstraintCollectors.count())
+                .join(ConstraintSnapshot.class,
+                        Joiners.filtering((studentClass, size, constraints) -> size < constraints.getMinClassSize()))
+                .penalize(HardSoftScore.ONE_HARD, (studentClass, size, constraints) -> constraints.getMinClassSize() - size)
+                .asConstraint("Minimum class size");
+    }
+
+    /**
+     * A class nobody is assigned to never shows up in a group-by over assignments, so it is penalised separately.
+     */
+    Constraint emptyClass(ConstraintFactory constraintFactory){
+        return constraintFactory.forEach(StudentClass.class)
+                .ifNotExists(StudentClassAssignment.class,
+                        Joiners.equal(Function.identity(), StudentClassAssignment::getStudentClass))
+                .join(ConstraintSnapshot.class)
+                .penalize(HardSoftScore.ONE_HARD, (studentClass, constraints) -> Math.max(constraints.getMinClassSize(), 0))
+                .asConstraint("Empty class");
+    }
+
+    Constraint maximumClassSize(ConstraintFactory constraintFactory){
+        return assigned(constraintFactory)
+                .groupBy(StudentClassAssignment::getStudentClass, ConstraintCollectors.count())
+                .join(ConstraintSnapshot.class,
+                        Joiners.filtering((studentClass, size, constraints) -> size > constraints.getMaxClassSize()))
+                .penalize(HardSoftScore.ONE_HARD, (studentClass, size, constraints) -> size - constraints.getMaxClassSize())
+                .asConstraint("Maximum class size");
+    }
+
+    Constraint cannotBeWith(ConstraintFactory constraintFactory){
+        return together(constraintFactory, Student::getCannotBeWith)
+                .ifExists(ConstraintSnapshot.class,
+                        Joiners.filtering((assignment, studentClass, named, other, constraints) -> constraints.isMustAvoidOthers()))
+                .penalize(HardSoftScore.ONE_HARD)
+                .asConstraint("Cannot be with");
+    }
+
+    Constraint mustIncludeFriends(ConstraintFactory constraintFactory){
+        return related(constraintFactory, Student::getMustIncludeFriends)
+                .filter((assignment, studentClass, named, other) -> studentClass != other.getStudentClass())
+                .ifExists(ConstraintSnapshot.class,
+                        Joiners.filtering((assignment, studentClass, named, other, constraints) -> constraints.isMustIncludeOthers()))
+                .penalize(HardSoftScore.ONE_HARD)
+                .asConstraint("Must include friends");
+    }
+
+    // ************************************************************************
+    // Soft constraints
+    // ************************************************************************
+
+    Constraint shouldIncludeFriends(ConstraintFactory constraintFactory){
+        return together(constraintFactory, Student::getShouldIncludeFriends)
+                .ifExists(ConstraintSnapshot.class,
+                        Joiners.filtering((assignment, studentClass, named, other, constraints) -> constraints.isShouldIncludeOthers()))
+                .reward(HardSoftScore.ONE_SOFT)
+                .asConstraint("Should include friends");
+    }
+
+    Constraint avoidBeingWith(ConstraintFactory constraintFactory){
+        return together(constraintFactory, Student::getAvoidBeingWith)
+                .ifExists(ConstraintSnapshot.class,
+                        Joiners.filtering((assignment, studentClass, named, other, constraints) -> constraints.isShouldAvoidOthers()))
+                .penalize(HardSoftScore.ONE_SOFT)
+                .asConstraint("Avoid being with");
+    }
+
+    Constraint balanceAverage(ConstraintFactory constraintFactory, ToIntFunction<Student> metric,
+                              Predicate<ConstraintSnapshot> enabled, String constraintName){
+        return assigned(constraintFactory)
+                .groupBy(StudentClassAssignment::getStudentClass,
+                        ConstraintCollectors.average((StudentClassAssignment assignment) -> metric.applyAsInt(assignment.getStudent())))
+                .groupBy(ConstraintCollectors.toMap((studentClass, average) -> studentClass, (studentClass, average) -> average,
+                        (first, second) -> first))
+                .join(constraintFactory.forEach(StudentClass.class).groupBy(ConstraintCollectors.toList()))
+                .join(ConstraintSnapshot.class, Joiners.filtering((metricByClass, studentClasses, constraints) -> enabled.test(constraints)))
+                .penalize(HardSoftScore.ONE_SOFT, (metricByClass, studentClasses, constraints) ->
+                        variancePenaltyFor(metricByClass, studentClasses, 2.5, constraints))
+                .asConstraint(constraintName);
+    }
+
+    Constraint balanceGender(ConstraintFactory constraintFactory){
+        return assigned(constraintFactory)
+                .groupBy(StudentClassAssignment::getStudentClass,
+                        ConstraintCollectors.conditionally(a -> a.getStudent().getGender() == Gender.MALE, ConstraintCollectors.count()),
+                        ConstraintCollectors.conditionally(a -> a.getStudent().getGender() == Gender.FEMALE, ConstraintCollectors.count()))
+                .filter((studentClass, males, females) -> males + females > 0)
+                .groupBy(ConstraintCollectors.toMap((studentClass, males, females) -> studentClass,
+                        (studentClass, males, females) -> (double) males / (males + females),
+                        (first, second) -> first))
+                .join(constraintFactory.forEach(StudentClass.class).groupBy(ConstraintCollectors.toList()))
+                .join(ConstraintSnapshot.class, Joiners.filtering((metricByClass, studentClasses, constraints) -> constraints.isBalanceGender()))
+                .penalize(HardSoftScore.ONE_SOFT, (metricByClass, studentClasses, constraints) ->
+                        variancePenaltyFor(metricByClass, studentClasses, 0.5, constraints))
+                .asConstraint("Balance gender");
+    }
+
+    // ************************************************************************
+    // Helpers
+    // ************************************************************************
+
+    /**
+     * Assignments of students who have been placed. A student's class is a shadow variable, so OptaPlanner
+     * counts their assignment as initialized even while their group is still unassigned.
+     */
+    private static UniConstraintStream<StudentClassAssignment> assigned(ConstraintFactory constraintFactory){
+        return constraintFactory.forEach(StudentClassAssignment.class)
+                .filter(assignment -> assignment.getStudentClass() != null);
+    }
+
+    /**
+     * Pairs each assignment, and its class, with the assignment of every student its relationship list names, once
+     * for each time they are named. A student naming themselves is paired with their own assignment, as in
+     * {@link SolutionScoreCalculator}.
+     * <p>
+     *     The list is flattened into one tuple per named student, so the join to the named student's assignment is
+     *     indexed on the student instead of testing every pair of assignments. The class is part of the group key,
+     *     so a tuple is replaced whenever its student moves.
+     * </p>
+     */
+    private static QuadConstraintStream<StudentClassAssignment, StudentClass, Student, StudentClassAssignment> related(
+            ConstraintFactory constraintFactory, Function<Student, List<Student>> relationship){
+        return named(constraintFactory, relationship)
+                .join(assigned(constraintFactory),
+                        Joiners.equal((assignment, studentClass, named) -> named, StudentClassAssignment::getStudent));
+    }
+
+    /**
+     * As {@link #related}, but only the pairs in the same class.
+     */
+    private static QuadConstraintStream<StudentClassAssignment, StudentClass, Student, StudentClassAssignment> together(
+            ConstraintFactory constraintFactory, Function<Student, List<Student>> relationship){
+        return named(constraintFactory, relationship)
+                .join(assigned(constraintFactory),
+                        Joiners.equal((assignment, studentClass, named) -> named, StudentClassAssignment::getStudent),
+                        Joiners.equal((assignment, studentClass, named) -> studentClass, StudentClassAssignment::getStudentClass));
+    }
+
+    private static TriConstraintStream<StudentClassAssignment, StudentClass, Student> named(
+            ConstraintFactory constraintFactory, Function<Student, List<Student>> relationship){
+        return assigned(constraintFactory)
+                .filter(assignment -> hasAny(relationship.apply(assignment.getStudent())))
+                .groupBy(Function.identity(), StudentClassAssignment::getStudentClass,
+                        assignment -> relationship.apply(assignment.getStudent()))
+                .flattenLast(named -> named);
+    }
+
+    private static boolean hasAny(List<Student> students){
+        return students != null && !students.isEmpty();
+    }
+
+    private static int variancePenaltyFor(Map<StudentClass, Double> metricByClass, List<StudentClass> studentClasses,
+                                          double emptyClassMetric, ConstraintSnapshot constraints){
+        double[] classMetrics = new double[studentClasses.size()];
+        for(int i = 0; i < classMetrics.length; i++){
+            classMetrics[i] = metricByClass.getOrDefault(studentClasses.get(i), emptyClassMetric);
+        }
+        return SolutionScoreCalculator.variancePenaltyFor(classMetrics, constraints.getClassMetricVarianceSensitivity());
+    }
+}
@@ -4,6 +4,12 @@ import lombok.Getter;
 import lombok.Setter;
 import lombok.ToString;
 
+/**
+ * The user-editable constraint settings, bound to the controls in the view.
+ * <p>
+ *     Scoring never reads this directly: each solve works from an immutable {@link ConstraintSnapshot} of it.
+ * </p>
+ */
 @Getter
 @Setter
 @ToString
@@ -1,20 +1,25 @@
 package com.edumentic.classbuilder.solution;
 
-import com.edumentic.classbuilder.model.Gender;
 import com.edumentic.classbuilder.model.Student;
 import com.edumentic.classbuilder.model.StudentClass;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 import org.optaplanner.core.api.domain.solution.PlanningEntityCollectionProperty;
 import org.optaplanner.core.api.domain.solution.PlanningScore;
 import org.optaplanner.core.api.domain.solution.PlanningSolution;
 import org.optaplanner.core.api.domain.solution.ProblemFactCollectionProperty;
+import org.optaplanner.core.api.domain.solution.ProblemFactProperty;
 import org.optaplanner.core.api.domain.valuerange.ValueRangeProvider;
 import org.optaplanner.core.api.score.buildin.hardsoft.HardSoftScore;
 
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
 
 /**
  * The {@code ClassBuilderSolution} describes the overall planning solution for the student-class allocation problem
@@ -23,8 +28,10 @@ import java.util.List;
  * <p>
  *    This solution consists of:
  *    <ul>
- *       <li>A {@code List<StudentClassAssignment>} which represents the planning entities—each item is an individual student assignment to a class.
- *           These must be pre-populated at the start, with typically one assignment per student.</li>
+ *       <li>A {@code List<StudentClassAssignment>} which represents each individual student's assignment to a class,
+ *           with one assignment per student.</li>
+ *       <li>A {@code List<StudentGroupAssignment>} which represents the planning entities the solver moves—groups of
+ *           students that must share a class. Each student's assignment follows their group.</li>
  *       <li>A {@code List<StudentClass>} which holds all the available classes that students could be assigned to.
  *           This collection acts as a value range for class assignment, and should include enough classes to cover the minimum required per optimization rules.</li>
  *       <li>A {@code HardSoftScore} which is computed as the solution score, reflecting adherence to hard constraints (must haves)
@@ -41,7 +48,7 @@ import java.util.List;
  *   <li>{@link PlanningScore}: Indicates the final solution score.</li>
  * </ul>
  *
- * <p>To use this class, populate {@code solutionAssignments} (one per student) and {@code availableStudentClasses} prior to solving.
+ * <p>To use this class, create it with {@link #createUnassigned(List, List, ConstraintSnapshot)} prior to solving.
  * OptaPlanner will assign each student to a class, attempting to optimize according to domain constraints/rules.</p>
  */
 @PlanningSolution
@@ -58,6 +65,16 @@ public class ClassBuilderSolution {
     @PlanningEntityCollectionProperty
     private List<StudentClassAssignment> assignments = new ArrayList<>();
 
+    /**
+     * The groups the solver places, which between them hold every assignment exactly once.
+     * <p>
+     *     Each assignment's class follows its group's (see {@link StudentGroupAssignment}). Build these with
+     *     {@link #createUnassigned(List, List, ConstraintSnapshot)}.
+     * </p>
+     */
+    @PlanningEntityCollectionProperty
+    private List<StudentGroupAssignment> groupAssignments = new ArrayList<>();
+
     /**
      * Collection of all classes available for student assignment.
      * <p>
@@ -76,20 +93,266 @@ public class ClassBuilderSolution {
     @PlanningScore
     private HardSoftScore score;
 
-    private String scoringReportHtml;
+    /**
+     * The constraint settings this solution is scored against, captured when the solve starts.
+     * <p>
+     *     Replaced (never mutated) through a problem change when the settings are edited mid-solve.
+     * </p>
+     */
+    @ProblemFactProperty
+    private ConstraintSnapshot constraintSnapshot;
+
+    /**
+     * Position of each student's assignment within {@link #assignments}.
+     * <p>
+     *     Positions rather than assignment references are stored, so the index stays valid when OptaPlanner
+     *     makes a planning clone (which copies the list in order but replaces every assignment) and when
+     *     a student's class changes. It is rebuilt lazily whenever a lookup finds it out of step with the list.
+     * </p>
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private Map<Student, Integer> assignmentIndexByStudent;
+
+    /**
+     * Array based copy of the students and classes, compiled on first use and shared by planning clones.
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private CompiledProblem compiledProblem;
+
+    public void setAssignments(List<StudentClassAssignment> assignments){
+        this.assignments = assignments;
+        this.assignmentIndexByStudent = null;
+        this.compiledProblem = null;
+    }
+
+    /**
+     * Creates a solution with every student unassigned, for a construction heuristic to place.
+     * <p>
+     *     When the snapshot has must include enabled, students linked by must include relationships, directly or
+     *     through each other, share one {@link StudentGroupAssignment} and are only ever placed together. Otherwise
+     *     every student is a group of their own.
+     * </p>
+     */
+    public static ClassBuilderSolution createUnassigned(List<Student> students, List<StudentClass> studentClasses,
+                                                        ConstraintSnapshot constraintSnapshot){
+        ClassBuilderSolution solution = new ClassBuilderSolution();
+        solution.setStudentClasses(studentClasses);
+        solution.setConstraintSnapshot(constraintSnapshot);
+        List<StudentClassAssignment> assignments = new ArrayList<>(students.size());
+        for(Student student : students){
+            StudentClassAssignment assignment = new StudentClassAssignment();
+            assignment.setId((long) assignments.size());
+            assignment.setStudent(student);
+            assignments.add(assignment);
+        }
+        solution.setAssignments(assignments);
+
+        CompiledProblem problem = solution.getCompiledProblem();
+        boolean collapseMustInclude = constraintSnapshot.isMustIncludeOthers();
+        int groupCount = collapseMustInclude ? problem.getMustIncludeGroupCount() : students.size();
+        List<StudentGroupAssignment> groups = new ArrayList<>(groupCount);
+        for(int g = 0; g < groupCount; g++){
+            StudentGroupAssignment group = new StudentGroupAssignment();
+            group.setId((long) g);
+            groups.add(group);
+        }
+        for(int s = 0; s < assignments.size(); s++){
+            int g = collapseMustInclude ? problem.mustIncludeGroupOf(s) : s;
+            groups.get(g).getMembers().add(assignments.get(s));
+        }
+        solution.setGroupAssignments(groups);
+        return solution;
+    }
+
+    /**
+     * Creates a solution with each group already in the class {@code seedClassOf} gives all of its members, such
+     * as where they were in an earlier solve, so the solver starts from there rather than from scratch.
+     * <p>
+     *     A group whose members have no seed class, or different ones, is left unassigned for the construction
+     *     heuristic to place. Seeded groups aren't pinned: local search can still move them.
+     * </p>
+     */
+    public static ClassBuilderSolution createSeeded(List<Student> students, List<StudentClass> studentClasses,
+                                                    ConstraintSnapshot constraintSnapshot,
+                                                    Function<Student, StudentClass> seedClassOf){
+        ClassBuilderSolution solution = createUnassigned(students, studentClasses, constraintSnapshot);
+        for(StudentGroupAssignment group : solution.getGroupAssignments()){
+            StudentClass seedClass = seedClassOf.apply(group.getMembers().getFirst().getStudent());
+            for(StudentClassAssignment member : group.getMembers()){
+                if(seedClass == null) break;
+                if(seedClassOf.apply(member.getStudent()) != seedClass) seedClass = null;
+            }
+            if(seedClass == null) continue;
+            group.setStudentClass(seedClass);
+            for(StudentClassAssignment member : group.getMembers()){
+                member.setStudentClass(seedClass);
+            }
+        }
+        return solution;
+    }
+
+    /**
+     * Copies the assignments and groups, with every student in the same class, so the copy can be solved
+     * independently of this solution. Students, classes and the constraint snapshot are shared, as they never
+     * change during a solve. The score is not copied.
+     */
+    public ClassBuilderSolution copy(){
+        ClassBuilderSolution copy = new ClassBuilderSolution();
+        copy.setStudentClasses(studentClasses);
+        copy.setConstraintSnapshot(constraintSnapshot);
+        Map<StudentClassAssignment, StudentClassAssignment> copiedAssignments = new IdentityHashMap<>(assignments.size());
+        List<StudentClassAssignment> assignmentCopies = new ArrayList<>(assignments.size());
+        for(StudentClassAssignment assignment : assignments){
+            StudentClassAssignment assignmentCopy = new StudentClassAssignment();
+            assignmentCopy.setId(assignment.getId());
+            assignmentCopy.setStudent(assignment.getStudent());
+            assignmentCopy.setStudentClass(assignment.getStudentClass());
+            copiedAssignments.put(assignment, assignmentCopy);
+            assignmentCopies.add(assignmentCopy);
+        }
+        copy.setAssignments(assignmentCopies);
+        List<StudentGroupAssignment> groupCopies = new ArrayList<>(groupAssignments.size());
+        for(StudentGroupAssignment group : groupAssignments){
+            StudentGroupAssignment groupCopy = new StudentGroupAssignment();
+            groupCopy.setId(group.getId());
+            groupCopy.setStudentClass(group.getStudentClass());
+            for(StudentClassAssignment member : group.getMembers()){
+                groupCopy.getMembers().add(copiedAssignments.get(member));
+            }
+            groupCopies.add(groupCopy);
+        }
+        copy.setGroupAssignments(groupCopies);
+        return copy;
+    }
+
+    /**
+     * The class id of each student's class, by student id, or {@code -1} for an unassigned student. Together with
+     * the {@link #getCompiledProblem() compiled problem} and the constraint snapshot, this is all that is needed to
+     * rebuild the solution with {@link #fromClassIds(CompiledProblem, ConstraintSnapshot, int[], HardSoftScore)},
+     * at a few bytes per student.
+     */
+    public int[] toClassIds(){
+        CompiledProblem problem = getCompiledProblem();
+        int[] classIds = new int[assignments.size()];
+        for(int s = 0; s < classIds.length; s++){
+            classIds[s] = problem.classIdOf(assignments.get(s).getStudentClass());
+        }
+        return classIds;
+    }
+
+    /**
+     * Rebuilds a solution recorded with {@link #toClassIds()}, grouped as {@code constraintSnapshot} groups it.
+     * The score is taken as given rather than recalculated.
+     */
+    public static ClassBuilderSolution fromClassIds(CompiledProblem problem, ConstraintSnapshot constraintSnapshot,
+                                                    int[] classIds, HardSoftScore score){
+        List<Student> students = new ArrayList<>(problem.getStudentCount());
+        for(int s = 0; s < problem.getStudentCount(); s++){
+            students.add(problem.getStudent(s));
+        }
+        List<StudentClass> classes = new ArrayList<>(problem.getClassCount());
+        for(int c = 0; c < problem.getClassCount(); c++){
+            classes.add(problem.getStudentClass(c));
+        }
+        ClassBuilderSolution solution = createUnassigned(students, classes, constraintSnapshot);
+        for(int s = 0; s < classIds.length; s++){
+            solution.getAssignments().get(s).setStudentClass(problem.getStudentClass(classIds[s]));
+        }
+        // Members of a group always share a class, so any member's class is the group's
+        for(StudentGroupAssignment group : solution.getGroupAssignments()){
+            group.setStudentClass(group.getMembers().getFirst().getStudentClass());
+        }
+        solution.setScore(score);
+        return solution;
+    }
+
+    public void setStudentClasses(List<StudentClass> studentClasses){
+        this.studentClasses = studentClasses;
+        this.compiledProblem = null;
+    }
 
+    /**
+     * Returns the compiled form of this problem, compiling it on first use. Student ids follow the order of
+     * {@link #assignments} and class ids the order of {@link #studentClasses}.
+     * <p>
+     *     Call {@link #invalidateCompiledProblem()} after adding or removing students or classes in place.
+     * </p>
+     */
+    public CompiledProblem getCompiledProblem(){
+        if(compiledProblem == null){
+            compiledProblem = CompiledProblem.compile(
+                    assignments.stream().map(StudentClassAssignment::getStudent).toList(),
+                    studentClasses);
+        }
+        return compiledProblem;
+    }
+
+    public void invalidateCompiledProblem(){
+        compiledProblem = null;
+    }
+
+    /**
+     * @return the captured {@link #constraintSnapshot}
+     * @throws IllegalStateException if this solution was never given one; every solution handed to a solver needs
+     * one, captured where the solve starts
+     */
+    public ConstraintSnapshot requireConstraintSnapshot(){
+        if(constraintSnapshot == null){
+            throw new IllegalStateException("Solution has no constraint snapshot, so it can't be scored");
+        }
+        return constraintSnapshot;
+    }
+
+    /**
+     * Finds the assignment for a student in constant time.
+     *
+     * @throws NoSuchElementException if the student has no assignment in this solution
+     */
+    public StudentClassAssignment getAssignmentFor(Student student){
+        StudentClassAssignment assignment = lookupAssignment(student);
+        if(assignment == null){
+            rebuildAssignmentIndex();
+            assignment = lookupAssignment(student);
+            if(assignment == null){
+                throw new NoSuchElementException("No assignment for student " + student.getName());
+            }
+        }
+        return assignment;
+    }
+
+    public StudentClass getStudentClassFor(Student student){
+        return getAssignmentFor(student).getStudentClass();
+    }
+
+    public boolean isAssigned(Student student){
+        return getStudentClassFor(student) != null;
+    }
+
+    /**
+     * @return true if both students have been placed, in the same class. Students who are still unassigned,
+     * as they are during construction, are not together with anyone.
+     */
     public boolean inSameClass(Student studentA, Student studentB){
-        StudentClass studentAClass = assignments.stream()
-                .filter(a -> a.getStudent() == studentA)
-                .map(StudentClassAssignment::getStudentClass)
-                .findAny()
-                .orElseThrow();
-        StudentClass studentBClass = assignments.stream()
-                .filter(a -> a.getStudent() == studentB)
-                .map(StudentClassAssignment::getStudentClass)
-                .findAny()
-                .orElseThrow();
-        return studentAClass == studentBClass;
+        StudentClass studentClass = getStudentClassFor(studentA);
+        return studentClass != null && studentClass == getStudentClassFor(studentB);
+    }
+
+    private StudentClassAssignment lookupAssignment(Student student){
+        if(assignmentIndexByStudent == null) return null;
+        Integer index = assignmentIndexByStudent.get(student);
+        if(index == null || index >= assignments.size()) return null;
+        StudentClassAssignment assignment = assignments.get(index);
+        return assignment.getStudent() == student ? assignment : null;
+    }
+
+    private void rebuildAssignmentIndex(){
+        Map<Student, Integer> index = new HashMap<>(assignments.size() * 2);
+        for(int i = 0; i < assignments.size(); i++){
+            index.put(assignments.get(i).getStudent(), i);
+        }
+        assignmentIndexByStudent = index;
     }
 
     public List<Student> getStudentsInClass(StudentClass studentClass){
@@ -99,33 +362,50 @@ public class ClassBuilderSolution {
                 .toList();
     }
 
+    /**
+     * Totals every class in a single pass over the assignments.
+     *
+     * @return one aggregate per class, in the same order as {@link #studentClasses}
+     */
+    public ClassAggregate[] getClassAggregates(){
+        CompiledProblem problem = getCompiledProblem();
+        ClassAggregate[] aggregates = new ClassAggregate[studentClasses.size()];
+        for(int i = 0; i < aggregates.length; i++){
+            aggregates[i] = new ClassAggregate();
+        }
+        for(StudentClassAssignment assignment : assignments){
+            int classId = problem.classIdOf(assignment.getStudentClass());
+            if(classId >= 0){
+                aggregates[classId].add(assignment.getStudent());
+            }
+        }
+        return aggregates;
+    }
+
+    public ClassAggregate getClassAggregate(StudentClass sc){
+        ClassAggregate aggregate = new ClassAggregate();
+        for(StudentClassAssignment assignment : assignments){
+            if(assignment.getStudentClass() == sc){
+                aggregate.add(assignment.getStudent());
+            }
+        }
+        return aggregate;
+    }
+
     public double getAverageNumeracyForClass(StudentClass sc){
-        return getStudentsInClass(sc).stream()
-                .mapToDouble(Student::getNumeracy)
-                .average().
-                orElse(2.5);
+        return getClassAggregate(sc).getAverageNumeracy();
     }
 
     public double getAverageLiteracyForClass(StudentClass sc){
-        return getStudentsInClass(sc).stream()
-                .mapToDouble(Student::getLiteracy)
-                .average().
-                orElse(2.5);
+        return getClassAggregate(sc).getAverageLiteracy();
     }
 
     public double getAverageSocialEmotionalForClass(StudentClass sc){
-            return getStudentsInClass(sc).stream()
-                    .mapToDouble(Student::getSocialEmotional)
-                    .average().
-                    orElse(2.5);
+        return getClassAggregate(sc).getAverageSocialEmotional();
     }
 
     public double getProportionMaleForClass(StudentClass sc){
-        List<Student> students = getStudentsInClass(sc);
-        long numMale = students.stream().filter(s -> s.getGender() == Gender.MALE).count();
-        long numFemale = students.stream().filter(s -> s.getGender() == Gender.FEMALE).count();
-        if(numFemale == 0 & numMale == 0) return 0.5;
-        return (double) numMale / (numMale + numFemale);
+        return getClassAggregate(sc).getProportionMale();
     }
 
     public String toPrettyString() {
@@ -162,80 +442,11 @@ public class ClassBuilderSolution {
         );
     }
 
-    public String generateStudentClassMetricReportHtml() {
-        StringBuilder html = new StringBuilder();
-        html.append("<h2 class='cb-section-title'>Class Metrics Summary</h2>");
-        html.append("<table class='cb-metrics-table'><thead><tr>")
-                .append("<th>Class</th>")
-                .append("<th>Avg Numeracy</th>")
-                .append("<th>Avg Literacy</th>")
-                .append("<th>Avg Social Emotional</th>")
-                .append("<th>Proportion Male</th>")
-                .append("</tr></thead><tbody>");
-        for (StudentClass studentClass : studentClasses.stream().sorted(Comparator.comparing(StudentClass::getClassCode)).toList()) {
-            html.append("<tr>");
-            html.append(String.format("<td>%s</td>", studentClass.getClassCode()));
-            html.append(String.format("<td>%.2f</td>", getAverageNumeracyForClass(studentClass)));
-            html.append(String.format("<td>%.2f</td>", getAverageLiteracyForClass(studentClass)));
-            html.append(String.format("<td>%.2f</td>", getAverageSocialEmotionalForClass(studentClass)));
-            html.append(String.format("<td>%.2f</td>", getProportionMaleForClass(studentClass)));
-            html.append("</tr>");
-        }
-        html.append("</tbody></table>");
-        return html.toString();
-    }
-
-
+    /**
+     * @see SolutionReport
+     */
     public String toHtmlReport() {
-        StringBuilder html = new StringBuilder();
-        html.append("<div class='classbuilder-report'>");
-
-        html.append("<h2 class='cb-section-title'>Class Allocations</h2>");
-        html.append("<div class='cb-class-list'>");
-
-        for (StudentClass studentClass : studentClasses.stream().sorted(Comparator.comparing(StudentClass::getClassCode)).toList()) {
-            html.append("<div class='cb-class-block'>");
-            html.append(String.format("<h3 class='cb-class-title'>%s</h3>", studentClass.getClassCode()));
-
-            // Students in this class
-            List<Student> studentsIn = getStudentsInClass(studentClass).stream().sorted(Comparator.comparing(Student::getName)).toList();
-            if (studentsIn.isEmpty()) {
-                html.append("<div class='cb-class-empty'>No students assigned.</div>");
-            } else {
-                html.append("<table class='cb-student-table'><thead><tr><th>Name</th><th>Numeracy</th><th>Literacy</th><th>Social-Emotional</th><th>Gender</th></tr></thead><tbody>");
-                for (Student s : studentsIn) {
-                    html.append(String.format(
-                            "<tr><td class='cb-student-name'>%s</td>" +
-                                    "<td class='cb-metric'>%d</td>" +
-                                    "<td class='cb-metric'>%d</td>" +
-                                    "<td class='cb-metric'>%d</td>" +
-                                    "<td class='cb-metric'>%s</td>" +
-                                    "</tr>",
-                            s.getName(),
-                            s.getNumeracy(),
-                            s.getLiteracy(),
-                            s.getSocialEmotional(),
-                            s.getGender().toString()
-                    ));
-                }
-                html.append("</tbody></table>");
-            }
-            html.append("</div>");
-        }
-        html.append("</div>"); // cb-class-list
-
-        // === Insert constraint table here ===
-        html.append(generateStudentClassMetricReportHtml());
-
-
-        // Scoring report
-        if (scoringReportHtml != null && !scoringReportHtml.isEmpty()) {
-            html.append("<h2 class='cb-section-title'>Scoring Breakdown</h2>");
-            html.append(scoringReportHtml);
-        }
-
-        html.append("</div>");
-        return html.toString();
+        return SolutionReport.of(this).toHtml();
     }
 
 }
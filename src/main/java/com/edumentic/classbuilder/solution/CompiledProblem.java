@@ -0,0 +1,304 @@
+package com.edumentic.classbuilder.solution;
+
+import com.edumentic.classbuilder.model.Gender;
+import com.edumentic.classbuilder.model.RelationshipType;
+import com.edumentic.classbuilder.model.Student;
+import com.edumentic.classbuilder.model.StudentClass;
+import lombok.Getter;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable, array based copy of the problem facts, compiled once per solve for the scoring and move code.
+ *
+ * <p>
+ *     Students and classes are given dense ids ({@code 0..n-1}) in the order they were compiled from.
+ *     Every per-student value is then a primitive column indexed by student id, and each {@link RelationshipType}
+ *     is stored in compressed sparse row (CSR) form: the students named by student {@code s} are
+ *     {@code targets[offsets[s]] .. targets[offsets[s + 1] - 1]}. A reverse CSR of "referrers" lists, for each student,
+ *     who names them, so a move can find every relationship touching the moved student.
+ * </p>
+ *
+ * <p>
+ *     Relationship lists are copied as-is, so duplicates and self references count exactly as they do in
+ *     {@link SolutionScoreCalculator}. The object model is never consulted again once compiled.
+ * </p>
+ */
+public final class CompiledProblem {
+
+    @Getter
+    private final int studentCount;
+    @Getter
+    private final int classCount;
+
+    private final Student[] students;
+    private final StudentClass[] classes;
+    private final Map<Student, Integer> studentIds;
+    private final Map<StudentClass, Integer> classIds;
+
+    private final int[] numeracy;
+    private final int[] literacy;
+    private final int[] socialEmotional;
+    private final byte[] gender;
+
+    private final int[][] relationshipOffsets;
+    private final int[][] relationshipTargets;
+    private final int[][] referrerOffsets;
+    private final int[][] referrerTargets;
+
+    private final int[] mustIncludeGroupOf;
+    private final int[] mustIncludeGroupOffsets;
+    private final int[] mustIncludeGroupMembers;
+
+    private CompiledProblem(List<Student> studentList, List<StudentClass> classList) {
+        studentCount = studentList.size();
+        classCount = classList.size();
+        students = studentList.toArray(new Student[0]);
+        classes = classList.toArray(new StudentClass[0]);
+
+        studentIds = new IdentityHashMap<>(studentCount);
+        for (int i = 0; i < studentCount; i++) {
+            studentIds.put(students[i], i);
+        }
+        classIds = new IdentityHashMap<>(classCount);
+        for (int i = 0; i < classCount; i++) {
+            classIds.put(classes[i], i);
+        }
+
+        numeracy = new int[studentCount];
+        literacy = new int[studentCount];
+        socialEmotional = new int[studentCount];
+        gender = new byte[studentCount];
+        for (int i = 0; i < studentCount; i++) {
+            Student student = students[i];
+            numeracy[i] = student.getNumeracy();
+            literacy[i] = student.getLiteracy();
+            socialEmotional[i] = student.getSocialEmotional();
+            gender[i] = (byte) (student.getGender() == null ? Gender.NA : student.getGender()).ordinal();
+        }
+
+        int relationshipTypeCount = RelationshipType.values().length;
+        relationshipOffsets = new int[relationshipTypeCount][];
+        relationshipTargets = new int[relationshipTypeCount][];
+        referrerOffsets = new int[relationshipTypeCount][];
+        referrerTargets = new int[relationshipTypeCount][];
+        for (RelationshipType type : RelationshipType.values()) {
+            compileRelationship(type);
+        }
+
+        mustIncludeGroupOf = new int[studentCount];
+        int groupCount = compileMustIncludeGroups();
+        mustIncludeGroupOffsets = new int[groupCount + 1];
+        for (int s = 0; s < studentCount; s++) {
+            mustIncludeGroupOffsets[mustIncludeGroupOf[s] + 1]++;
+        }
+        for (int g = 0; g < groupCount; g++) {
+            mustIncludeGroupOffsets[g + 1] += mustIncludeGroupOffsets[g];
+        }
+        mustIncludeGroupMembers = new int[studentCount];
+        int[] fill = new int[groupCount];
+        for (int s = 0; s < studentCount; s++) {
+            int g = mustIncludeGroupOf[s];
+            mustIncludeGroupMembers[mustIncludeGroupOffsets[g] + fill[g]++] = s;
+        }
+    }
+
+    /**
+     * Compiles the given students and classes. Student ids follow the order of {@code students},
+     * class ids the order of {@code classes}.
+     *
+     * @throws IllegalStateException if a student names someone who is not in {@code students}
+     */
+    public static CompiledProblem compile(List<Student> students, List<StudentClass> classes) {
+        return new CompiledProblem(students, classes);
+    }
+
+    private void compileRelationship(RelationshipType type) {
+        int t = type.ordinal();
+        int[] offsets = new int[studentCount + 1];
+        for (int s = 0; s < studentCount; s++) {
+            offsets[s + 1] = offsets[s] + type.of(students[s]).size();
+        }
+        int[] targets = new int[offsets[studentCount]];
+        int[] referrerCounts = new int[studentCount + 1];
+        for (int s = 0; s < studentCount; s++) {
+            int position = offsets[s];
+            for (Student other : type.of(students[s])) {
+                int otherId = studentIdOf(other);
+                targets[position++] = otherId;
+                referrerCounts[otherId + 1]++;
+            }
+        }
+
+        // Reverse CSR: prefix sum the counts into offsets, then fill
+        for (int s = 0; s < studentCount; s++) {
+            referrerCounts[s + 1] += referrerCounts[s];
+        }
+        int[] referrers = new int[targets.length];
+        int[] fill = new int[studentCount];
+        for (int s = 0; s < studentCount; s++) {
+            for (int i = offsets[s]; i < offsets[s + 1]; i++) {
+                int target = targets[i];
+                referrers[referrerCounts[target] + fill[target]++] = s;
+            }
+        }
+
+        relationshipOffsets[t] = offsets;
+        relationshipTargets[t] = targets;
+        referrerOffsets[t] = referrerCounts;
+        referrerTargets[t] = referrers;
+    }
+
+    /**
+     * Unions every must include pair, then numbers the resulting sets densely into {@link #mustIncludeGroupOf}.
+     *
+     * @return the number of groups
+     */
+    private int compileMustIncludeGroups() {
+        int[] parent = new int[studentCount];
+        for (int s = 0; s < studentCount; s++) {
+            parent[s] = s;
+        }
+        int[] offsets = relationshipOffsets(RelationshipType.MUST_INCLUDE);
+        int[] targets = relationshipTargets(RelationshipType.MUST_INCLUDE);
+        for (int s = 0; s < studentCount; s++) {
+            for (int i = offsets[s]; i < offsets[s + 1]; i++) {
+                int rootA = find(parent, s);
+                int rootB = find(parent, targets[i]);
+                if (rootA != rootB) {
+                    parent[Math.max(rootA, rootB)] = Math.min(rootA, rootB);
+                }
+            }
+        }
+        int groupCount = 0;
+        int[] groupOfRoot = new int[studentCount];
+        for (int s = 0; s < studentCount; s++) {
+            int root = find(parent, s);
+            // roots are always the lowest id of their set, so they are numbered before any other member is seen
+            if (root == s) {
+                groupOfRoot[s] = groupCount++;
+            }
+            mustIncludeGroupOf[s] = groupOfRoot[root];
+        }
+        return groupCount;
+    }
+
+    private static int find(int[] parent, int s) {
+        while (parent[s] != s) {
+            parent[s] = parent[parent[s]];
+            s = parent[s];
+        }
+        return s;
+    }
+
+    // ************************************************************************
+    // Ids
+    // ************************************************************************
+
+    public int studentIdOf(Student student) {
+        Integer id = studentIds.get(student);
+        if (id == null) {
+            throw new IllegalStateException("Student " + (student == null ? null : student.getName())
+                    + " is not part of the compiled problem");
+        }
+        return id;
+    }
+
+    /**
+     * @return the class id, or {@code -1} for an unassigned ({@code null}) class
+     */
+    public int classIdOf(StudentClass studentClass) {
+        if (studentClass == null) return -1;
+        Integer id = classIds.get(studentClass);
+        if (id == null) {
+            throw new IllegalStateException("Class " + studentClass.getClassCode() + " is not part of the compiled problem");
+        }
+        return id;
+    }
+
+    public Student getStudent(int studentId) {
+        return students[studentId];
+    }
+
+    public StudentClass getStudentClass(int classId) {
+        return classId < 0 ? null : classes[classId];
+    }
+
+    // ************************************************************************
+    // Metric columns
+    // ************************************************************************
+
+    public int getNumeracy(int studentId) {
+        return numeracy[studentId];
+    }
+
+    public int getLiteracy(int studentId) {
+        return literacy[studentId];
+    }
+
+    public int getSocialEmotional(int studentId) {
+        return socialEmotional[studentId];
+    }
+
+    public boolean isMale(int studentId) {
+        return gender[studentId] == Gender.MALE.ordinal();
+    }
+
+    public boolean isFemale(int studentId) {
+        return gender[studentId] == Gender.FEMALE.ordinal();
+    }
+
+    // ************************************************************************
+    // Relationships (CSR)
+    // ************************************************************************
+
+    /**
+     * @return the offsets array for {@code type}: student {@code s} names
+     * {@link #relationshipTargets(RelationshipType) targets}{@code [offsets[s] .. offsets[s + 1])}
+     */
+    public int[] relationshipOffsets(RelationshipType type) {
+        return relationshipOffsets[type.ordinal()];
+    }
+
+    public int[] relationshipTargets(RelationshipType type) {
+        return relationshipTargets[type.ordinal()];
+    }
+
+    /**
+     * @return the offsets array for the reverse of {@code type}: student {@code s} is named by
+     * {@link #referrerTargets(RelationshipType) referrers}{@code [offsets[s] .. offsets[s + 1])}
+     */
+    public int[] referrerOffsets(RelationshipType type) {
+        return referrerOffsets[type.ordinal()];
+    }
+
+    public int[] referrerTargets(RelationshipType type) {
+        return referrerTargets[type.ordinal()];
+    }
+
+    // ************************************************************************
+    // Must include groups
+    // ************************************************************************
+
+    public int getMustIncludeGroupCount() {
+        return mustIncludeGroupOffsets.length - 1;
+    }
+
+    public int mustIncludeGroupOf(int studentId) {
+        return mustIncludeGroupOf[studentId];
+    }
+
+    /**
+     * @return the offsets array for must include groups: group {@code g} is
+     * {@link #mustIncludeGroupMembers() members}{@code [offsets[g] .. offsets[g + 1])}
+     */
+    public int[] mustIncludeGroupOffsets() {
+        return mustIncludeGroupOffsets;
+    }
+
+    public int[] mustIncludeGroupMembers() {
+        return mustIncludeGroupMembers;
+    }
+}
@@ -0,0 +1,95 @@
+package com.edumentic.classbuilder.solution;
+
+import lombok.Value;
+import org.optaplanner.core.api.domain.lookup.PlanningId;
+import org.optaplanner.core.api.solver.change.ProblemChange;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An immutable copy of {@link ClassBuilderConstraints}, taken when a solve starts and carried on the
+ * {@link ClassBuilderSolution} as a problem fact.
+ *
+ * <p>
+ *     {@link ClassBuilderConstraints} is edited from the FX thread while the solver is running. Scoring only
+ *     ever reads this snapshot, so every score within a solve is calculated against one consistent set of rules,
+ *     and any number of threads can read it without locking. When the settings change mid-solve a new snapshot
+ *     is swapped in through {@link #toProblemChange()} (see {@code RunSolverTask#changeConstraints}), never by
+ *     mutation.
+ * </p>
+ */
+@Value
+public class ConstraintSnapshot {
+
+    private static final AtomicLong REVISIONS = new AtomicLong();
+
+    /**
+     * Increases with every snapshot taken, so OptaPlanner can tell an old snapshot from its replacement.
+     */
+    @PlanningId
+    long revision;
+
+    int minClassSize;
+    int maxClassSize;
+    int classMetricVarianceSensitivity;
+
+    boolean mustIncludeOthers;
+    boolean shouldIncludeOthers;
+    boolean mustAvoidOthers;
+    boolean shouldAvoidOthers;
+    boolean balanceNumeracy;
+    boolean balanceLiteracy;
+    boolean balanceSocialEmotional;
+    boolean balanceGender;
+
+    public static ConstraintSnapshot of(ClassBuilderConstraints constraints) {
+        return new ConstraintSnapshot(REVISIONS.incrementAndGet(),
+                constraints.getMinClassSize(),
+                constraints.getMaxClassSize(),
+                constraints.getClassMetricVarianceSensitivity(),
+                constraints.isMustIncludeOthers(),
+                constraints.isShouldIncludeOthers(),
+                constraints.isMustAvoidOthers(),
+                constraints.isShouldAvoidOthers(),
+                constraints.isBalanceNumeracy(),
+                constraints.isBalanceLiteracy(),
+                constraints.isBalanceSocialEmotional(),
+                constraints.isBalanceGender());
+    }
+
+    /**
+     * @return a copy of this snapshot with different class size limits, as a new revision
+     */
+    public ConstraintSnapshot withClassSizes(int minClassSize, int maxClassSize) {
+        return new ConstraintSnapshot(REVISIONS.incrementAndGet(),
+                minClassSize,
+                maxClassSize,
+                classMetricVarianceSensitivity,
+                mustIncludeOthers,
+                shouldIncludeOthers,
+                mustAvoidOthers,
+                shouldAvoidOthers,
+                balanceNumeracy,
+                balanceLiteracy,
+                balanceSocialEmotional,
+                balanceGender);
+    }
+
+    /**
+     * @return a problem change that swaps this snapshot in for the working solution's, for a running solver
+     */
+    public ProblemChange<ClassBuilderSolution> toProblemChange() {
+        return (workingSolution, problemChangeDirector) -> {
+            problemChangeDirector.removeProblemFact(workingSolution.getConstraintSnapshot(),
+                    previous -> workingSolution.setConstraintSnapshot(null));
+            problemChangeDirector.addProblemFact(this, workingSolution::setConstraintSnapshot);
+        };
+    }
+
+    /**
+     * @return a snapshot of the settings as they are right now
+     */
+    public static ConstraintSnapshot current() {
+        return of(ClassBuilderConstraints.getInstance());
+    }
+}
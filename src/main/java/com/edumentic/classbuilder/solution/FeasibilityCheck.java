@@ -0,0 +1,299 @@
+package com.edumentic.classbuilder.solution;
+
+import com.edumentic.classbuilder.model.RelationshipType;
+import com.edumentic.classbuilder.model.Student;
+import com.edumentic.classbuilder.model.StudentClass;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Finds hard constraints that no allocation can satisfy, before any time is spent solving.
+ *
+ * <p>
+ *     Every problem reported is a proof: the solver could run forever and never reach a feasible (0hard) score.
+ *     Not finding a problem does not prove a feasible allocation exists. The checks are:
+ *     <ul>
+ *         <li>capacity: the classes' minimum and maximum sizes must be able to hold exactly the number of students;</li>
+ *         <li>must include groups (students linked by must include relationships, directly or through each other):
+ *             a group larger than the maximum class size, or containing two students who cannot be together;</li>
+ *         <li>the cannot be with conflict graph: students (or their must include groups) who all cannot be with
+ *             each other need a class each, so a clique larger than the number of classes can't be placed. The
+ *             size of a clique is also a lower bound on the number of colours, here classes, the graph needs.</li>
+ *     </ul>
+ * </p>
+ *
+ * <p>
+ *     Finding the largest clique is NP-hard, so this only looks for cliques larger than the number of classes, and
+ *     only inside the graph's {@code k}-core for {@code k} classes: a vertex with fewer than {@code k} conflicts can
+ *     never be part of such a clique, and peeling those away repeatedly leaves little or nothing to search.
+ *     What is left is searched greedily. This keeps the check well under a second for thousands of students.
+ * </p>
+ */
+public final class FeasibilityCheck {
+
+    // Names listed in a problem before the rest are summarised as "and n others"
+    private static final int MAX_NAMES_LISTED = 12;
+
+    private final CompiledProblem problem;
+    private final ConstraintSnapshot constraints;
+    private final List<String> problems = new ArrayList<>();
+
+    // The units the conflict graph is built over: must include groups when that constraint is on, else students
+    private int unitCount;
+    private int[] unitOf;
+    private int[] unitOffsets;
+    private int[] unitMembers;
+
+    private FeasibilityCheck(List<Student> students, List<StudentClass> classes, ConstraintSnapshot constraints) {
+        this.problem = CompiledProblem.compile(students, classes);
+        this.constraints = constraints;
+    }
+
+    /**
+     * @return a description of each provably unsatisfiable hard constraint, or an empty list if none was found
+     * @throws IllegalStateException if a student names someone who is not in {@code students}
+     */
+    public static List<String> findProblems(List<Student> students, List<StudentClass> classes, ConstraintSnapshot constraints) {
+        FeasibilityCheck check = new FeasibilityCheck(students, classes, constraints);
+        check.checkCapacity();
+        check.compileUnits();
+        if (constraints.isMustIncludeOthers()) {
+            check.checkMustIncludeGroups();
+        }
+        if (constraints.isMustAvoidOthers()) {
+            check.checkConflictCliques();
+        }
+        return check.problems;
+    }
+
+    // ************************************************************************
+    // Capacity
+    // ************************************************************************
+
+    private void checkCapacity() {
+        int studentCount = problem.getStudentCount();
+        int classCount = problem.getClassCount();
+        int min = constraints.getMinClassSize();
+        int max = constraints.getMaxClassSize();
+        if (min > max) {
+            problems.add("The minimum class size (" + min + ") is larger than the maximum (" + max + ")");
+            return;
+        }
+        if (classCount == 0) {
+            if (studentCount > 0) {
+                problems.add("There are " + studentCount + " students but no classes to put them in");
+            }
+            return;
+        }
+        long capacity = (long) classCount * max;
+        if (studentCount > capacity) {
+            problems.add(studentCount + " students cannot fit in " + classCount + " classes of at most " + max
+                    + " (room for " + capacity + ")");
+        }
+        long needed = (long) classCount * min;
+        if (studentCount < needed) {
+            problems.add(classCount + " classes of at least " + min + " need " + needed + " students, but there are only "
+                    + studentCount);
+        }
+    }
+
+    // ************************************************************************
+    // Must include groups
+    // ************************************************************************
+
+    private void compileUnits() {
+        int studentCount = problem.getStudentCount();
+        if (constraints.isMustIncludeOthers()) {
+            unitCount = problem.getMustIncludeGroupCount();
+            unitOffsets = problem.mustIncludeGroupOffsets();
+            unitMembers = problem.mustIncludeGroupMembers();
+            unitOf = new int[studentCount];
+            for (int s = 0; s < studentCount; s++) {
+                unitOf[s] = problem.mustIncludeGroupOf(s);
+            }
+        } else {
+            unitCount = studentCount;
+            unitOffsets = new int[studentCount + 1];
+            unitMembers = new int[studentCount];
+            unitOf = new int[studentCount];
+            for (int s = 0; s < studentCount; s++) {
+                unitOffsets[s + 1] = s + 1;
+                unitMembers[s] = s;
+                unitOf[s] = s;
+            }
+        }
+    }
+
+    private void checkMustIncludeGroups() {
+        int max = constraints.getMaxClassSize();
+        for (int g = 0; g < unitCount; g++) {
+            int size = unitOffsets[g + 1] - unitOffsets[g];
+            if (size > max) {
+                problems.add("These " + size + " students must all be together, but a class holds at most " + max + ": "
+                        + namesOf(unitMembers, unitOffsets[g], unitOffsets[g + 1]));
+            }
+        }
+    }
+
+    // ************************************************************************
+    // Cannot be with conflict graph
+    // ************************************************************************
+
+    private void checkConflictCliques() {
+        int[] offsets = problem.relationshipOffsets(RelationshipType.CANNOT_BE_WITH);
+        int[] targets = problem.relationshipTargets(RelationshipType.CANNOT_BE_WITH);
+
+        // Undirected adjacency between units. A conflict inside one unit can never be avoided.
+        BitSet[] adjacency = new BitSet[unitCount];
+        Set<Long> reportedPairs = new HashSet<>();
+        for (int u = 0; u < unitCount; u++) {
+            adjacency[u] = new BitSet();
+        }
+        for (int s = 0; s < problem.getStudentCount(); s++) {
+            for (int i = offsets[s]; i < offsets[s + 1]; i++) {
+                int other = targets[i];
+                int unit = unitOf[s];
+                int otherUnit = unitOf[other];
+                if (unit == otherUnit) {
+                    // A names B and B names A is one problem
+                    long pair = (long) Math.min(s, other) * problem.getStudentCount() + Math.max(s, other);
+                    if (reportedPairs.add(pair)) {
+                        reportUnavoidableConflict(s, other);
+                    }
+                } else {
+                    adjacency[unit].set(otherUnit);
+                    adjacency[otherUnit].set(unit);
+                }
+            }
+        }
+
+        int classCount = problem.getClassCount();
+        if (classCount == 0) return;
+        BitSet core = kCore(adjacency, classCount);
+        BitSet clique = largestCliqueBeyond(adjacency, core, classCount);
+        if (clique != null) {
+            problems.add(describeClique(clique, classCount));
+        }
+    }
+
+    private void reportUnavoidableConflict(int student, int other) {
+        Student s = problem.getStudent(student);
+        if (student == other) {
+            problems.add(s.getName() + " is listed as a student they cannot be with");
+        } else {
+            problems.add(s.getName() + " cannot be with " + problem.getStudent(other).getName()
+                    + ", but they must be together through must include relationships");
+        }
+    }
+
+    /**
+     * Repeatedly removes every vertex with fewer than {@code k} neighbours left.
+     *
+     * @return the vertices that remain
+     */
+    private static BitSet kCore(BitSet[] adjacency, int k) {
+        int vertexCount = adjacency.length;
+        int[] degree = new int[vertexCount];
+        BitSet core = new BitSet(vertexCount);
+        int[] stack = new int[vertexCount];
+        int top = 0;
+        for (int v = 0; v < vertexCount; v++) {
+            degree[v] = adjacency[v].cardinality();
+            if (degree[v] < k) {
+                stack[top++] = v;
+            } else {
+                core.set(v);
+            }
+        }
+        while (top > 0) {
+            int removed = stack[--top];
+            for (int n = adjacency[removed].nextSetBit(0); n >= 0; n = adjacency[removed].nextSetBit(n + 1)) {
+                if (core.get(n) && --degree[n] < k) {
+                    core.clear(n);
+                    stack[top++] = n;
+                }
+            }
+        }
+        return core;
+    }
+
+    /**
+     * Greedily grows a clique from each vertex of {@code core}, adding each neighbour still adjacent to the whole
+     * clique, most connected first.
+     *
+     * @return the largest clique found if it has more than {@code k} vertices, otherwise {@code null}
+     */
+    private static BitSet largestCliqueBeyond(BitSet[] adjacency, BitSet core, int k) {
+        int[] coreDegree = new int[adjacency.length];
+        for (int v = core.nextSetBit(0); v >= 0; v = core.nextSetBit(v + 1)) {
+            BitSet neighbours = (BitSet) adjacency[v].clone();
+            neighbours.and(core);
+            coreDegree[v] = neighbours.cardinality();
+        }
+        int[] byDegree = core.stream().boxed()
+                .sorted((a, b) -> Integer.compare(coreDegree[b], coreDegree[a]))
+                .mapToInt(Integer::intValue)
+                .toArray();
+
+        BitSet best = null;
+        int bestSize = k;
+        for (int v : byDegree) {
+            if (coreDegree[v] + 1 <= bestSize) break;
+            BitSet candidates = (BitSet) adjacency[v].clone();
+            candidates.and(core);
+            BitSet clique = new BitSet();
+            clique.set(v);
+            for (int u : byDegree) {
+                if (candidates.isEmpty()) break;
+                if (candidates.get(u)) {
+                    clique.set(u);
+                    candidates.and(adjacency[u]);
+                }
+            }
+            if (clique.cardinality() > bestSize) {
+                best = clique;
+                bestSize = clique.cardinality();
+            }
+        }
+        return best;
+    }
+
+    private String describeClique(BitSet clique, int classCount) {
+        List<String> units = new ArrayList<>();
+        boolean anyGroup = false;
+        for (int u = clique.nextSetBit(0); u >= 0; u = clique.nextSetBit(u + 1)) {
+            int from = unitOffsets[u];
+            int to = unitOffsets[u + 1];
+            if (to - from == 1) {
+                units.add(problem.getStudent(unitMembers[from]).getName());
+            } else {
+                units.add("(" + namesOf(unitMembers, from, to) + ")");
+                anyGroup = true;
+            }
+        }
+        return units.size() + (anyGroup ? " students or must include groups" : " students")
+                + " cannot be with each other, so they need " + units.size()
+                + " classes but there are only " + classCount + ": " + listed(units);
+    }
+
+    private String namesOf(int[] members, int from, int to) {
+        List<String> names = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            names.add(problem.getStudent(members[i]).getName());
+        }
+        return listed(names);
+    }
+
+    private static String listed(List<String> names) {
+        if (names.size() <= MAX_NAMES_LISTED) {
+            return String.join(", ", names);
+        }
+        return names.stream().limit(MAX_NAMES_LISTED).collect(Collectors.joining(", "))
+                + " and " + (names.size() - MAX_NAMES_LISTED) + " others";
+    }
+}
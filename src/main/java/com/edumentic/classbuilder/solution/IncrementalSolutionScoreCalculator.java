@@ -0,0 +1,255 @@
+package com.edumentic.classbuilder.solution;
+
+import com.edumentic.classbuilder.model.RelationshipType;
+import org.optaplanner.core.api.score.buildin.hardsoft.HardSoftScore;
+import org.optaplanner.core.api.score.calculator.IncrementalScoreCalculator;
+
+/**
+ * Incremental equivalent of {@link SolutionScoreCalculator}.
+ *
+ * <p>
+ *     Rather than rescanning every assignment on every move, this calculator keeps running tallies that are
+ *     updated only for the student whose class changed:
+ *     <ul>
+ *         <li>a {@link ClassAggregate} per class, from which the class-size and balance constraints are
+ *             scored exactly as {@link SolutionScoreCalculator} scores them;</li>
+ *         <li>per-relationship counts of how many (student, other) pairs are currently together or apart.</li>
+ *     </ul>
+ *     All state is held in primitive arrays indexed by the ids of the solution's {@link CompiledProblem},
+ *     including the current class of every student, so a move never walks the object model.
+ *     Relationships are directed, exactly as in {@link SolutionScoreCalculator}, so the compiled referrer
+ *     lists are used to find every student that refers to the one being moved.
+ * </p>
+ *
+ * <p>
+ *     Constraint enable flags and size limits are read from the solution's {@link ConstraintSnapshot} when the
+ *     score is calculated rather than when the tallies are updated, so a snapshot swapped in by a problem change
+ *     takes effect without rebuilding the tallies.
+ *     The resulting score is identical to {@link SolutionScoreCalculator}'s, soft constraints included while a
+ *     hard constraint is broken.
+ * </p>
+ */
+public class IncrementalSolutionScoreCalculator implements IncrementalScoreCalculator<ClassBuilderSolution, HardSoftScore> {
+
+    private static final int MUST_INCLUDE = RelationshipType.MUST_INCLUDE.ordinal();
+    private static final int SHOULD_INCLUDE = RelationshipType.SHOULD_INCLUDE.ordinal();
+    private static final int CANNOT_BE_WITH = RelationshipType.CANNOT_BE_WITH.ordinal();
+    private static final int AVOID_BEING_WITH = RelationshipType.AVOID_BEING_WITH.ordinal();
+
+    private ClassBuilderSolution workingSolution;
+    private CompiledProblem problem;
+
+    // current class id of each student, -1 when unassigned
+    private int[] classOf;
+
+    // indexed by class id
+    private ClassAggregate[] classAggregates;
+
+    // indexed by RelationshipType ordinal: together counts, except MUST_INCLUDE which counts pairs apart
+    private final int[] relationshipCounts = new int[RelationshipType.values().length];
+    private int[][] relationshipOffsets;
+    private int[][] relationshipTargets;
+    private int[][] referrerOffsets;
+    private int[][] referrerTargets;
+
+    private double[] classMetrics;
+
+    @Override
+    public void resetWorkingSolution(ClassBuilderSolution workingSolution) {
+        this.workingSolution = workingSolution;
+        problem = workingSolution.getCompiledProblem();
+        int studentCount = problem.getStudentCount();
+        int classCount = problem.getClassCount();
+
+        classOf = new int[studentCount];
+        classAggregates = new ClassAggregate[classCount];
+        for(int c = 0; c < classCount; c++){
+            classAggregates[c] = new ClassAggregate();
+        }
+        classMetrics = new double[classCount];
+
+        int relationshipTypeCount = RelationshipType.values().length;
+        relationshipOffsets = new int[relationshipTypeCount][];
+        relationshipTargets = new int[relationshipTypeCount][];
+        referrerOffsets = new int[relationshipTypeCount][];
+        referrerTargets = new int[relationshipTypeCount][];
+        for(RelationshipType type : RelationshipType.values()){
+            relationshipOffsets[type.ordinal()] = problem.relationshipOffsets(type);
+            relationshipTargets[type.ordinal()] = problem.relationshipTargets(type);
+            referrerOffsets[type.ordinal()] = problem.referrerOffsets(type);
+            referrerTargets[type.ordinal()] = problem.referrerTargets(type);
+        }
+
+        // Tally class membership first so that relationship checks see every student in place,
+        // then count each directed relationship exactly once from its owning student.
+        for(StudentClassAssignment assignment : workingSolution.getAssignments()){
+            int student = problem.studentIdOf(assignment.getStudent());
+            classOf[student] = problem.classIdOf(assignment.getStudentClass());
+            insertIntoClass(student);
+        }
+        relationshipCounts[MUST_INCLUDE] = 0;
+        relationshipCounts[SHOULD_INCLUDE] = 0;
+        relationshipCounts[CANNOT_BE_WITH] = 0;
+        relationshipCounts[AVOID_BEING_WITH] = 0;
+        for(int student = 0; student < studentCount; student++){
+            relationshipCounts[MUST_INCLUDE] += countApart(student, MUST_INCLUDE);
+            relationshipCounts[SHOULD_INCLUDE] += countTogether(student, SHOULD_INCLUDE);
+            relationshipCounts[CANNOT_BE_WITH] += countTogether(student, CANNOT_BE_WITH);
+            relationshipCounts[AVOID_BEING_WITH] += countTogether(student, AVOID_BEING_WITH);
+        }
+    }
+
+    @Override
+    public void beforeEntityAdded(Object entity) {
+        // Nothing to do until the entity is in the working solution
+    }
+
+    @Override
+    public void afterEntityAdded(Object entity) {
+        // The compiled problem has no slot for a new student, so recompile and start over
+        workingSolution.invalidateCompiledProblem();
+        resetWorkingSolution(workingSolution);
+    }
+
+    @Override
+    public void beforeVariableChanged(Object entity, String variableName) {
+        // A group's change reaches each of its members through their shadow variable, which is scored here
+        if(!(entity instanceof StudentClassAssignment assignment)) return;
+        retract(problem.studentIdOf(assignment.getStudent()));
+    }
+
+    @Override
+    public void afterVariableChanged(Object entity, String variableName) {
+        if(!(entity instanceof StudentClassAssignment assignment)) return;
+        int student = problem.studentIdOf(assignment.getStudent());
+        classOf[student] = problem.classIdOf(assignment.getStudentClass());
+        insert(student);
+    }
+
+    @Override
+    public void beforeEntityRemoved(Object entity) {
+        // Nothing to do until the entity has left the working solution
+    }
+
+    @Override
+    public void afterEntityRemoved(Object entity) {
+        workingSolution.invalidateCompiledProblem();
+        resetWorkingSolution(workingSolution);
+    }
+
+    @Override
+    public HardSoftScore calculateScore() {
+        ConstraintSnapshot constraints = workingSolution.requireConstraintSnapshot();
+
+        // Hard constraints - class size checks
+        int hardScore = -SolutionScoreCalculator.classSizePenaltyFor(classAggregates, constraints);
+
+        // Student assignment constraints
+        if(constraints.isMustAvoidOthers()){
+            hardScore -= relationshipCounts[CANNOT_BE_WITH];
+        }
+        if(constraints.isMustIncludeOthers()){
+            hardScore -= relationshipCounts[MUST_INCLUDE];
+        }
+
+        // Soft constraints
+        int softScore = 0;
+        if(constraints.isShouldIncludeOthers()){
+            softScore += relationshipCounts[SHOULD_INCLUDE];
+        }
+        if(constraints.isShouldAvoidOthers()){
+            softScore -= relationshipCounts[AVOID_BEING_WITH];
+        }
+        softScore -= SolutionScoreCalculator.balancePenaltyFor(classAggregates, constraints, classMetrics);
+        return HardSoftScore.of(hardScore, softScore);
+    }
+
+    private void insert(int student){
+        insertIntoClass(student);
+        relationshipCounts[MUST_INCLUDE] += countApart(student, MUST_INCLUDE) + countApartFromReferrers(student, MUST_INCLUDE);
+        relationshipCounts[SHOULD_INCLUDE] += countTogether(student, SHOULD_INCLUDE) + countTogetherWithReferrers(student, SHOULD_INCLUDE);
+        relationshipCounts[CANNOT_BE_WITH] += countTogether(student, CANNOT_BE_WITH) + countTogetherWithReferrers(student, CANNOT_BE_WITH);
+        relationshipCounts[AVOID_BEING_WITH] += countTogether(student, AVOID_BEING_WITH) + countTogetherWithReferrers(student, AVOID_BEING_WITH);
+    }
+
+    private void retract(int student){
+        relationshipCounts[MUST_INCLUDE] -= countApart(student, MUST_INCLUDE) + countApartFromReferrers(student, MUST_INCLUDE);
+        relationshipCounts[SHOULD_INCLUDE] -= countTogether(student, SHOULD_INCLUDE) + countTogetherWithReferrers(student, SHOULD_INCLUDE);
+        relationshipCounts[CANNOT_BE_WITH] -= countTogether(student, CANNOT_BE_WITH) + countTogetherWithReferrers(student, CANNOT_BE_WITH);
+        relationshipCounts[AVOID_BEING_WITH] -= countTogether(student, AVOID_BEING_WITH) + countTogetherWithReferrers(student, AVOID_BEING_WITH);
+        retractFromClass(student);
+    }
+
+    private void insertIntoClass(int student){
+        int c = classOf[student];
+        if(c >= 0) classAggregates[c].add(problem, student);
+    }
+
+    private void retractFromClass(int student){
+        int c = classOf[student];
+        if(c >= 0) classAggregates[c].remove(problem, student);
+    }
+
+    /**
+     * Counts the students named by {@code student} who share its class. An unassigned student, during
+     * construction, is together with nobody.
+     */
+    private int countTogether(int student, int type){
+        int studentClass = classOf[student];
+        if(studentClass < 0) return 0;
+        int[] offsets = relationshipOffsets[type];
+        int[] targets = relationshipTargets[type];
+        int count = 0;
+        for(int i = offsets[student]; i < offsets[student + 1]; i++){
+            if(classOf[targets[i]] == studentClass) count++;
+        }
+        return count;
+    }
+
+    /**
+     * Counts the students named by {@code student} who are placed in another class. Relationships with an
+     * unassigned student are neither together nor apart.
+     */
+    private int countApart(int student, int type){
+        int studentClass = classOf[student];
+        if(studentClass < 0) return 0;
+        int[] offsets = relationshipOffsets[type];
+        int[] targets = relationshipTargets[type];
+        int count = 0;
+        for(int i = offsets[student]; i < offsets[student + 1]; i++){
+            int otherClass = classOf[targets[i]];
+            if(otherClass >= 0 && otherClass != studentClass) count++;
+        }
+        return count;
+    }
+
+    /**
+     * Counts relationships owned by other students that point at {@code student}.
+     * A student naming themselves is already counted by their own list, so those are skipped here.
+     */
+    private int countTogetherWithReferrers(int student, int type){
+        int studentClass = classOf[student];
+        if(studentClass < 0) return 0;
+        int[] offsets = referrerOffsets[type];
+        int[] referrers = referrerTargets[type];
+        int count = 0;
+        for(int i = offsets[student]; i < offsets[student + 1]; i++){
+            int other = referrers[i];
+            if(other != student && classOf[other] == studentClass) count++;
+        }
+        return count;
+    }
+
+    private int countApartFromReferrers(int student, int type){
+        int studentClass = classOf[student];
+        if(studentClass < 0) return 0;
+        int[] offsets = referrerOffsets[type];
+        int[] referrers = referrerTargets[type];
+        int count = 0;
+        for(int i = offsets[student]; i < offsets[student + 1]; i++){
+            int other = referrers[i];
+            if(other != student && classOf[other] >= 0 && classOf[other] != studentClass) count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,180 @@
+package com.edumentic.classbuilder.solution;
+
+import com.edumentic.classbuilder.model.RelationshipType;
+import com.edumentic.classbuilder.model.StudentClass;
+import org.optaplanner.core.api.score.director.ScoreDirector;
+import org.optaplanner.core.impl.partitionedsearch.partitioner.SolutionPartitioner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Splits a whole cohort into parts that can be solved independently and in parallel, for a partitioned search.
+ *
+ * <p>
+ *     Students are only ever split along the connected components of the relationship graph: two students related
+ *     in any way, in either direction and whether or not that constraint is on, always end up in the same part, so
+ *     no relationship is lost by solving the parts separately. Components are then packed into
+ *     {@link #setPartCount(int) partCount} parts of similar size, largest first, each into the part with the fewest
+ *     students so far. Most students have few relationships, so the many small components fill the parts evenly.
+ *     With fewer components than parts, the whole cohort is one part instead.
+ * </p>
+ *
+ * <p>
+ *     Every part places its students across all the classes, with the class size limits scaled by its share of
+ *     the students, so a part that balances its own students across the classes leaves the merged solution roughly
+ *     balanced too. The balance between parts is left to the phases that run after the partitioned search.
+ * </p>
+ */
+public class RelationshipPartitioner implements SolutionPartitioner<ClassBuilderSolution> {
+
+    private int partCount = 4;
+
+    /**
+     * Set from the profile's {@code partitionCount}, through the partitioned search's custom properties.
+     */
+    public void setPartCount(int partCount) {
+        this.partCount = partCount;
+    }
+
+    @Override
+    public List<ClassBuilderSolution> splitWorkingSolution(ScoreDirector<ClassBuilderSolution> scoreDirector,
+                                                           Integer runnablePartThreadLimit) {
+        ClassBuilderSolution solution = scoreDirector.getWorkingSolution();
+        CompiledProblem problem = solution.getCompiledProblem();
+        List<List<StudentGroupAssignment>> components = componentsOf(solution);
+        // Stable, so components of equal size keep the workbook's order
+        components.sort(Comparator.comparingInt(RelationshipPartitioner::studentCountOf).reversed());
+
+        // Too few components to fill every part, so the cohort is solved whole (see SolverProfile#forProblem)
+        int parts = components.size() < partCount ? 1 : Math.max(partCount, 1);
+        List<List<StudentGroupAssignment>> partGroups = new ArrayList<>(parts);
+        int[] partSize = new int[parts];
+        for (int p = 0; p < parts; p++) {
+            partGroups.add(new ArrayList<>());
+        }
+        for (List<StudentGroupAssignment> component : components) {
+            int smallest = 0;
+            for (int p = 1; p < parts; p++) {
+                if (partSize[p] < partSize[smallest]) smallest = p;
+            }
+            partGroups.get(smallest).addAll(component);
+            partSize[smallest] += studentCountOf(component);
+        }
+
+        List<ClassBuilderSolution> partSolutions = new ArrayList<>(parts);
+        for (int p = 0; p < parts; p++) {
+            partSolutions.add(createPart(solution, partGroups.get(p), partSize[p], problem.getStudentCount(),
+                    p * problem.getClassCount() / parts));
+        }
+        return partSolutions;
+    }
+
+    /**
+     * @return the groups of {@code solution} in the connected components of the relationship graph, each in the
+     * workbook's order, and the components in the order of their first group
+     */
+    static List<List<StudentGroupAssignment>> componentsOf(ClassBuilderSolution solution) {
+        CompiledProblem problem = solution.getCompiledProblem();
+        List<StudentGroupAssignment> groups = solution.getGroupAssignments();
+
+        int[] groupOf = new int[problem.getStudentCount()];
+        for (int g = 0; g < groups.size(); g++) {
+            for (StudentClassAssignment member : groups.get(g).getMembers()) {
+                groupOf[problem.studentIdOf(member.getStudent())] = g;
+            }
+        }
+        int[] parent = new int[groups.size()];
+        for (int g = 0; g < parent.length; g++) {
+            parent[g] = g;
+        }
+        for (RelationshipType type : RelationshipType.values()) {
+            int[] offsets = problem.relationshipOffsets(type);
+            int[] targets = problem.relationshipTargets(type);
+            for (int s = 0; s < problem.getStudentCount(); s++) {
+                for (int i = offsets[s]; i < offsets[s + 1]; i++) {
+                    union(parent, groupOf[s], groupOf[targets[i]]);
+                }
+            }
+        }
+
+        // Roots are the lowest group in their component, so each component is started before any group joins it
+        int[] componentOf = new int[groups.size()];
+        List<List<StudentGroupAssignment>> components = new ArrayList<>();
+        for (int g = 0; g < groups.size(); g++) {
+            int root = find(parent, g);
+            if (root == g) {
+                componentOf[g] = components.size();
+                components.add(new ArrayList<>());
+            }
+            components.get(componentOf[root]).add(groups.get(g));
+        }
+        return components;
+    }
+
+    /**
+     * @param classRotation how far along to start the part's class list. Construction fills classes in list order,
+     *                      so rotating it stops every part from giving its extra students to the same classes.
+     */
+    private static ClassBuilderSolution createPart(ClassBuilderSolution solution, List<StudentGroupAssignment> groups,
+                                                   int studentCount, int totalStudentCount, int classRotation) {
+        ClassBuilderSolution part = new ClassBuilderSolution();
+        List<StudentClass> classes = new ArrayList<>(solution.getStudentClasses());
+        Collections.rotate(classes, -classRotation);
+        part.setStudentClasses(classes);
+
+        List<StudentClassAssignment> assignments = new ArrayList<>(studentCount);
+        List<StudentGroupAssignment> groupCopies = new ArrayList<>(groups.size());
+        int largestGroup = 0;
+        for (StudentGroupAssignment group : groups) {
+            StudentGroupAssignment groupCopy = new StudentGroupAssignment();
+            groupCopy.setId(group.getId());
+            groupCopy.setStudentClass(group.getStudentClass());
+            for (StudentClassAssignment member : group.getMembers()) {
+                StudentClassAssignment memberCopy = new StudentClassAssignment();
+                memberCopy.setId(member.getId());
+                memberCopy.setStudent(member.getStudent());
+                memberCopy.setStudentClass(member.getStudentClass());
+                groupCopy.getMembers().add(memberCopy);
+                assignments.add(memberCopy);
+            }
+            groupCopies.add(groupCopy);
+            largestGroup = Math.max(largestGroup, group.getSize());
+        }
+        part.setAssignments(assignments);
+        part.setGroupAssignments(groupCopies);
+
+        ConstraintSnapshot constraints = solution.requireConstraintSnapshot();
+        double share = (double) studentCount / Math.max(totalStudentCount, 1);
+        int minClassSize = (int) Math.floor(constraints.getMinClassSize() * share);
+        int maxClassSize = Math.max((int) Math.ceil(constraints.getMaxClassSize() * share), largestGroup);
+        part.setConstraintSnapshot(constraints.withClassSizes(minClassSize, maxClassSize));
+        return part;
+    }
+
+    private static int studentCountOf(List<StudentGroupAssignment> groups) {
+        int count = 0;
+        for (StudentGroupAssignment group : groups) {
+            count += group.getSize();
+        }
+        return count;
+    }
+
+    private static int find(int[] parent, int g) {
+        while (parent[g] != g) {
+            parent[g] = parent[parent[g]];
+            g = parent[g];
+        }
+        return g;
+    }
+
+    private static void union(int[] parent, int a, int b) {
+        int rootA = find(parent, a);
+        int rootB = find(parent, b);
+        if (rootA != rootB) {
+            parent[Math.max(rootA, rootB)] = Math.min(rootA, rootB);
+        }
+    }
+}
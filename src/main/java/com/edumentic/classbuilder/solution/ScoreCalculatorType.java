@@ -0,0 +1,29 @@
+package com.edumentic.classbuilder.solution;
+
+/**
+ * The score calculation strategies the solver can be configured with.
+ */
+public enum ScoreCalculatorType {
+    /**
+     * {@link SolutionScoreCalculator}: rescans the whole solution on every move. Simple, slow, and the reference
+     * implementation the others are checked against.
+     */
+    EASY,
+    /**
+     * {@link IncrementalSolutionScoreCalculator}: only rescores the student that moved.
+     */
+    INCREMENTAL,
+    /**
+     * {@link ClassBuilderConstraintProvider}: constraint streams scored by OptaPlanner's Bavet engine.
+     */
+    CONSTRAINT_STREAMS;
+
+    @Override
+    public String toString() {
+        return switch (this) {
+            case EASY -> "Easy";
+            case INCREMENTAL -> "Incremental";
+            case CONSTRAINT_STREAMS -> "Constraint Streams";
+        };
+    }
+}
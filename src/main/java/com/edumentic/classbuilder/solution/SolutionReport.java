@@ -0,0 +1,270 @@
+package com.edumentic.classbuilder.solution;
+
+import com.edumentic.classbuilder.model.Student;
+import com.edumentic.classbuilder.model.StudentClass;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * The HTML report of a solution, kept in the pieces that change from one solution to the next, so a report on
+ * display can be brought up to date with a {@link Diff} instead of being loaded again in full.
+ *
+ * <p>
+ *     The pieces are each student's row in the class allocations, found by id {@code s-<student id>} in the body
+ *     {@code c-<class id>} of their class's table ({@code c-none} while unassigned), each class's row of the metrics
+ *     summary, {@code m-<class id>}, and the sections of the scoring breakdown, as
+ *     {@link SolutionScoreExplainer#explainSections(ClassBuilderSolution) explained}. Ids are those of the solution's
+ *     {@link CompiledProblem}. Student rows are ordered by name, which each row records as {@code data-order}, so a
+ *     moved row can be put straight into its place.
+ * </p>
+ */
+public final class SolutionReport {
+
+    private final Student[] students;
+    private final StudentClass[] classes;
+    private final int[] classIds;
+    // Each student's position when sorted by name
+    private final int[] nameOrder;
+    private final Map<String, String> fragments;
+
+    private SolutionReport(Student[] students, StudentClass[] classes, int[] classIds, int[] nameOrder,
+                           Map<String, String> fragments) {
+        this.students = students;
+        this.classes = classes;
+        this.classIds = classIds;
+        this.nameOrder = nameOrder;
+        this.fragments = fragments;
+    }
+
+    public static SolutionReport of(ClassBuilderSolution solution) {
+        CompiledProblem problem = solution.getCompiledProblem();
+        Student[] students = new Student[problem.getStudentCount()];
+        for (int s = 0; s < students.length; s++) {
+            students[s] = problem.getStudent(s);
+        }
+        StudentClass[] classes = new StudentClass[problem.getClassCount()];
+        for (int c = 0; c < classes.length; c++) {
+            classes[c] = problem.getStudentClass(c);
+        }
+        Integer[] byName = new Integer[students.length];
+        for (int s = 0; s < byName.length; s++) {
+            byName[s] = s;
+        }
+        Arrays.sort(byName, Comparator.comparing(s -> students[s].getName()));
+        int[] nameOrder = new int[students.length];
+        for (int i = 0; i < byName.length; i++) {
+            nameOrder[byName[i]] = i;
+        }
+
+        Map<String, String> fragments = new LinkedHashMap<>();
+        ClassAggregate[] aggregates = solution.getClassAggregates();
+        for (int c : classIdsByCode(classes)) {
+            fragments.put("m-" + c, metricCells(classes[c], aggregates[c]));
+        }
+        fragments.putAll(new SolutionScoreExplainer().explainSections(solution));
+        return new SolutionReport(students, classes, solution.toClassIds(), nameOrder, fragments);
+    }
+
+    /**
+     * @return the whole report, for loading into a page of its own
+     */
+    public String toHtml() {
+        int[] classOrder = classIdsByCode(classes);
+        StringBuilder html = new StringBuilder();
+        html.append("<div class='classbuilder-report'>");
+
+        html.append("<h2 class='cb-section-title'>Class Allocations</h2>");
+        html.append("<div class='cb-class-list'>");
+        List<List<Integer>> studentsByClass = new ArrayList<>(classes.length);
+        for (int c = 0; c < classes.length; c++) {
+            studentsByClass.add(new ArrayList<>());
+        }
+        List<Integer> unassigned = new ArrayList<>();
+        for (int s = 0; s < students.length; s++) {
+            (classIds[s] < 0 ? unassigned : studentsByClass.get(classIds[s])).add(s);
+        }
+        for (int c : classOrder) {
+            List<Integer> studentsIn = studentsByClass.get(c);
+            boolean empty = studentsIn.isEmpty();
+            html.append("<div class='cb-class-block'>");
+            html.append(String.format("<h3 class='cb-class-title'>%s</h3>", classes[c].getClassCode()));
+            html.append(String.format("<div class='cb-class-empty' id='e-%d'%s>No students assigned.</div>",
+                    c, empty ? "" : " style='display:none'"));
+            html.append(String.format("<table class='cb-student-table' id='t-%d'%s>", c, empty ? " style='display:none'" : ""));
+            html.append("<thead><tr><th>Name</th><th>Numeracy</th><th>Literacy</th><th>Social-Emotional</th><th>Gender</th></tr></thead>");
+            appendStudentRows(html, "c-" + c, studentsIn);
+            html.append("</table>");
+            html.append("</div>");
+        }
+        html.append("</div>"); // cb-class-list
+        // Unassigned students wait here, out of sight, until they are placed
+        html.append("<table id='t-none' style='display:none'>");
+        appendStudentRows(html, "c-none", unassigned);
+        html.append("</table>");
+
+        html.append("<h2 class='cb-section-title'>Class Metrics Summary</h2>");
+        html.append("<table class='cb-metrics-table'><thead><tr>")
+                .append("<th>Class</th>")
+                .append("<th>Avg Numeracy</th>")
+                .append("<th>Avg Literacy</th>")
+                .append("<th>Avg Social Emotional</th>")
+                .append("<th>Proportion Male</th>")
+                .append("</tr></thead><tbody>");
+        for (int c : classOrder) {
+            html.append("<tr id='m-").append(c).append("'>").append(fragments.get("m-" + c)).append("</tr>");
+        }
+        html.append("</tbody></table>");
+
+        // Scoring report, explained on demand rather than kept from scoring
+        html.append("<h2 class='cb-section-title'>Scoring Breakdown</h2>");
+        html.append("<div class='scoring-report'>");
+        fragments.forEach((id, fragment) -> {
+            if (id.startsWith("r-")) html.append(SolutionScoreExplainer.section(id, fragment));
+        });
+        html.append("</div>");
+
+        html.append("</div>");
+        return html.toString();
+    }
+
+    /**
+     * @return the changes that turn {@code previous}, on display, into this report, or {@code null} if it is a
+     * report on other students or classes, and so has to be replaced in full
+     */
+    public Diff diffFrom(SolutionReport previous) {
+        if (previous == null || !Arrays.equals(students, previous.students) || !Arrays.equals(classes, previous.classes)) {
+            return null;
+        }
+        List<int[]> moves = new ArrayList<>();
+        for (int s = 0; s < classIds.length; s++) {
+            if (classIds[s] != previous.classIds[s]) {
+                moves.add(new int[]{s, classIds[s]});
+            }
+        }
+        Map<String, String> changedFragments = new LinkedHashMap<>();
+        fragments.forEach((id, fragment) -> {
+            if (!fragment.equals(previous.fragments.get(id))) {
+                changedFragments.put(id, fragment);
+            }
+        });
+        return new Diff(moves, changedFragments);
+    }
+
+    private void appendStudentRows(StringBuilder html, String bodyId, List<Integer> studentIds) {
+        html.append("<tbody id='").append(bodyId).append("'>");
+        studentIds.stream().sorted(Comparator.comparingInt(s -> nameOrder[s])).forEach(s -> {
+            Student student = students[s];
+            html.append(String.format(
+                    "<tr id='s-%d' data-order='%d'><td class='cb-student-name'>%s</td>" +
+                            "<td class='cb-metric'>%d</td>" +
+                            "<td class='cb-metric'>%d</td>" +
+                            "<td class='cb-metric'>%d</td>" +
+                            "<td class='cb-metric'>%s</td>" +
+                            "</tr>",
+                    s,
+                    nameOrder[s],
+                    student.getName(),
+                    student.getNumeracy(),
+                    student.getLiteracy(),
+                    student.getSocialEmotional(),
+                    student.getGender().toString()
+            ));
+        });
+        html.append("</tbody>");
+    }
+
+    private static String metricCells(StudentClass studentClass, ClassAggregate aggregate) {
+        return String.format("<td>%s</td>", studentClass.getClassCode())
+                + String.format("<td>%.2f</td>", aggregate.getAverageNumeracy())
+                + String.format("<td>%.2f</td>", aggregate.getAverageLiteracy())
+                + String.format("<td>%.2f</td>", aggregate.getAverageSocialEmotional())
+                + String.format("<td>%.2f</td>", aggregate.getProportionMale());
+    }
+
+    private static int[] classIdsByCode(StudentClass[] classes) {
+        return IntStream.range(0, classes.length)
+                .boxed()
+                .sorted(Comparator.comparing(c -> classes[c].getClassCode()))
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    /**
+     * What changed between two reports on the same students and classes: the students that moved class, and every
+     * metrics row and scoring section that reads differently.
+     */
+    public static final class Diff {
+
+        private final List<int[]> moves;
+        private final Map<String, String> fragments;
+
+        private Diff(List<int[]> moves, Map<String, String> fragments) {
+            this.moves = moves;
+            this.fragments = fragments;
+        }
+
+        public boolean isEmpty() {
+            return moves.isEmpty() && fragments.isEmpty();
+        }
+
+        public int getMoveCount() {
+            return moves.size();
+        }
+
+        public int getFragmentCount() {
+            return fragments.size();
+        }
+
+        /**
+         * @return the diff as a JavaScript object literal, for {@code ClassBuilderReport.apply} in
+         * {@code /js/classbuilder-report.js}: {@code {moves: [[student id, class id or -1], ...],
+         * fragments: {element id: inner HTML, ...}}}
+         */
+        public String toJson() {
+            StringBuilder json = new StringBuilder("{\"moves\":[");
+            for (int i = 0; i < moves.size(); i++) {
+                if (i > 0) json.append(',');
+                json.append('[').append(moves.get(i)[0]).append(',').append(moves.get(i)[1]).append(']');
+            }
+            json.append("],\"fragments\":{");
+            boolean first = true;
+            for (Map.Entry<String, String> fragment : fragments.entrySet()) {
+                if (!first) json.append(',');
+                first = false;
+                appendJsonString(json, fragment.getKey());
+                json.append(':');
+                appendJsonString(json, fragment.getValue());
+            }
+            return json.append("}}").toString();
+        }
+
+        private static void appendJsonString(StringBuilder json, String value) {
+            json.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char ch = value.charAt(i);
+                switch (ch) {
+                    case '"' -> json.append("\\\"");
+                    case '\\' -> json.append("\\\\");
+                    case '\n' -> json.append("\\n");
+                    case '\r' -> json.append("\\r");
+                    case '\t' -> json.append("\\t");
+                    default -> {
+                        // Control characters, and the line separators JavaScript string literals can't hold
+                        if (ch < 0x20 || ch == 0x2028 || ch == 0x2029) {
+                            json.append(String.format("\\u%04x", (int) ch));
+                        } else {
+                            json.append(ch);
+                        }
+                    }
+                }
+            }
+            json.append('"');
+        }
+    }
+}
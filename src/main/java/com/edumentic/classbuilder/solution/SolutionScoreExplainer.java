@@ -0,0 +1,251 @@
+package com.edumentic.classbuilder.solution;
+
+import com.edumentic.classbuilder.model.Gender;
+import com.edumentic.classbuilder.model.Student;
+import com.edumentic.classbuilder.model.StudentClass;
+
+import java.util.*;
+
+/**
+ * Explains how {@link SolutionScoreCalculator} arrived at a solution's score, as an HTML breakdown of
+ * every satisfied and violated constraint.
+ * <p>
+ *     This walks the same rules as the calculator but builds a report line for each one, which is far too
+ *     costly to do on every move. It is only run on demand, when a solution is about to be displayed or exported.
+ * </p>
+ * <p>
+ *     The report is made of sections, one per class, one for the whole solution, one per student and the score,
+ *     each with an element id, so a report on display can be brought up to date one changed section at a time.
+ * </p>
+ */
+public class SolutionScoreExplainer {
+
+    public String explain(ClassBuilderSolution classBuilderSolution) {
+        StringBuilder reportBuilder = new StringBuilder();
+        reportBuilder.append("<div class='scoring-report'>");
+        explainSections(classBuilderSolution).forEach((id, section) -> reportBuilder.append(section(id, section)));
+        reportBuilder.append("</div>");
+        return reportBuilder.toString();
+    }
+
+    /**
+     * Wraps a section from {@link #explainSections(ClassBuilderSolution)} in the element it is found by.
+     */
+    public static String section(String id, String sectionHtml) {
+        return "<div id='" + id + "'>" + sectionHtml + "</div>";
+    }
+
+    /**
+     * @return the inner HTML of every section of the report, by element id, in report order: {@code r-c-<class id>}
+     * for each class by class code, {@code r-solution}, {@code r-s-<student id>} for each student by name and
+     * {@code r-summary}. Ids are those of the solution's {@link CompiledProblem}, and a section with nothing to
+     * report is empty rather than left out.
+     */
+    public Map<String, String> explainSections(ClassBuilderSolution classBuilderSolution) {
+        Map<Object, List<String>> constraintReports = new HashMap<>();
+        ClassAggregate[] classAggregates = classBuilderSolution.getClassAggregates();
+        ConstraintSnapshot constraints = classBuilderSolution.requireConstraintSnapshot();
+
+        // Hard constraints - Class size checks
+        int hardScore = 0;
+        for(int classId = 0; classId < classAggregates.length; classId++){
+            StudentClass studentClass = classBuilderSolution.getStudentClasses().get(classId);
+            int minClassSize = constraints.getMinClassSize();
+            int maxClassSize = constraints.getMaxClassSize();
+            int classSize = classAggregates[classId].getSize();
+            if(classSize < minClassSize){
+                hardScore -= (minClassSize - classSize);
+                addConstraintReport(studentClass, constraintReports,
+                    String.format(
+                    "<div class='constraint-violation class-size'><span class='class-code'>%s</span>: <span class='violation'>Min class size violated</span> (%d &lt; %d)</div>",
+                    studentClass.getClassCode(), classSize, minClassSize));
+            }
+            else if(classSize > maxClassSize){
+                hardScore -= (classSize - maxClassSize);
+                addConstraintReport(studentClass, constraintReports,
+                    String.format(
+                    "<div class='constraint-violation class-size'><span class='class-code'>%s</span>: <span class='violation'>Max class size violated</span> (%d &gt; %d)</div>",
+                    studentClass.getClassCode(), classSize, maxClassSize));
+            } else {
+                addConstraintReport(studentClass, constraintReports,
+                    String.format(
+                    "<div class='constraint-ok class-size'><span class='class-code'>%s</span>: Class size OK (%d)</div>",
+                    studentClass.getClassCode(), classSize));
+            }
+        }
+
+        // Student assignment constraints
+
+        for(StudentClassAssignment assignment : classBuilderSolution.getAssignments()){
+            // Relationships only count once both students have been placed, as in the constraint streams
+            if(assignment.getStudentClass() == null) continue;
+            Student student = assignment.getStudent();
+            if(constraints.isMustAvoidOthers()){
+                for(Student cannotBeWith : student.getCannotBeWith()){
+                    boolean together = classBuilderSolution.inSameClass(student, cannotBeWith);
+                    if(together){
+                        hardScore--;
+                        addConstraintReport(student, constraintReports,
+                                String.format(
+                                        "<div class='constraint-violation cannot-be-with'><span class='student'>%s</span> and <span class='student'>%s</span>: <span class='violation'>'Cannot be with' violated</span></div>",
+                                        student.getName(), cannotBeWith.getName()));
+                    }
+                }
+            }
+            if(constraints.isMustIncludeOthers()){
+                for(Student mustBeWith : student.getMustIncludeFriends()){
+                    if(!classBuilderSolution.isAssigned(mustBeWith)) continue;
+                    boolean together = classBuilderSolution.inSameClass(student, mustBeWith);
+                    if(!together){
+                        hardScore--;
+                        addConstraintReport(student, constraintReports,
+                                String.format(
+                                        "<div class='constraint-violation must-be-with'><span class='student'>%s</span> and <span class='student'>%s</span>: <span class='violation'>'Must include friend' NOT together</span></div>",
+                                        student.getName(), mustBeWith.getName()));
+                    } else {
+                        addConstraintReport(student, constraintReports,
+                                String.format(
+                                        "<div class='constraint-ok must-be-with'><span class='student'>%s</span> and <span class='student'>%s</span>: <span class='ok'>'Must include' satisfied</span></div>",
+                                        student.getName(), mustBeWith.getName()));
+                    }
+                }
+            }
+
+        }
+
+        // Soft constraints, explained while a hard constraint is broken too, as they are scored
+        int softScore = 0;
+        for (StudentClassAssignment assignment : classBuilderSolution.getAssignments()) {
+            Student student = assignment.getStudent();
+            if(constraints.isShouldIncludeOthers()){
+                for (Student goodToBeWith : student.getShouldIncludeFriends()) {
+                    boolean together = classBuilderSolution.inSameClass(student, goodToBeWith);
+                    if (together) {
+                        softScore += 1;
+                        addConstraintReport(student, constraintReports,
+                                String.format(
+                                        "<div class='soft-constraint-ok'><span class='student'>%s</span> and <span class='student'>%s</span>: <span class='ok'>'Good to be with' satisfied</span></div>",
+                                        student.getName(), goodToBeWith.getName()));
+                    }else{
+                        addConstraintReport(student, constraintReports,
+                                String.format(
+                                        "<div class='soft-constraint-violation'><span class='student'>%s</span> and <span class='student'>%s</span>: <span class='violation'>'Good to be with' NOT satisfied</span></div>",
+                                        student.getName(), goodToBeWith.getName()));
+                    }
+                }
+            }
+
+            if(constraints.isShouldAvoidOthers()){
+                for (Student avoidBeingWith : student.getAvoidBeingWith()) {
+                    boolean together = classBuilderSolution.inSameClass(student, avoidBeingWith);
+                    if (together) {
+                        softScore -= 1;
+                        addConstraintReport(student, constraintReports,
+                                String.format(
+                                        "<div class='soft-constraint-violation'><span class='student'>%s</span> and <span class='student'>%s</span>: <span class='violation'>'Avoid being with' NOT satisfied</span></div>",
+                                        student.getName(), avoidBeingWith.getName()));
+                    }
+                }
+            }
+
+        }
+
+
+
+        if(constraints.isBalanceNumeracy()){
+            int numeracyVariance = scoreVarianceBetweenClassesFor(classAggregates, ClassAggregate::getAverageNumeracy,
+                    constraints.getClassMetricVarianceSensitivity());
+            softScore -= numeracyVariance;
+            addConstraintReport(classBuilderSolution, constraintReports,
+                    String.format(
+                            "<div class='variance'><span class='metric'>Numeracy variance penalty</span>: %d</div>", numeracyVariance));
+        }
+
+        if(constraints.isBalanceLiteracy()){
+            int literacyVariance = scoreVarianceBetweenClassesFor(classAggregates, ClassAggregate::getAverageLiteracy,
+                    constraints.getClassMetricVarianceSensitivity());
+            softScore -= literacyVariance;
+            addConstraintReport(classBuilderSolution, constraintReports,
+                    String.format(
+                            "<div class='variance'><span class='metric'>Literacy variance penalty</span>: %d</div>", literacyVariance));
+        }
+
+        if(constraints.isBalanceSocialEmotional()){
+            int socialVariance = scoreVarianceBetweenClassesFor(classAggregates, ClassAggregate::getAverageSocialEmotional,
+                    constraints.getClassMetricVarianceSensitivity());
+            softScore -= socialVariance;
+            addConstraintReport(classBuilderSolution, constraintReports,
+                    String.format(
+                            "<div class='variance'><span class='metric'>SocialEmotional variance penalty</span>: %d</div>", socialVariance));
+
+        }
+
+        if(constraints.isBalanceGender()){
+            int genderProportionVariance = scoreVarianceBetweenClassesFor(classAggregates, ClassAggregate::getProportionMale,
+                    constraints.getClassMetricVarianceSensitivity());
+            softScore -= genderProportionVariance;
+            addConstraintReport(classBuilderSolution, constraintReports,
+                    String.format(
+                            "<div class='variance'><span class='metric'>Gender variance penalty</span>: %d</div>", genderProportionVariance));
+
+        }
+
+        return compileConstraintReport(classBuilderSolution, constraintReports, hardScore, softScore);
+    }
+
+    private Map<String, String> compileConstraintReport(ClassBuilderSolution solution, Map<Object, List<String>> container,
+                                                        int hardScore, int softScore){
+        CompiledProblem problem = solution.getCompiledProblem();
+        Map<String, String> sections = new LinkedHashMap<>();
+
+        //start with the classes
+        for(StudentClass studentClass : solution.getStudentClasses().stream()
+                .sorted(Comparator.comparing(StudentClass::getClassCode))
+                .toList()){
+            sections.put("r-c-" + problem.classIdOf(studentClass), joinReports(container.get(studentClass)));
+        }
+        //then anything else
+        sections.put("r-solution", joinReports(container.get(solution)));
+        //then the students
+        for(StudentClassAssignment assignment : solution.getAssignments().stream()
+                .sorted(Comparator.comparing(assignment -> assignment.getStudent().getName()))
+                .toList()){
+            Student student = assignment.getStudent();
+            sections.put("r-s-" + problem.studentIdOf(student), joinReports(container.get(student)));
+        }
+
+        sections.put("r-summary", String.format("<div class='score-summary'>Hard score: %d, Soft score: %d</div>", hardScore, softScore));
+        return sections;
+
+    }
+
+    private static String joinReports(List<String> reports){
+        return reports == null ? "" : String.join("", reports);
+    }
+
+    private void addConstraintReport(Object key, Map<Object, List<String>> container, String report){
+        if(key == null || report == null || container == null) return;
+        List<String> reports;
+        if(container.containsKey(key)){
+            reports = container.get(key);
+        }else{
+            reports = new LinkedList<>();
+            container.put(key, reports);
+        }
+        reports.add(report);
+    }
+
+    private int scoreVarianceBetweenClassesFor(ClassAggregate[] classAggregates, ClassMetricProvider metricProvider,
+                                               int sensitivity){
+        double[] classMetrics = new double[classAggregates.length];
+        for(int i = 0; i < classMetrics.length; i++){
+            classMetrics[i] = metricProvider.getMetric(classAggregates[i]);
+        }
+        return SolutionScoreCalculator.variancePenaltyFor(classMetrics, sensitivity);
+    }
+
+    @FunctionalInterface
+    private interface ClassMetricProvider{
+        double getMetric(ClassAggregate classAggregate);
+    }
+}
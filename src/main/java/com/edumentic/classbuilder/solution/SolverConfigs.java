@@ -0,0 +1,45 @@
+package com.edumentic.classbuilder.solution;
+
+import org.optaplanner.core.api.score.stream.ConstraintStreamImplType;
+import org.optaplanner.core.config.score.director.ScoreDirectorFactoryConfig;
+import org.optaplanner.core.config.solver.SolverConfig;
+
+/**
+ * Builds the {@link SolverConfig} for a solve, shared by the application and the headless {@code ClassBuilderBatch}.
+ */
+public final class SolverConfigs {
+
+    private SolverConfigs() {
+    }
+
+    /**
+     * @param moveThreadCount {@link SolverConfig#MOVE_THREAD_COUNT_NONE}, {@link SolverConfig#MOVE_THREAD_COUNT_AUTO}
+     *                        or a number
+     * @param profile the phases and termination to solve with, or {@code null} for OptaPlanner's default phases,
+     *                which run until stopped
+     */
+    public static SolverConfig create(ScoreCalculatorType scoreCalculatorType, String moveThreadCount,
+                                      SolverProfile profile) {
+        SolverConfig solverConfig = new SolverConfig()
+                .withSolutionClass(ClassBuilderSolution.class)
+                .withEntityClasses(StudentGroupAssignment.class, StudentClassAssignment.class)
+                .withScoreDirectorFactory(createScoreDirectorFactoryConfig(scoreCalculatorType))
+                .withMoveThreadCount(moveThreadCount);
+        if (profile != null) {
+            profile.applyTo(solverConfig);
+        }
+        return solverConfig;
+    }
+
+    private static ScoreDirectorFactoryConfig createScoreDirectorFactoryConfig(ScoreCalculatorType scoreCalculatorType) {
+        return switch (scoreCalculatorType) {
+            case EASY -> new ScoreDirectorFactoryConfig()
+                    .withEasyScoreCalculatorClass(SolutionScoreCalculator.class);
+            case INCREMENTAL -> new ScoreDirectorFactoryConfig()
+                    .withIncrementalScoreCalculatorClass(IncrementalSolutionScoreCalculator.class);
+            case CONSTRAINT_STREAMS -> new ScoreDirectorFactoryConfig()
+                    .withConstraintProviderClass(ClassBuilderConstraintProvider.class)
+                    .withConstraintStreamImplType(ConstraintStreamImplType.BAVET);
+        };
+    }
+}
@@ -0,0 +1,301 @@
+package com.edumentic.classbuilder.solution;
+
+import com.edumentic.classbuilder.solution.move.ClassRotationMoveIteratorFactory;
+import com.edumentic.classbuilder.solution.move.EqualSizeSwapFilter;
+import com.edumentic.classbuilder.solution.move.NearbyChangeMoveIteratorFactory;
+import com.edumentic.classbuilder.solution.move.NearbySwapMoveIteratorFactory;
+import lombok.Value;
+import lombok.With;
+import org.optaplanner.core.config.constructionheuristic.ConstructionHeuristicPhaseConfig;
+import org.optaplanner.core.config.constructionheuristic.ConstructionHeuristicType;
+import org.optaplanner.core.config.heuristic.selector.move.MoveSelectorConfig;
+import org.optaplanner.core.config.heuristic.selector.move.composite.UnionMoveSelectorConfig;
+import org.optaplanner.core.config.heuristic.selector.move.factory.MoveIteratorFactoryConfig;
+import org.optaplanner.core.config.heuristic.selector.move.generic.ChangeMoveSelectorConfig;
+import org.optaplanner.core.config.heuristic.selector.move.generic.SwapMoveSelectorConfig;
+import org.optaplanner.core.config.localsearch.LocalSearchPhaseConfig;
+import org.optaplanner.core.config.partitionedsearch.PartitionedSearchPhaseConfig;
+import org.optaplanner.core.config.phase.PhaseConfig;
+import org.optaplanner.core.config.phase.custom.CustomPhaseConfig;
+import org.optaplanner.core.config.localsearch.decider.acceptor.LocalSearchAcceptorConfig;
+import org.optaplanner.core.config.localsearch.decider.forager.LocalSearchForagerConfig;
+import org.optaplanner.core.config.solver.SolverConfig;
+import org.optaplanner.core.config.solver.termination.TerminationConfig;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * A named set of solver phases and termination, such as "Quick preview" or "Overnight".
+ *
+ * <p>
+ *     A profile is a construction phase, which places every group of students, followed by a local search with one
+ *     acceptor, which improves on it. Solving stops at whichever termination limit is hit first; a profile with no
+ *     limits runs until it is stopped. For a whole school, a profile can first run both phases on separate parts of
+ *     the cohort in parallel (see {@link #partitionCount}).
+ * </p>
+ *
+ * <p>
+ *     Profiles are read from properties, keyed by a profile id (see {@link SolverProfiles} for the file format).
+ *     Anything a profile leaves out falls back to a default: balanced construction
+ *     ({@link BalancedConstructionPhaseCommand}), late acceptance, and the acceptor's parameters as noted below.
+ * </p>
+ *
+ * <p>
+ *     The local search moves whole {@link StudentGroupAssignment groups}, so students who must be together never
+ *     leave each other. It picks each move from one of five kinds, in proportion to the kind's weight
+ *     (0 leaves it out):
+ *     <ul>
+ *         <li>change: one group to another class, the only move that changes class sizes;</li>
+ *         <li>swap: two groups of the same size in different classes trade places ({@link EqualSizeSwapFilter});</li>
+ *         <li>class rotation: three groups of the same size in three classes each move one class along
+ *             ({@link ClassRotationMoveIteratorFactory});</li>
+ *         <li>nearby change: one group to the class of a nearby group, usually a friend
+ *             ({@link NearbyChangeMoveIteratorFactory});</li>
+ *         <li>nearby swap: one group to the class of a nearby group, in exchange for a group the same size from there
+ *             ({@link NearbySwapMoveIteratorFactory}).</li>
+ *     </ul>
+ *     Swaps and rotations keep every class the same size, so once the sizes are right they don't waste
+ *     evaluations on neighbours that break the size limits.
+ * </p>
+ */
+@Value
+public class SolverProfile {
+
+    public enum Acceptor {
+        TABU_SEARCH,
+        LATE_ACCEPTANCE,
+        SIMULATED_ANNEALING
+    }
+
+    public static final String BALANCED_CONSTRUCTION = "BALANCED";
+
+    String id;
+    String name;
+
+    /**
+     * The construction heuristic to place students with, or {@code null} for {@link BalancedConstructionPhaseCommand}.
+     * Written {@value #BALANCED_CONSTRUCTION} in a profile, the default.
+     */
+    ConstructionHeuristicType constructionHeuristicType;
+
+    Acceptor acceptor;
+    /** Tabu search: how many recently moved groups may not be moved again, 7 by default. */
+    Integer entityTabuSize;
+    /** Late acceptance: how many steps back a new score is compared against, 400 by default. */
+    Integer lateAcceptanceSize;
+    /** Simulated annealing: the starting temperature as a score, {@code 0hard/10soft} by default. */
+    String simulatedAnnealingStartingTemperature;
+    /** How many accepted moves are evaluated before the best of them is taken as the step: 1000 for tabu search, otherwise 1. */
+    Integer acceptedCountLimit;
+
+    /** Relative chance of a change move, 1 by default. */
+    double changeMoveWeight;
+    /** Relative chance of a swap move, 1 by default. */
+    double swapMoveWeight;
+    /** Relative chance of a class rotation move, 0.5 by default. */
+    double classRotationMoveWeight;
+    /** Relative chance of a nearby change move, 1 by default. */
+    double nearbyChangeMoveWeight;
+    /** Relative chance of a nearby swap move, 1 by default. */
+    double nearbySwapMoveWeight;
+
+    /**
+     * How many parts to split the students into for a partitioned search ({@link RelationshipPartitioner}), each
+     * solved on its own thread before the whole cohort is polished together. 1, the default, solves the cohort as one.
+     */
+    @With
+    int partitionCount;
+    /**
+     * How long the parts may all go without improving before the partitioned search stops, 10 seconds by default.
+     * It also stops at half of {@link #secondsSpentLimit}.
+     */
+    Long partitionUnimprovedSecondsSpentLimit;
+
+    /**
+     * Half of it also ends a partitioned search, so a caller that keeps its own time budget passes it in with
+     * {@link #withSecondsSpentLimit} before {@link #applyTo}, rather than only dropping the solver's limit.
+     */
+    @With
+    Long secondsSpentLimit;
+    Long unimprovedSecondsSpentLimit;
+    /** Stop as soon as a solution at least this good is found, e.g. {@code 0hard/0soft}. */
+    String bestScoreLimit;
+
+    /**
+     * Reads the profile with the given id.
+     *
+     * @throws IllegalArgumentException if a value can't be parsed
+     */
+    static SolverProfile fromProperties(String id, Properties properties) {
+        String prefix = id + ".";
+        String constructionHeuristic = properties.getProperty(prefix + "constructionHeuristic");
+        String acceptor = properties.getProperty(prefix + "acceptor");
+        SolverProfile profile = new SolverProfile(id,
+                properties.getProperty(prefix + "name", id),
+                constructionHeuristicType(constructionHeuristic),
+                acceptor == null ? Acceptor.LATE_ACCEPTANCE : Acceptor.valueOf(acceptor.trim()),
+                integer(properties, prefix + "entityTabuSize"),
+                integer(properties, prefix + "lateAcceptanceSize"),
+                trimmed(properties, prefix + "simulatedAnnealingStartingTemperature"),
+                integer(properties, prefix + "acceptedCountLimit"),
+                weight(properties, prefix + "changeMoveWeight", 1.0),
+                weight(properties, prefix + "swapMoveWeight", 1.0),
+                weight(properties, prefix + "classRotationMoveWeight", 0.5),
+                weight(properties, prefix + "nearbyChangeMoveWeight", 1.0),
+                weight(properties, prefix + "nearbySwapMoveWeight", 1.0),
+                partitionCount(properties, prefix + "partitionCount"),
+                seconds(properties, prefix + "partitionUnimprovedSecondsSpentLimit"),
+                seconds(properties, prefix + "secondsSpentLimit"),
+                seconds(properties, prefix + "unimprovedSecondsSpentLimit"),
+                trimmed(properties, prefix + "bestScoreLimit"));
+        if (profile.changeMoveWeight + profile.swapMoveWeight + profile.classRotationMoveWeight
+                + profile.nearbyChangeMoveWeight + profile.nearbySwapMoveWeight == 0) {
+            throw new IllegalArgumentException("every kind of move has a weight of 0");
+        }
+        return profile;
+    }
+
+    /**
+     * @return this profile, or one that solves the cohort as one when {@code problem} has fewer separate groups of
+     * related students than {@link #partitionCount}, as the parts would be left empty or lopsided
+     */
+    public SolverProfile forProblem(ClassBuilderSolution problem) {
+        if (partitionCount > 1 && RelationshipPartitioner.componentsOf(problem).size() < partitionCount) {
+            return withPartitionCount(1);
+        }
+        return this;
+    }
+
+    /**
+     * Replaces the phases and termination of {@code solverConfig} with this profile's.
+     * <p>
+     *     With a {@link #partitionCount} above 1, a partitioned search runs the construction and local search on
+     *     each part first. The same phases then run over the whole cohort, where the construction only has
+     *     anything to place if the parts were stopped early.
+     * </p>
+     */
+    public SolverConfig applyTo(SolverConfig solverConfig) {
+        if (partitionCount > 1) {
+            PartitionedSearchPhaseConfig partitionedSearch = new PartitionedSearchPhaseConfig()
+                    .withSolutionPartitionerClass(RelationshipPartitioner.class)
+                    .withSolutionPartitionerCustomProperties(Map.of("partCount", String.valueOf(partitionCount)))
+                    .withPhaseConfigs(createConstructionPhaseConfig(), createLocalSearchPhaseConfig());
+            // Ends the parts too: once none of them has improved for the limit, or at half the time allowed, so
+            // the whole cohort always gets time to be polished together
+            partitionedSearch.setTerminationConfig(new TerminationConfig()
+                    .withUnimprovedSecondsSpentLimit(partitionUnimprovedSecondsSpentLimit == null
+                            ? 10L : partitionUnimprovedSecondsSpentLimit)
+                    .withSecondsSpentLimit(secondsSpentLimit == null ? null : secondsSpentLimit / 2));
+            return solverConfig
+                    .withPhases(partitionedSearch, createConstructionPhaseConfig(), createLocalSearchPhaseConfig())
+                    .withTerminationConfig(createTerminationConfig());
+        }
+        return solverConfig
+                .withPhases(createConstructionPhaseConfig(), createLocalSearchPhaseConfig())
+                .withTerminationConfig(createTerminationConfig());
+    }
+
+    private PhaseConfig<?> createConstructionPhaseConfig() {
+        if (constructionHeuristicType == null) {
+            return new CustomPhaseConfig()
+                    .withCustomPhaseCommandClassList(List.of(BalancedConstructionPhaseCommand.class));
+        }
+        return new ConstructionHeuristicPhaseConfig()
+                .withConstructionHeuristicType(constructionHeuristicType);
+    }
+
+    private LocalSearchPhaseConfig createLocalSearchPhaseConfig() {
+        LocalSearchAcceptorConfig acceptorConfig = switch (acceptor) {
+            case TABU_SEARCH -> new LocalSearchAcceptorConfig()
+                    .withEntityTabuSize(entityTabuSize == null ? 7 : entityTabuSize);
+            case LATE_ACCEPTANCE -> new LocalSearchAcceptorConfig()
+                    .withLateAcceptanceSize(lateAcceptanceSize == null ? 400 : lateAcceptanceSize);
+            case SIMULATED_ANNEALING -> new LocalSearchAcceptorConfig()
+                    .withSimulatedAnnealingStartingTemperature(
+                            simulatedAnnealingStartingTemperature == null ? "0hard/10soft" : simulatedAnnealingStartingTemperature);
+        };
+        // Random move selection never runs out, so the forager must stop after some number of accepted moves
+        LocalSearchForagerConfig foragerConfig = new LocalSearchForagerConfig()
+                .withAcceptedCountLimit(acceptedCountLimit != null ? acceptedCountLimit
+                        : acceptor == Acceptor.TABU_SEARCH ? 1000 : 1);
+        return new LocalSearchPhaseConfig()
+                .withMoveSelectorConfig(createMoveSelectorConfig())
+                .withAcceptorConfig(acceptorConfig)
+                .withForagerConfig(foragerConfig);
+    }
+
+    /**
+     * @return this profile's termination limits, for when its limits should apply to a solver it didn't configure
+     */
+    public TerminationConfig createTerminationConfig() {
+        return new TerminationConfig()
+                .withSecondsSpentLimit(secondsSpentLimit)
+                .withUnimprovedSecondsSpentLimit(unimprovedSecondsSpentLimit)
+                .withBestScoreLimit(bestScoreLimit);
+    }
+
+    private UnionMoveSelectorConfig createMoveSelectorConfig() {
+        List<MoveSelectorConfig> moveSelectors = new ArrayList<>();
+        addWeighted(moveSelectors, new ChangeMoveSelectorConfig(), changeMoveWeight);
+        addWeighted(moveSelectors, new SwapMoveSelectorConfig()
+                .withFilterClass(EqualSizeSwapFilter.class), swapMoveWeight);
+        addWeighted(moveSelectors, new MoveIteratorFactoryConfig()
+                .withMoveIteratorFactoryClass(ClassRotationMoveIteratorFactory.class), classRotationMoveWeight);
+        addWeighted(moveSelectors, new MoveIteratorFactoryConfig()
+                .withMoveIteratorFactoryClass(NearbyChangeMoveIteratorFactory.class), nearbyChangeMoveWeight);
+        addWeighted(moveSelectors, new MoveIteratorFactoryConfig()
+                .withMoveIteratorFactoryClass(NearbySwapMoveIteratorFactory.class), nearbySwapMoveWeight);
+        return new UnionMoveSelectorConfig().withMoveSelectorList(moveSelectors);
+    }
+
+    private static void addWeighted(List<MoveSelectorConfig> moveSelectors, MoveSelectorConfig<?> moveSelector, double weight) {
+        if (weight > 0) {
+            moveSelectors.add(moveSelector.withFixedProbabilityWeight(weight));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    private static ConstructionHeuristicType constructionHeuristicType(String value) {
+        if (value == null || value.isBlank() || value.trim().equals(BALANCED_CONSTRUCTION)) return null;
+        return ConstructionHeuristicType.valueOf(value.trim());
+    }
+
+    private static String trimmed(Properties properties, String key) {
+        String value = properties.getProperty(key);
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+
+    private static Integer integer(Properties properties, String key) {
+        String value = trimmed(properties, key);
+        return value == null ? null : Integer.valueOf(value);
+    }
+
+    private static double weight(Properties properties, String key, double defaultWeight) {
+        String value = trimmed(properties, key);
+        double weight = value == null ? defaultWeight : Double.parseDouble(value);
+        if (weight < 0 || Double.isNaN(weight)) {
+            throw new IllegalArgumentException(key + " must not be negative");
+        }
+        return weight;
+    }
+
+    private static int partitionCount(Properties properties, String key) {
+        Integer value = integer(properties, key);
+        if (value != null && value < 1) {
+            throw new IllegalArgumentException(key + " must be at least 1");
+        }
+        return value == null ? 1 : value;
+    }
+
+    private static Long seconds(Properties properties, String key) {
+        String value = trimmed(properties, key);
+        return value == null ? null : Long.valueOf(value);
+    }
+}
@@ -0,0 +1,124 @@
+package com.edumentic.classbuilder.solution;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Loads {@link SolverProfile}s: the built in ones, plus any defined in a {@value #PROFILES_FILE_NAME} (or
+ * {@value #PROFILES_XML_FILE_NAME}, in the {@link Properties#loadFromXML XML properties} format) file in the same
+ * folder as the workbook.
+ *
+ * <p>
+ *     Each property is {@code <profile id>.<setting>}, for example:
+ * </p>
+ * <pre>
+ * quick.name=Quick preview
+ * quick.constructionHeuristic=BALANCED
+ * quick.acceptor=LATE_ACCEPTANCE
+ * quick.lateAcceptanceSize=100
+ * quick.secondsSpentLimit=20
+ * </pre>
+ * <p>
+ *     The settings are those of {@link SolverProfile}. {@code constructionHeuristic} is {@code BALANCED} or one of
+ *     OptaPlanner's construction heuristic types, such as {@code FIRST_FIT_DECREASING}. {@code acceptor} is one of {@code TABU_SEARCH},
+ *     {@code LATE_ACCEPTANCE} or {@code SIMULATED_ANNEALING}. A profile in the workbook's file with the same id as a
+ *     built in profile replaces it entirely.
+ * </p>
+ */
+@Slf4j
+public final class SolverProfiles {
+
+    public static final String PROFILES_FILE_NAME = "classbuilder-profiles.properties";
+    public static final String PROFILES_XML_FILE_NAME = "classbuilder-profiles.xml";
+    public static final String DEFAULT_PROFILE_ID = "balanced";
+
+    private static final String BUILT_IN_PROFILES = "/solver-profiles.properties";
+
+    private SolverProfiles() {
+    }
+
+    /**
+     * @return the built in profiles, followed by any from the profiles files next to {@code workbook}.
+     * A file that can't be read is logged and skipped.
+     */
+    public static List<SolverProfile> loadFor(File workbook) {
+        Map<String, SolverProfile> profiles = new LinkedHashMap<>();
+        try (InputStream inputStream = SolverProfiles.class.getResourceAsStream(BUILT_IN_PROFILES)) {
+            OrderedProperties builtIn = new OrderedProperties();
+            builtIn.load(inputStream);
+            addAll(profiles, builtIn);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read the built in solver profiles", e);
+        }
+
+        File folder = workbook == null ? null : workbook.getAbsoluteFile().getParentFile();
+        if (folder != null) {
+            addFromFile(profiles, new File(folder, PROFILES_FILE_NAME), false);
+            addFromFile(profiles, new File(folder, PROFILES_XML_FILE_NAME), true);
+        }
+        return new ArrayList<>(profiles.values());
+    }
+
+    private static void addFromFile(Map<String, SolverProfile> profiles, File profilesFile, boolean xml) {
+        if (!profilesFile.canRead()) return;
+        OrderedProperties fromFile = new OrderedProperties();
+        try {
+            if (xml) {
+                try (InputStream inputStream = Files.newInputStream(profilesFile.toPath())) {
+                    fromFile.loadFromXML(inputStream);
+                }
+            } else {
+                try (Reader reader = Files.newBufferedReader(profilesFile.toPath(), StandardCharsets.UTF_8)) {
+                    fromFile.load(reader);
+                }
+            }
+            addAll(profiles, fromFile);
+            log.info("Loaded solver profiles from {}", profilesFile);
+        } catch (IOException | IllegalArgumentException e) {
+            log.warn("Ignoring solver profiles in {}: {}", profilesFile, e.getMessage());
+        }
+    }
+
+    private static void addAll(Map<String, SolverProfile> profiles, OrderedProperties properties) {
+        // Parse every profile before adding any, so one bad value rejects the whole file
+        Map<String, SolverProfile> parsed = new LinkedHashMap<>();
+        for (String id : properties.profileIds) {
+            try {
+                parsed.put(id, SolverProfile.fromProperties(id, properties));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Profile '" + id + "': " + e.getMessage(), e);
+            }
+        }
+        profiles.putAll(parsed);
+    }
+
+    /**
+     * Remembers the order profile ids first appear in, so profiles are listed in the order they were written.
+     */
+    private static final class OrderedProperties extends Properties {
+        private final Set<String> profileIds = new LinkedHashSet<>();
+
+        @Override
+        public synchronized Object put(Object key, Object value) {
+            String name = String.valueOf(key);
+            int dot = name.indexOf('.');
+            if (dot > 0) {
+                profileIds.add(name.substring(0, dot));
+            }
+            return super.put(key, value);
+        }
+    }
+}
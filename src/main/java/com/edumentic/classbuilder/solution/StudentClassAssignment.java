@@ -6,29 +6,27 @@ import lombok.Getter;
 import lombok.Setter;
 import org.optaplanner.core.api.domain.entity.PlanningEntity;
 import org.optaplanner.core.api.domain.lookup.PlanningId;
-import org.optaplanner.core.api.domain.variable.PlanningVariable;
+import org.optaplanner.core.api.domain.variable.ShadowVariable;
 /**
- * Represents a planning entity for assigning a single {@link Student} to a {@link StudentClass}
+ * Represents the assignment of a single {@link Student} to a {@link StudentClass}
  * in the context of the OptaPlanner-based class allocation problem.
  *
  * <p>
- *     Each {@code StudentClassAssignment} is a mutable object managed by OptaPlanner during solving.
  *     The {@link #student} property is fixed (immutable)—it identifies the student being assigned.
- *     The {@link #studentClass} property is a planning variable, and OptaPlanner is allowed to change
- *     its value to find the optimal allocation according to all constraints and optimization goals.
+ *     The {@link #studentClass} property is a shadow variable: OptaPlanner places the student's
+ *     {@link StudentGroupAssignment group}, and {@link StudentGroupClassVariableListener} copies the group's class
+ *     onto every member, so scoring and reporting can still look at one student at a time.
  * </p>
  *
  * <h3>OptaPlanner Annotations:</h3>
  * <ul>
- *     <li>{@link PlanningEntity}: Marks this class as an entity whose state (the assigned class) will be optimized.</li>
- *     <li>{@link PlanningVariable}: Specifies {@code studentClass} as the variable allowed to change during planning.
- *         The {@code valueRangeProviderRefs} attribute declares which value range(s) this variable can take—referencing
- *         the "studentClasses" range provided in {@code ClassBuilderSolution}.</li>
+ *     <li>{@link PlanningEntity}: Marks this class as an entity whose state (the assigned class) changes during planning.</li>
+ *     <li>{@link ShadowVariable}: Specifies {@code studentClass} as following the {@code studentClass} planning variable
+ *         of {@link StudentGroupAssignment}.</li>
  * </ul>
  *
  * <p>
  *     This class is typically created one per student, pre-populated with a reference to that student.
- *     When solving, OptaPlanner will assign (and reassign) the {@code studentClass} field to optimize for all hard and soft constraints.
  * </p>
  */
 @PlanningEntity
@@ -48,11 +46,11 @@ public class StudentClassAssignment {
     /**
      * The class to which the student is assigned.
      * <p>
-     *     This is the planning variable—OptaPlanner will change this value to find an optimal solution.
-     *     The possible values come from the {@code "studentClasses"} value range, as provided by the planning solution.
+     *     Always the class of the group holding this student, or null while the group is unassigned.
      * </p>
      */
-    @PlanningVariable(valueRangeProviderRefs = "studentClasses")
+    @ShadowVariable(variableListenerClass = StudentGroupClassVariableListener.class,
+            sourceEntityClass = StudentGroupAssignment.class, sourceVariableName = "studentClass")
     private StudentClass studentClass;
 
     public String toPrettyString() {
@@ -0,0 +1,73 @@
+package com.edumentic.classbuilder.solution;
+
+import com.edumentic.classbuilder.model.StudentClass;
+import lombok.Getter;
+import lombok.Setter;
+import org.optaplanner.core.api.domain.entity.PlanningEntity;
+import org.optaplanner.core.api.domain.lookup.PlanningId;
+import org.optaplanner.core.api.domain.variable.PlanningVariable;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The planning entity the solver actually moves: a group of students that must be placed in the same class.
+ *
+ * <p>
+ *     Students linked by must include relationships (directly or through each other) are collapsed into one group
+ *     before solving, so the solver never considers splitting them up and the search space shrinks by every
+ *     student that joins a group. A student with no must include links is a group of one. When the must include
+ *     constraint is turned off, every student is a group of one.
+ * </p>
+ *
+ * <p>
+ *     Each member's {@link StudentClassAssignment#getStudentClass() class} is a shadow variable that follows the
+ *     group (see {@link StudentGroupClassVariableListener}), so scoring still works per student.
+ * </p>
+ */
+@PlanningEntity(difficultyComparatorClass = StudentGroupAssignment.SizeComparator.class)
+@Getter
+@Setter
+public class StudentGroupAssignment {
+    @PlanningId
+    private Long id;
+
+    /**
+     * The students in this group. Fixed for the whole solve.
+     */
+    private List<StudentClassAssignment> members = new ArrayList<>();
+
+    /**
+     * The class every member of the group is placed in.
+     */
+    @PlanningVariable(valueRangeProviderRefs = "studentClasses")
+    private StudentClass studentClass;
+
+    /**
+     * The weight of this group: how many students it places.
+     */
+    public int getSize() {
+        return members.size();
+    }
+
+    public String toPrettyString() {
+        return "StudentGroupAssignment {\n" +
+                "  id=" + id + ",\n" +
+                "  members=" + members.stream().map(member -> member.getStudent().getName()).toList() + ",\n" +
+                "  studentClass=" + (studentClass == null ? "null" : studentClass.toPrettyString()) + "\n" +
+                '}';
+    }
+
+    /**
+     * Larger groups are harder to fit, so decreasing construction heuristics place them first.
+     */
+    public static class SizeComparator implements Comparator<StudentGroupAssignment> {
+        @Override
+        public int compare(StudentGroupAssignment a, StudentGroupAssignment b) {
+            return Comparator.comparingInt(StudentGroupAssignment::getSize)
+                    .thenComparing(StudentGroupAssignment::getId, Comparator.reverseOrder())
+                    .compare(a, b);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.edumentic.classbuilder.solution;
+
+import org.optaplanner.core.api.domain.variable.VariableListener;
+import org.optaplanner.core.api.score.director.ScoreDirector;
+
+/**
+ * Expands a {@link StudentGroupAssignment}'s class onto each of its members' {@link StudentClassAssignment}s.
+ */
+public class StudentGroupClassVariableListener implements VariableListener<ClassBuilderSolution, StudentGroupAssignment> {
+
+    private static final String VARIABLE_NAME = "studentClass";
+
+    @Override
+    public void beforeEntityAdded(ScoreDirector<ClassBuilderSolution> scoreDirector, StudentGroupAssignment group) {
+        // Members are updated once the group is in place
+    }
+
+    @Override
+    public void afterEntityAdded(ScoreDirector<ClassBuilderSolution> scoreDirector, StudentGroupAssignment group) {
+        updateMembers(scoreDirector, group);
+    }
+
+    @Override
+    public void beforeVariableChanged(ScoreDirector<ClassBuilderSolution> scoreDirector, StudentGroupAssignment group) {
+        // Members are updated once the group has changed
+    }
+
+    @Override
+    public void afterVariableChanged(ScoreDirector<ClassBuilderSolution> scoreDirector, StudentGroupAssignment group) {
+        updateMembers(scoreDirector, group);
+    }
+
+    @Override
+    public void beforeEntityRemoved(ScoreDirector<ClassBuilderSolution> scoreDirector, StudentGroupAssignment group) {
+        // A removed group's members go with it
+    }
+
+    @Override
+    public void afterEntityRemoved(ScoreDirector<ClassBuilderSolution> scoreDirector, StudentGroupAssignment group) {
+        // A removed group's members go with it
+    }
+
+    private void updateMembers(ScoreDirector<ClassBuilderSolution> scoreDirector, StudentGroupAssignment group) {
+        for (StudentClassAssignment member : group.getMembers()) {
+            if (member.getStudentClass() == group.getStudentClass()) continue;
+            scoreDirector.beforeVariableChanged(member, VARIABLE_NAME);
+            member.setStudentClass(group.getStudentClass());
+            scoreDirector.afterVariableChanged(member, VARIABLE_NAME);
+        }
+    }
+}
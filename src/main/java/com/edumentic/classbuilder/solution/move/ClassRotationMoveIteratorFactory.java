@@ -0,0 +1,158 @@
+package com.edumentic.classbuilder.solution.move;
+
+import com.edumentic.classbuilder.model.StudentClass;
+import com.edumentic.classbuilder.solution.ClassBuilderSolution;
+import com.edumentic.classbuilder.solution.StudentGroupAssignment;
+import org.optaplanner.core.api.score.director.ScoreDirector;
+import org.optaplanner.core.impl.heuristic.selector.common.iterator.UpcomingSelectionIterator;
+import org.optaplanner.core.impl.heuristic.selector.move.factory.MoveIteratorFactory;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+/**
+ * A 3-opt chain across three classes: a group from class A moves to B, one from B to C and one from C to A.
+ *
+ * <p>
+ *     The three groups are the same size, so like a swap every class keeps its size, but it reaches rearrangements
+ *     that would otherwise take two swaps, the first of which may well be worse on its own. Needs at least three
+ *     classes; with fewer there are no moves.
+ * </p>
+ */
+public class ClassRotationMoveIteratorFactory implements MoveIteratorFactory<ClassBuilderSolution, MultiChangeMove> {
+
+    static final String MOVE_TYPE = "ClassRotationMove";
+
+    // Attempts at picking a group of the same size from a further class before giving up with a move that isn't doable
+    private static final int MAX_PICK_ATTEMPTS = 32;
+
+    @Override
+    public long getSize(ScoreDirector<ClassBuilderSolution> scoreDirector) {
+        ClassBuilderSolution solution = scoreDirector.getWorkingSolution();
+        if (solution.getStudentClasses().size() < 3) return 0;
+        long groupCount = solution.getGroupAssignments().size();
+        return groupCount * groupCount * groupCount;
+    }
+
+    /**
+     * Every rotation in turn: for each three groups of the same size in three different classes, in the order the
+     * groups are listed, first one way round and then the other.
+     */
+    @Override
+    public Iterator<MultiChangeMove> createOriginalMoveIterator(ScoreDirector<ClassBuilderSolution> scoreDirector) {
+        ClassBuilderSolution solution = scoreDirector.getWorkingSolution();
+        if (solution.getStudentClasses().size() < 3) return Collections.emptyIterator();
+        List<List<StudentGroupAssignment>> sameSizeGroups = solution.getGroupAssignments().stream()
+                .collect(Collectors.groupingBy(StudentGroupAssignment::getSize, LinkedHashMap::new, Collectors.toList()))
+                .values().stream()
+                .filter(candidates -> candidates.size() >= 3)
+                .toList();
+        return new UpcomingSelectionIterator<>() {
+            private int sizeIndex;
+            private int first = 0;
+            private int second = 1;
+            private int third = 2;
+            private boolean reversed;
+
+            @Override
+            protected MultiChangeMove createUpcomingSelection() {
+                while (sizeIndex < sameSizeGroups.size()) {
+                    List<StudentGroupAssignment> candidates = sameSizeGroups.get(sizeIndex);
+                    if (third >= candidates.size()) {
+                        second++;
+                        third = second + 1;
+                    }
+                    if (third >= candidates.size()) {
+                        first++;
+                        second = first + 1;
+                        third = second + 1;
+                    }
+                    if (third >= candidates.size()) {
+                        sizeIndex++;
+                        first = 0;
+                        second = 1;
+                        third = 2;
+                        continue;
+                    }
+                    StudentGroupAssignment a = candidates.get(first);
+                    StudentGroupAssignment b = candidates.get(second);
+                    StudentGroupAssignment c = candidates.get(third);
+                    boolean wasReversed = reversed;
+                    reversed = !reversed;
+                    if (wasReversed) third++;
+                    if (inDifferentClasses(a, b, c)) {
+                        return wasReversed ? rotation(a, c, b) : rotation(a, b, c);
+                    }
+                }
+                return noUpcomingSelection();
+            }
+        };
+    }
+
+    @Override
+    public Iterator<MultiChangeMove> createRandomMoveIterator(ScoreDirector<ClassBuilderSolution> scoreDirector, Random workingRandom) {
+        ClassBuilderSolution solution = scoreDirector.getWorkingSolution();
+        List<StudentGroupAssignment> groups = solution.getGroupAssignments();
+        Map<Integer, List<StudentGroupAssignment>> groupsBySize = groups.stream()
+                .collect(Collectors.groupingBy(StudentGroupAssignment::getSize));
+        boolean hasMoves = solution.getStudentClasses().size() >= 3 && groups.size() >= 3;
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return hasMoves;
+            }
+
+            @Override
+            public MultiChangeMove next() {
+                if (!hasMoves) throw new NoSuchElementException();
+                StudentGroupAssignment first = groups.get(workingRandom.nextInt(groups.size()));
+                List<StudentGroupAssignment> sameSize = groupsBySize.get(first.getSize());
+                StudentGroupAssignment second = pickOutside(sameSize, first.getStudentClass(), null);
+                StudentGroupAssignment third = second == null ? null : pickOutside(sameSize, first.getStudentClass(), second.getStudentClass());
+                if (third == null) {
+                    // Nearly every group this size is in one or two classes, or there are too few of them
+                    return new MultiChangeMove(MOVE_TYPE, List.of(first), Arrays.asList(first.getStudentClass()));
+                }
+                return rotation(first, second, third);
+            }
+
+            private StudentGroupAssignment pickOutside(List<StudentGroupAssignment> candidates,
+                                                       StudentClass excluded, StudentClass alsoExcluded) {
+                if (candidates.size() < 3) return null;
+                for (int attempt = 0; attempt < MAX_PICK_ATTEMPTS; attempt++) {
+                    StudentGroupAssignment picked = candidates.get(workingRandom.nextInt(candidates.size()));
+                    if (picked.getStudentClass() != excluded && picked.getStudentClass() != alsoExcluded) {
+                        return picked;
+                    }
+                }
+                return null;
+            }
+        };
+    }
+
+    /**
+     * @return {@code first} to the class of {@code second}, {@code second} to the class of {@code third} and
+     * {@code third} to the class of {@code first}
+     */
+    private static MultiChangeMove rotation(StudentGroupAssignment first, StudentGroupAssignment second,
+                                            StudentGroupAssignment third) {
+        return new MultiChangeMove(MOVE_TYPE,
+                List.of(first, second, third),
+                Arrays.asList(second.getStudentClass(), third.getStudentClass(), first.getStudentClass()));
+    }
+
+    private static boolean inDifferentClasses(StudentGroupAssignment a, StudentGroupAssignment b, StudentGroupAssignment c) {
+        StudentClass classA = a.getStudentClass();
+        StudentClass classB = b.getStudentClass();
+        StudentClass classC = c.getStudentClass();
+        return classA != null && classB != null && classC != null
+                && classA != classB && classB != classC && classA != classC;
+    }
+}
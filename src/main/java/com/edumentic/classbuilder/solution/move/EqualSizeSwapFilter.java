@@ -0,0 +1,21 @@
+package com.edumentic.classbuilder.solution.move;
+
+import com.edumentic.classbuilder.solution.ClassBuilderSolution;
+import com.edumentic.classbuilder.solution.StudentGroupAssignment;
+import org.optaplanner.core.api.score.director.ScoreDirector;
+import org.optaplanner.core.impl.heuristic.selector.common.decorator.SelectionFilter;
+import org.optaplanner.core.impl.heuristic.selector.move.generic.SwapMove;
+
+/**
+ * Only swaps groups of the same size, so that a swap keeps every class the same size.
+ * Changing a class's size is left to change moves.
+ */
+public class EqualSizeSwapFilter implements SelectionFilter<ClassBuilderSolution, SwapMove<ClassBuilderSolution>> {
+
+    @Override
+    public boolean accept(ScoreDirector<ClassBuilderSolution> scoreDirector, SwapMove<ClassBuilderSolution> move) {
+        StudentGroupAssignment left = (StudentGroupAssignment) move.getLeftEntity();
+        StudentGroupAssignment right = (StudentGroupAssignment) move.getRightEntity();
+        return left.getSize() == right.getSize();
+    }
+}
@@ -0,0 +1,138 @@
+package com.edumentic.classbuilder.solution.move;
+
+import com.edumentic.classbuilder.model.StudentClass;
+import com.edumentic.classbuilder.solution.ClassBuilderSolution;
+import com.edumentic.classbuilder.solution.StudentClassAssignment;
+import com.edumentic.classbuilder.solution.StudentGroupAssignment;
+import org.optaplanner.core.api.score.director.ScoreDirector;
+import org.optaplanner.core.impl.heuristic.move.AbstractMove;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Moves several groups of students at once, each to its own class.
+ *
+ * <p>
+ *     The class rotation and nearby moves are built from this: a rotation moves three groups one class along, a
+ *     nearby change moves one group to a friend's class and a nearby swap trades it for a group from there. The undo
+ *     move is the same groups sent back to the classes they came from.
+ * </p>
+ */
+public class MultiChangeMove extends AbstractMove<ClassBuilderSolution> {
+
+    private static final String VARIABLE_NAME = "studentClass";
+
+    private final String moveTypeDescription;
+    private final List<StudentGroupAssignment> assignments;
+    private final List<StudentClass> toClasses;
+
+    /**
+     * @param assignments the groups to move, each at most once
+     * @param toClasses the class for each group, in the same order
+     */
+    public MultiChangeMove(String moveTypeDescription, List<StudentGroupAssignment> assignments, List<StudentClass> toClasses) {
+        if (assignments.size() != toClasses.size()) {
+            throw new IllegalArgumentException("Every assignment needs a class: " + assignments.size()
+                    + " assignments for " + toClasses.size() + " classes");
+        }
+        this.moveTypeDescription = moveTypeDescription;
+        this.assignments = assignments;
+        this.toClasses = toClasses;
+    }
+
+    @Override
+    public boolean isMoveDoable(ScoreDirector<ClassBuilderSolution> scoreDirector) {
+        for (int i = 0; i < assignments.size(); i++) {
+            if (assignments.get(i).getStudentClass() != toClasses.get(i)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    protected MultiChangeMove createUndoMove(ScoreDirector<ClassBuilderSolution> scoreDirector) {
+        List<StudentClass> fromClasses = new ArrayList<>(assignments.size());
+        for (StudentGroupAssignment assignment : assignments) {
+            fromClasses.add(assignment.getStudentClass());
+        }
+        return new MultiChangeMove(moveTypeDescription, assignments, fromClasses);
+    }
+
+    @Override
+    protected void doMoveOnGenuineVariables(ScoreDirector<ClassBuilderSolution> scoreDirector) {
+        for (int i = 0; i < assignments.size(); i++) {
+            StudentGroupAssignment assignment = assignments.get(i);
+            StudentClass toClass = toClasses.get(i);
+            if (assignment.getStudentClass() == toClass) continue;
+            scoreDirector.beforeVariableChanged(assignment, VARIABLE_NAME);
+            assignment.setStudentClass(toClass);
+            scoreDirector.afterVariableChanged(assignment, VARIABLE_NAME);
+        }
+    }
+
+    @Override
+    public MultiChangeMove rebase(ScoreDirector<ClassBuilderSolution> destinationScoreDirector) {
+        return new MultiChangeMove(moveTypeDescription,
+                rebaseList(assignments, destinationScoreDirector),
+                rebaseList(toClasses, destinationScoreDirector));
+    }
+
+    @Override
+    public String getSimpleMoveTypeDescription() {
+        return moveTypeDescription + "(" + StudentGroupAssignment.class.getSimpleName() + "." + VARIABLE_NAME + ")";
+    }
+
+    @Override
+    public Collection<StudentGroupAssignment> getPlanningEntities() {
+        return assignments;
+    }
+
+    @Override
+    public Collection<StudentClass> getPlanningValues() {
+        return new LinkedHashSet<>(toClasses);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof MultiChangeMove other)) return false;
+        return moveTypeDescription.equals(other.moveTypeDescription)
+                && assignments.equals(other.assignments)
+                && toClasses.equals(other.toClasses);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(moveTypeDescription, assignments, toClasses);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder description = new StringBuilder(moveTypeDescription).append(" {");
+        for (int i = 0; i < assignments.size(); i++) {
+            if (i > 0) description.append(", ");
+            StudentGroupAssignment assignment = assignments.get(i);
+            description.append(memberNames(assignment)).append(" ")
+                    .append(classCode(assignment.getStudentClass())).append(" -> ").append(classCode(toClasses.get(i)));
+        }
+        return description.append("}").toString();
+    }
+
+    private static String memberNames(StudentGroupAssignment assignment) {
+        StringBuilder names = new StringBuilder();
+        for (StudentClassAssignment member : assignment.getMembers()) {
+            if (!names.isEmpty()) names.append("+");
+            names.append(member.getStudent().getName());
+        }
+        return names.toString();
+    }
+
+    private static String classCode(StudentClass studentClass) {
+        return studentClass == null ? "null" : studentClass.getClassCode();
+    }
+}
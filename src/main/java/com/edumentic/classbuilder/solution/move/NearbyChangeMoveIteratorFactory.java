@@ -0,0 +1,100 @@
+package com.edumentic.classbuilder.solution.move;
+
+import com.edumentic.classbuilder.model.StudentClass;
+import com.edumentic.classbuilder.solution.ClassBuilderSolution;
+import com.edumentic.classbuilder.solution.StudentGroupAssignment;
+import org.optaplanner.core.api.score.director.ScoreDirector;
+import org.optaplanner.core.impl.heuristic.selector.common.iterator.UpcomingSelectionIterator;
+import org.optaplanner.core.impl.heuristic.selector.move.factory.MoveIteratorFactory;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * A change move that sends a group to the class of a nearby group (see {@link StudentGroupDistanceMeter}), most
+ * often one of its friends, rather than to a class picked at random.
+ *
+ * <p>
+ *     A random class rarely holds any of a group's friends, so most random change moves can only make the score
+ *     worse. This one usually joins a friend or, failing that, students with similar metrics.
+ * </p>
+ */
+public class NearbyChangeMoveIteratorFactory implements MoveIteratorFactory<ClassBuilderSolution, MultiChangeMove> {
+
+    static final String MOVE_TYPE = "NearbyChangeMove";
+
+    // How many of each group's nearest groups a move may head towards
+    static final int NEARBY_SIZE_LIMIT = 40;
+
+    private NearbyGroups nearbyGroups;
+
+    @Override
+    public long getSize(ScoreDirector<ClassBuilderSolution> scoreDirector) {
+        long groupCount = scoreDirector.getWorkingSolution().getGroupAssignments().size();
+        return groupCount * Math.min(NEARBY_SIZE_LIMIT, Math.max(groupCount - 1, 0));
+    }
+
+    /**
+     * Every group to the class of each of its nearby groups in turn, nearest first, skipping the class it is
+     * already in and the classes an earlier nearby group was in.
+     */
+    @Override
+    public Iterator<MultiChangeMove> createOriginalMoveIterator(ScoreDirector<ClassBuilderSolution> scoreDirector) {
+        List<StudentGroupAssignment> groups = scoreDirector.getWorkingSolution().getGroupAssignments();
+        NearbyGroups nearby = nearbyGroupsFor(groups);
+        return new UpcomingSelectionIterator<>() {
+            private final Set<StudentClass> visited = new HashSet<>();
+            private int origin;
+            private int nearIndex;
+
+            @Override
+            protected MultiChangeMove createUpcomingSelection() {
+                for (; origin < groups.size(); origin++, nearIndex = 0, visited.clear()) {
+                    StudentGroupAssignment group = groups.get(origin);
+                    int[] nearest = nearby.nearestTo(origin);
+                    while (nearIndex < nearest.length) {
+                        StudentClass toClass = groups.get(nearest[nearIndex++]).getStudentClass();
+                        if (toClass != null && toClass != group.getStudentClass() && visited.add(toClass)) {
+                            return new MultiChangeMove(MOVE_TYPE, List.of(group), Arrays.asList(toClass));
+                        }
+                    }
+                }
+                return noUpcomingSelection();
+            }
+        };
+    }
+
+    @Override
+    public Iterator<MultiChangeMove> createRandomMoveIterator(ScoreDirector<ClassBuilderSolution> scoreDirector, Random workingRandom) {
+        List<StudentGroupAssignment> groups = scoreDirector.getWorkingSolution().getGroupAssignments();
+        NearbyGroups nearby = nearbyGroupsFor(groups);
+        boolean hasMoves = groups.size() >= 2;
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return hasMoves;
+            }
+
+            @Override
+            public MultiChangeMove next() {
+                if (!hasMoves) throw new NoSuchElementException();
+                int origin = workingRandom.nextInt(groups.size());
+                StudentGroupAssignment group = groups.get(origin);
+                StudentGroupAssignment near = groups.get(nearby.pickNear(origin, workingRandom));
+                return new MultiChangeMove(MOVE_TYPE, List.of(group), Arrays.asList(near.getStudentClass()));
+            }
+        };
+    }
+
+    private NearbyGroups nearbyGroupsFor(List<StudentGroupAssignment> groups) {
+        if (nearbyGroups == null || !nearbyGroups.isFor(groups)) {
+            nearbyGroups = new NearbyGroups(groups, new StudentGroupDistanceMeter(), NEARBY_SIZE_LIMIT);
+        }
+        return nearbyGroups;
+    }
+}
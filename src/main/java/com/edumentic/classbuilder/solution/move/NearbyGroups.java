@@ -0,0 +1,85 @@
+package com.edumentic.classbuilder.solution.move;
+
+import com.edumentic.classbuilder.solution.StudentGroupAssignment;
+import org.optaplanner.core.impl.heuristic.selector.common.nearby.LinearDistributionNearbyRandom;
+import org.optaplanner.core.impl.heuristic.selector.common.nearby.NearbyDistanceMeter;
+import org.optaplanner.core.impl.heuristic.selector.common.nearby.NearbyRandom;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The nearest groups to each group by a {@link NearbyDistanceMeter}, worked out the first time a group is the
+ * origin of a move and kept for the rest of the solve.
+ *
+ * <p>
+ *     Distances only depend on the students, never on where they are placed, so they can be kept. A nearby group
+ *     is picked with a linearly decreasing probability: the nearest most often, the furthest kept one least.
+ * </p>
+ */
+class NearbyGroups {
+
+    private final List<StudentGroupAssignment> groups;
+    private final NearbyDistanceMeter<StudentGroupAssignment, StudentGroupAssignment> distanceMeter;
+    private final int nearbySize;
+    private final NearbyRandom nearbyRandom;
+    // Positions in groups of each group's nearest groups, nearest first; null until first needed
+    private final int[][] nearest;
+
+    NearbyGroups(List<StudentGroupAssignment> groups,
+                 NearbyDistanceMeter<StudentGroupAssignment, StudentGroupAssignment> distanceMeter, int nearbySizeLimit) {
+        this.groups = groups;
+        this.distanceMeter = distanceMeter;
+        this.nearbySize = Math.max(Math.min(nearbySizeLimit, groups.size() - 1), 0);
+        this.nearbyRandom = new LinearDistributionNearbyRandom(Math.max(nearbySize, 1));
+        this.nearest = new int[groups.size()][];
+    }
+
+    /**
+     * @return true if these are the nearest groups for exactly this list of groups
+     */
+    boolean isFor(List<StudentGroupAssignment> groups) {
+        return this.groups == groups && nearest.length == groups.size();
+    }
+
+    /**
+     * @return the position in the group list of a group near the group at {@code origin}, or -1 if it is the only group
+     */
+    int pickNear(int origin, Random workingRandom) {
+        if (nearbySize == 0) return -1;
+        int[] candidates = nearestTo(origin);
+        return candidates[nearbyRandom.nextInt(workingRandom, candidates.length)];
+    }
+
+    /**
+     * @return the positions in the group list of the groups nearest the group at {@code origin}, nearest first
+     */
+    int[] nearestTo(int origin) {
+        int[] candidates = nearest[origin];
+        if (candidates == null) {
+            candidates = findNearest(origin);
+            nearest[origin] = candidates;
+        }
+        return candidates;
+    }
+
+    private int[] findNearest(int origin) {
+        StudentGroupAssignment originGroup = groups.get(origin);
+        int otherCount = groups.size() - 1;
+        long[] keyed = new long[otherCount];
+        int k = 0;
+        for (int i = 0; i < groups.size(); i++) {
+            if (i == origin) continue;
+            double distance = distanceMeter.getNearbyDistance(originGroup, groups.get(i));
+            // Non-negative floats sort the same as their bits, so pack the distance above the position
+            keyed[k++] = (Float.floatToIntBits((float) distance) & 0xFFFFFFFFL) << 32 | i;
+        }
+        Arrays.sort(keyed);
+        int[] candidates = new int[nearbySize];
+        for (int i = 0; i < nearbySize; i++) {
+            candidates[i] = (int) keyed[i];
+        }
+        return candidates;
+    }
+}
@@ -0,0 +1,139 @@
+package com.edumentic.classbuilder.solution.move;
+
+import com.edumentic.classbuilder.model.StudentClass;
+import com.edumentic.classbuilder.solution.ClassBuilderSolution;
+import com.edumentic.classbuilder.solution.StudentGroupAssignment;
+import org.optaplanner.core.api.score.director.ScoreDirector;
+import org.optaplanner.core.impl.heuristic.selector.common.iterator.UpcomingSelectionIterator;
+import org.optaplanner.core.impl.heuristic.selector.move.factory.MoveIteratorFactory;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+/**
+ * A swap that takes a group into the class of a nearby group (see {@link StudentGroupDistanceMeter}), most often
+ * one of its friends, in exchange for a group of the same size from that class.
+ *
+ * <p>
+ *     Like {@link NearbyChangeMoveIteratorFactory} it heads towards friends, but like a swap it keeps every class the
+ *     same size, so it still helps once the sizes are right. The group sent back is one of the friend's classmates,
+ *     never the friend.
+ * </p>
+ */
+public class NearbySwapMoveIteratorFactory implements MoveIteratorFactory<ClassBuilderSolution, MultiChangeMove> {
+
+    static final String MOVE_TYPE = "NearbySwapMove";
+
+    // Attempts at picking a group of the same size from the friend's class before giving up with a move that isn't doable
+    private static final int MAX_PICK_ATTEMPTS = 32;
+
+    private NearbyGroups nearbyGroups;
+
+    @Override
+    public long getSize(ScoreDirector<ClassBuilderSolution> scoreDirector) {
+        long groupCount = scoreDirector.getWorkingSolution().getGroupAssignments().size();
+        // One swap for each group and nearby group: the group traded back is picked, not enumerated
+        return groupCount * Math.min(NearbyChangeMoveIteratorFactory.NEARBY_SIZE_LIMIT, Math.max(groupCount - 1, 0));
+    }
+
+    /**
+     * Every group into the class of each of its nearby groups in turn, nearest first, in exchange for the first
+     * group of the same size listed in that class other than the nearby group. Classes the group is already in, or
+     * with nobody the same size to trade with, are skipped.
+     */
+    @Override
+    public Iterator<MultiChangeMove> createOriginalMoveIterator(ScoreDirector<ClassBuilderSolution> scoreDirector) {
+        List<StudentGroupAssignment> groups = scoreDirector.getWorkingSolution().getGroupAssignments();
+        NearbyGroups nearby = nearbyGroupsFor(groups);
+        Map<Integer, List<StudentGroupAssignment>> groupsBySize = groupsBySize(groups);
+        return new UpcomingSelectionIterator<>() {
+            private int origin;
+            private int nearIndex;
+
+            @Override
+            protected MultiChangeMove createUpcomingSelection() {
+                for (; origin < groups.size(); origin++, nearIndex = 0) {
+                    StudentGroupAssignment group = groups.get(origin);
+                    int[] nearest = nearby.nearestTo(origin);
+                    while (nearIndex < nearest.length) {
+                        StudentGroupAssignment near = groups.get(nearest[nearIndex++]);
+                        StudentClass toClass = near.getStudentClass();
+                        if (toClass == null || toClass == group.getStudentClass()) continue;
+                        for (StudentGroupAssignment exchanged : groupsBySize.get(group.getSize())) {
+                            if (exchanged.getStudentClass() == toClass && exchanged != near) {
+                                return swap(group, exchanged);
+                            }
+                        }
+                    }
+                }
+                return noUpcomingSelection();
+            }
+        };
+    }
+
+    @Override
+    public Iterator<MultiChangeMove> createRandomMoveIterator(ScoreDirector<ClassBuilderSolution> scoreDirector, Random workingRandom) {
+        List<StudentGroupAssignment> groups = scoreDirector.getWorkingSolution().getGroupAssignments();
+        NearbyGroups nearby = nearbyGroupsFor(groups);
+        Map<Integer, List<StudentGroupAssignment>> groupsBySize = groupsBySize(groups);
+        boolean hasMoves = groups.size() >= 3;
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return hasMoves;
+            }
+
+            @Override
+            public MultiChangeMove next() {
+                if (!hasMoves) throw new NoSuchElementException();
+                int origin = workingRandom.nextInt(groups.size());
+                StudentGroupAssignment group = groups.get(origin);
+                StudentGroupAssignment near = groups.get(nearby.pickNear(origin, workingRandom));
+                StudentClass toClass = near.getStudentClass();
+                StudentGroupAssignment exchanged = toClass == group.getStudentClass() ? null
+                        : pickIn(groupsBySize.get(group.getSize()), toClass, near);
+                if (exchanged == null) {
+                    // Already together, or nobody the same size to trade with
+                    return new MultiChangeMove(MOVE_TYPE, List.of(group), Arrays.asList(group.getStudentClass()));
+                }
+                return swap(group, exchanged);
+            }
+
+            private StudentGroupAssignment pickIn(List<StudentGroupAssignment> candidates, StudentClass studentClass,
+                                                  StudentGroupAssignment excluded) {
+                for (int attempt = 0; attempt < MAX_PICK_ATTEMPTS; attempt++) {
+                    StudentGroupAssignment picked = candidates.get(workingRandom.nextInt(candidates.size()));
+                    if (picked.getStudentClass() == studentClass && picked != excluded) {
+                        return picked;
+                    }
+                }
+                return null;
+            }
+        };
+    }
+
+    private NearbyGroups nearbyGroupsFor(List<StudentGroupAssignment> groups) {
+        if (nearbyGroups == null || !nearbyGroups.isFor(groups)) {
+            nearbyGroups = new NearbyGroups(groups, new StudentGroupDistanceMeter(), NearbyChangeMoveIteratorFactory.NEARBY_SIZE_LIMIT);
+        }
+        return nearbyGroups;
+    }
+
+    private static Map<Integer, List<StudentGroupAssignment>> groupsBySize(List<StudentGroupAssignment> groups) {
+        return groups.stream().collect(Collectors.groupingBy(StudentGroupAssignment::getSize));
+    }
+
+    /**
+     * @return {@code group} to the class of {@code exchanged}, and {@code exchanged} to the class {@code group} leaves
+     */
+    private static MultiChangeMove swap(StudentGroupAssignment group, StudentGroupAssignment exchanged) {
+        return new MultiChangeMove(MOVE_TYPE,
+                List.of(group, exchanged),
+                Arrays.asList(exchanged.getStudentClass(), group.getStudentClass()));
+    }
+}
@@ -0,0 +1,72 @@
+package com.edumentic.classbuilder.solution.move;
+
+import com.edumentic.classbuilder.model.Gender;
+import com.edumentic.classbuilder.model.RelationshipType;
+import com.edumentic.classbuilder.model.Student;
+import com.edumentic.classbuilder.solution.StudentClassAssignment;
+import com.edumentic.classbuilder.solution.StudentGroupAssignment;
+import org.optaplanner.core.impl.heuristic.selector.common.nearby.NearbyDistanceMeter;
+
+/**
+ * How far one group of students is from another, for picking which class a group is moved towards.
+ *
+ * <p>
+ *     The distance falls into three bands, nearest first:
+ *     <ul>
+ *         <li>[0, 1): a member of one group wants to be with a member of the other (must or should include, either
+ *             direction). The more such relationships, the nearer;</li>
+ *         <li>[1, 2): unrelated, ordered by how different their numeracy, literacy, social emotional and gender are,
+ *             so a group is next moved towards students like itself, which disturbs class balance least;</li>
+ *         <li>[2, 3): a member of one cannot be with, or would rather avoid, a member of the other.</li>
+ *     </ul>
+ * </p>
+ */
+public class StudentGroupDistanceMeter implements NearbyDistanceMeter<StudentGroupAssignment, StudentGroupAssignment> {
+
+    // Metrics are on a 1-5 scale, so each differs by at most 4
+    private static final double MAX_METRIC_DIFFERENCE = 3 * 4 + 1;
+
+    @Override
+    public double getNearbyDistance(StudentGroupAssignment origin, StudentGroupAssignment destination) {
+        int avoided = 0;
+        int wanted = 0;
+        for (StudentClassAssignment from : origin.getMembers()) {
+            for (StudentClassAssignment to : destination.getMembers()) {
+                wanted += relationships(from.getStudent(), to.getStudent(), RelationshipType.MUST_INCLUDE)
+                        + relationships(from.getStudent(), to.getStudent(), RelationshipType.SHOULD_INCLUDE);
+                avoided += relationships(from.getStudent(), to.getStudent(), RelationshipType.CANNOT_BE_WITH)
+                        + relationships(from.getStudent(), to.getStudent(), RelationshipType.AVOID_BEING_WITH);
+            }
+        }
+        if (avoided > 0) {
+            return 3.0 - 1.0 / (avoided + 1);
+        }
+        if (wanted > 0) {
+            return 1.0 / (wanted + 1);
+        }
+        return 1.0 + Math.min(metricDifference(origin, destination) / MAX_METRIC_DIFFERENCE, 0.999);
+    }
+
+    private static int relationships(Student a, Student b, RelationshipType type) {
+        return (type.of(a).contains(b) ? 1 : 0) + (type.of(b).contains(a) ? 1 : 0);
+    }
+
+    private static double metricDifference(StudentGroupAssignment a, StudentGroupAssignment b) {
+        double numeracy = 0, literacy = 0, socialEmotional = 0, male = 0;
+        for (StudentClassAssignment member : a.getMembers()) {
+            Student student = member.getStudent();
+            numeracy += (double) student.getNumeracy() / a.getSize();
+            literacy += (double) student.getLiteracy() / a.getSize();
+            socialEmotional += (double) student.getSocialEmotional() / a.getSize();
+            male += student.getGender() == Gender.MALE ? 1.0 / a.getSize() : 0;
+        }
+        for (StudentClassAssignment member : b.getMembers()) {
+            Student student = member.getStudent();
+            numeracy -= (double) student.getNumeracy() / b.getSize();
+            literacy -= (double) student.getLiteracy() / b.getSize();
+            socialEmotional -= (double) student.getSocialEmotional() / b.getSize();
+            male -= student.getGender() == Gender.MALE ? 1.0 / b.getSize() : 0;
+        }
+        return Math.abs(numeracy) + Math.abs(literacy) + Math.abs(socialEmotional) + Math.abs(male);
+    }
+}
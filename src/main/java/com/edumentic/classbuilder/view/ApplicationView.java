@@ -1,16 +1,22 @@
 package com.edumentic.classbuilder.view;
 
+import com.edumentic.classbuilder.io.DatafileParseException;
+import com.edumentic.classbuilder.solution.SolutionReport;
+import com.edumentic.classbuilder.solution.SolverProfile;
 import com.edumentic.classbuilder.viewmodel.ApplicationViewModel;
-import com.edumentic.classbuilder.viewmodel.DatafileParseException;
 import javafx.beans.value.ChangeListener;
 import javafx.collections.ListChangeListener;
+import javafx.concurrent.Worker;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.control.*;
 import javafx.scene.layout.*;
+import javafx.scene.web.WebEngine;
 import javafx.scene.web.WebView;
 import javafx.stage.FileChooser;
+import netscape.javascript.JSException;
 import org.kordamp.ikonli.javafx.FontIcon;
+import org.optaplanner.core.config.solver.SolverConfig;
 
 import java.io.IOException;
 
@@ -27,6 +33,9 @@ public class ApplicationView extends VBox {
     @FXML private Button refreshFromDatafileButton;
     @FXML private Button clearDatafileButton;
     @FXML private Label datafileSummaryLabel;
+    @FXML private Label feasibilityProblemsLabel;
+    @FXML private Label datafileReloadProblemLabel;
+    @FXML private CheckBox reloadOnChangeCheckbox;
     @FXML private Label datafileErrorsLabel;
     @FXML private HBox solutionScoreDisplayHBox;
     @FXML private FontIcon startButtonFontIcon;
@@ -44,16 +53,27 @@ public class ApplicationView extends VBox {
     @FXML private Spinner<Integer> minClassSizeSpinner;
     @FXML private Spinner<Integer> maxClassSizeSpinner;
     @FXML private Slider classBalanceSensitivitySlider;
+    @FXML private ComboBox<String> moveThreadCountComboBox;
+    @FXML private ComboBox<SolverProfile> solverProfileComboBox;
+    @FXML private ComboBox<Integer> portfolioSizeComboBox;
 
     @FXML private ListView<ApplicationViewModel.ClassSolutionData> solutionHistoryList;
     @FXML private Button clearSolutionHistoryButton;
+    @FXML private ComboBox<Integer> solutionHistoryLimitComboBox;
     @FXML private Button exportSelectedSolutionButton;
 
     @FXML private SplitPane solverContentSplitPane;
     @FXML private Label scoreLabel;
+    @FXML private Label scoreCalculationSpeedLabel;
+    @FXML private Label bestSolutionCountLabel;
 
     @FXML private WebView selectedSolutionReportWebView;
 
+    // The report the web view shows, or will once it has loaded
+    private SolutionReport displayedReport;
+    // The report to show once the page has loaded, when the selection changed while it was loading
+    private SolutionReport pendingReport;
+
     public ApplicationView(ApplicationViewModel viewModel) {
         this.viewModel = viewModel;
         FXMLLoader fxmlLoader = new FXMLLoader(getClass().getResource("/fxml/ApplicationView.fxml"));
@@ -78,6 +98,9 @@ public class ApplicationView extends VBox {
 
         // Bind the datafile summary label's text property to the ViewModel's datafile summary property.
         datafileSummaryLabel.textProperty().bind(viewModel.datafileSummaryProperty());
+        feasibilityProblemsLabel.textProperty().bind(viewModel.feasibilityProblemsProperty());
+        datafileReloadProblemLabel.textProperty().bind(viewModel.datafileReloadProblemProperty());
+        reloadOnChangeCheckbox.selectedProperty().bindBidirectional(viewModel.reloadOnChangeProperty());
 
         // Show load instructions only when no data is loaded.
         loadDatafileInstructionsHBox.visibleProperty().bind(viewModel.dataIsLoadedProperty().not());
@@ -113,6 +136,33 @@ public class ApplicationView extends VBox {
 
         classBalanceSensitivitySlider.valueProperty().bindBidirectional(viewModel.classMetricVarianceSensitivityProperty());
 
+        // Offer no move threads, automatic, or an explicit count up to the number of processors.
+        moveThreadCountComboBox.getItems().addAll(SolverConfig.MOVE_THREAD_COUNT_NONE, SolverConfig.MOVE_THREAD_COUNT_AUTO);
+        for(int threads = 2; threads <= Runtime.getRuntime().availableProcessors(); threads++){
+            moveThreadCountComboBox.getItems().add(String.valueOf(threads));
+        }
+        moveThreadCountComboBox.valueProperty().bindBidirectional(viewModel.moveThreadCountProperty());
+        // The thread count is fixed when the solver is built, so it can't be changed mid-solve.
+        moveThreadCountComboBox.disableProperty().bind(viewModel.runningSolverProperty());
+        scoreCalculationSpeedLabel.textProperty().bind(viewModel.scoreCalculationSpeedSummaryProperty());
+        bestSolutionCountLabel.textProperty().bind(viewModel.bestSolutionCountSummaryProperty());
+
+        // Profiles are reloaded with each datafile, from any profiles file kept next to it.
+        solverProfileComboBox.itemsProperty().bind(viewModel.solverProfilesProperty());
+        solverProfileComboBox.valueProperty().bindBidirectional(viewModel.solverProfileProperty());
+        solverProfileComboBox.disableProperty().bind(viewModel.runningSolverProperty());
+
+        // Each portfolio solver needs a processor of its own to be worth running.
+        for(int solvers = 1; solvers <= Math.max(2, Runtime.getRuntime().availableProcessors()); solvers++){
+            portfolioSizeComboBox.getItems().add(solvers);
+        }
+        portfolioSizeComboBox.valueProperty().bindBidirectional(viewModel.portfolioSizeProperty());
+        portfolioSizeComboBox.disableProperty().bind(viewModel.runningSolverProperty());
+
+
+        // How many recent solutions the history keeps; milestones are kept regardless.
+        solutionHistoryLimitComboBox.getItems().addAll(20, ApplicationViewModel.DEFAULT_SOLUTION_HISTORY_LIMIT, 500, 2000);
+        solutionHistoryLimitComboBox.valueProperty().bindBidirectional(viewModel.solutionHistoryLimitProperty());
 
         // Bind the solution history list to the solutions property in the ViewModel.
         solutionHistoryList.itemsProperty().bind(viewModel.solutionsProperty());
@@ -124,6 +174,8 @@ public class ApplicationView extends VBox {
             if(newV == null){
                 // When nothing is selected, show dashes and clear the webview.
                 scoreLabel.setText("-");
+                displayedReport = null;
+                pendingReport = null;
                 selectedSolutionReportWebView.getEngine().loadContent("");
             }else{
                 // Show the score of the seelcted solution as either a penalty of the ahrd scontraint or a score of the soft
@@ -135,7 +187,14 @@ public class ApplicationView extends VBox {
                     solutionScoreDisplayHBox.setStyle("-fx-background-color: #a5f7ad");
                 }
 
-                selectedSolutionReportWebView.getEngine().loadContent(viewModel.getCurrentSolutionReportHtml());
+                showReport(viewModel.getCurrentSolutionReport());
+            }
+        });
+        selectedSolutionReportWebView.getEngine().getLoadWorker().stateProperty().addListener((prop, oldV, newV) -> {
+            if(newV == Worker.State.SUCCEEDED && pendingReport != null){
+                SolutionReport report = pendingReport;
+                pendingReport = null;
+                showReport(report);
             }
         });
 
@@ -152,6 +211,36 @@ public class ApplicationView extends VBox {
 
     }
 
+    /**
+     * Loads the report page once, then brings it up to date with a diff through the page's script for each report
+     * that follows, so following a running solve doesn't lay out the whole page again for every best solution.
+     */
+    private void showReport(SolutionReport report){
+        WebEngine engine = selectedSolutionReportWebView.getEngine();
+        if(engine.getLoadWorker().isRunning()){
+            // Applied once loaded, rather than loading the page again
+            pendingReport = report;
+            return;
+        }
+        SolutionReport.Diff diff = report.diffFrom(displayedReport);
+        if(diff == null){
+            displayedReport = report;
+            engine.loadContent(viewModel.getSolutionReportPageHtml(report));
+            return;
+        }
+        if(!diff.isEmpty()){
+            try{
+                engine.executeScript("ClassBuilderReport.apply(" + diff.toJson() + ")");
+            }catch(JSException e){
+                // The page isn't the one the diff was made for, so start again with the whole report
+                displayedReport = report;
+                engine.loadContent(viewModel.getSolutionReportPageHtml(report));
+                return;
+            }
+        }
+        displayedReport = report;
+    }
+
     @FXML
     private void browseUploadSpreadsheetButtonClicked(){
         if(viewModel.runningSolverProperty().get()) {
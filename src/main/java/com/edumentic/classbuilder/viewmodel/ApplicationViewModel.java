@@ -1,48 +1,91 @@
 package com.edumentic.classbuilder.viewmodel;
 
-import com.edumentic.classbuilder.model.Gender;
+import com.edumentic.classbuilder.io.Datafile;
+import com.edumentic.classbuilder.io.DatafileCache;
+import com.edumentic.classbuilder.io.DatafileDiff;
+import com.edumentic.classbuilder.io.DatafileParseException;
+import com.edumentic.classbuilder.io.DatafileWatcher;
+import com.edumentic.classbuilder.io.RelationshipOptions;
 import com.edumentic.classbuilder.model.Student;
 import com.edumentic.classbuilder.model.StudentClass;
 import com.edumentic.classbuilder.solution.ClassBuilderConstraints;
 import com.edumentic.classbuilder.solution.ClassBuilderSolution;
+import com.edumentic.classbuilder.solution.CompiledProblem;
+import com.edumentic.classbuilder.solution.ConstraintSnapshot;
+import com.edumentic.classbuilder.solution.FeasibilityCheck;
+import com.edumentic.classbuilder.solution.ScoreCalculatorType;
+import com.edumentic.classbuilder.solution.SolutionReport;
+import com.edumentic.classbuilder.solution.SolverProfile;
+import com.edumentic.classbuilder.solution.SolverProfiles;
 import com.edumentic.classbuilder.solution.StudentClassAssignment;
 import javafx.application.Platform;
 import javafx.beans.property.*;
 import javafx.collections.FXCollections;
 import javafx.concurrent.Service;
 import javafx.concurrent.Task;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.poi.ss.usermodel.Row;
-import org.apache.poi.ss.usermodel.Sheet;
-import org.apache.poi.ss.usermodel.Workbook;
-import org.apache.poi.ss.usermodel.WorkbookFactory;
+import org.optaplanner.core.api.score.buildin.hardsoft.HardSoftScore;
 import org.optaplanner.core.api.solver.event.BestSolutionChangedEvent;
+import org.optaplanner.core.config.solver.SolverConfig;
 
 import java.io.File;
-import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 
 @Slf4j
 public class ApplicationViewModel implements BestSolutionConsumer{
 
+    public static final int DEFAULT_SOLUTION_HISTORY_LIMIT = 100;
+    private static final int SOLUTION_REPORT_CACHE_SIZE = 8;
+
     private Service<Void> solverService;
+    private RunSolverTask solverTask;
 
     private List<Student> students;
     private List<StudentClass> classes;
     private File datafile;
+    // Reloading or reopening an unchanged workbook reads its snapshot instead of the workbook
+    private final DatafileCache datafileCache = DatafileCache.inUserHome();
+    //reloads the workbook whenever it is saved, while reloadOnChange is set
+    private DatafileWatcher datafileWatcher;
+    //the class each student starts the next solve in, taken (once) by the next task; null starts from scratch
+    private Function<Student, StudentClass> seedClassOf;
 
     private final ListProperty<ClassSolutionData> solutions = new SimpleListProperty<>(FXCollections.observableArrayList());
     private final ObjectProperty<ClassSolutionData> currentSolution = new SimpleObjectProperty<>(null);
+    //how many of the most recent solutions the history keeps, besides its milestones
+    private final ObjectProperty<Integer> solutionHistoryLimit = new SimpleObjectProperty<>(DEFAULT_SOLUTION_HISTORY_LIMIT);
+    //the next solution is the first of a new solve, and so a milestone
+    private boolean solveStarted;
+
+    //rendered reports of recently viewed solutions, least recently viewed first, only used on the FX thread
+    private final Map<ClassSolutionData, SolutionReport> solutionReportCache = new LinkedHashMap<>(16, 0.75f, true){
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ClassSolutionData, SolutionReport> eldest){
+            return size() > SOLUTION_REPORT_CACHE_SIZE;
+        }
+    };
 
     private final StringProperty datafileSummary = new SimpleStringProperty();
+    private final StringProperty feasibilityProblems = new SimpleStringProperty("");
+    private final BooleanProperty reloadOnChange = new SimpleBooleanProperty(true);
+    //how the workbook's relationship columns are read, both when it is loaded and when it is reloaded
+    private final ObjectProperty<RelationshipOptions> relationshipOptions = new SimpleObjectProperty<>(RelationshipOptions.DEFAULT);
+    private final StringProperty datafileReloadProblem = new SimpleStringProperty("");
 
     private final BooleanProperty mustIncludeOthers = new SimpleBooleanProperty();
     private final BooleanProperty shouldIncludeOthers = new SimpleBooleanProperty();
@@ -58,6 +101,23 @@ public class ApplicationViewModel implements BestSolutionConsumer{
 
     private final IntegerProperty classMetricVarianceSensitivity = new SimpleIntegerProperty();
 
+    private final ObjectProperty<ScoreCalculatorType> scoreCalculatorType = new SimpleObjectProperty<>(ScoreCalculatorType.INCREMENTAL);
+
+    private final ListProperty<SolverProfile> solverProfiles = new SimpleListProperty<>(FXCollections.observableArrayList(SolverProfiles.loadFor(null)));
+    private final ObjectProperty<SolverProfile> solverProfile = new SimpleObjectProperty<>(profileWithId(solverProfiles, SolverProfiles.DEFAULT_PROFILE_ID));
+
+    //single threaded unless chosen, as for RunSolverTask itself
+    private final StringProperty moveThreadCount = new SimpleStringProperty(SolverConfig.MOVE_THREAD_COUNT_NONE);
+    //solvers run side by side, each from a different seed and profile, sharing their best solution
+    private final ObjectProperty<Integer> portfolioSize = new SimpleObjectProperty<>(1);
+    private final StringProperty scoreCalculationSpeedSummary = new SimpleStringProperty("");
+    //best solutions are passed on to the history at most this often, the latest replacing any still waiting
+    private final IntegerProperty maxBestSolutionsPerSecond = new SimpleIntegerProperty(10);
+    private final StringProperty bestSolutionCountSummary = new SimpleStringProperty("");
+
+    //speed of the last completed single threaded solve per calculator, the baseline the speed-up is reported against
+    private final Map<ScoreCalculatorType, Long> singleThreadedScoreCalculationSpeeds = new EnumMap<>(ScoreCalculatorType.class);
+
     private final BooleanProperty runningSolver = new SimpleBooleanProperty(false);
     private final BooleanProperty dataIsLoaded = new SimpleBooleanProperty(false);
 
@@ -65,18 +125,19 @@ public class ApplicationViewModel implements BestSolutionConsumer{
         solverService = new Service<Void>() {
             @Override
             protected Task<Void> createTask() {
-                //create template solution
-                ClassBuilderSolution solutionTemplate = new ClassBuilderSolution();
-                solutionTemplate.setStudentClasses(classes);
-                //generate a StudentClassAssignment for every student
-                for(Student student : students){
-                    StudentClassAssignment assignment = new StudentClassAssignment();
-                    assignment.setStudent(student);
-                    assignment.setStudentClass(classes.getFirst());
-                    assignment.setId((long) solutionTemplate.getAssignments().size());
-                    solutionTemplate.getAssignments().add(assignment);
-                }
-                return new RunSolverTask(ApplicationViewModel.this, solutionTemplate);
+                //create template solution, every student left unassigned for the profile's construction heuristic to place,
+                //unless the workbook changed mid-solve and those students who didn't change start where they were
+                ClassBuilderSolution solutionTemplate = seedClassOf == null
+                        ? ClassBuilderSolution.createUnassigned(students, classes, ConstraintSnapshot.current())
+                        : ClassBuilderSolution.createSeeded(students, classes, ConstraintSnapshot.current(), seedClassOf);
+                seedClassOf = null;
+                solverTask = new RunSolverTask(ApplicationViewModel.this, solutionTemplate, scoreCalculatorType.get());
+                solverTask.setMoveThreadCount(moveThreadCount.get());
+                solverTask.setSolverProfile(solverProfile.get());
+                solverTask.setPortfolioProfiles(List.copyOf(solverProfiles));
+                solverTask.setPortfolioSize(portfolioSize.get() == null ? 1 : portfolioSize.get());
+                solverTask.setMaxBestSolutionsPerSecond(maxBestSolutionsPerSecond.get());
+                return solverTask;
             }
         };
         solverService.setOnRunning(evt -> {
@@ -85,47 +146,111 @@ public class ApplicationViewModel implements BestSolutionConsumer{
         solverService.setOnCancelled(evt -> {
             runningSolver.set(false);
         });
+        // Profiles with a termination finish by themselves
+        solverService.setOnSucceeded(evt -> {
+            runningSolver.set(false);
+        });
+        solverService.setOnFailed(evt -> {
+            log.error("Solver failed", solverService.getException());
+            runningSolver.set(false);
+        });
 
         ClassBuilderConstraints constraints = ClassBuilderConstraints.getInstance();
 
         mustIncludeOthers.set(constraints.isMustIncludeOthers());
-        mustIncludeOthers.addListener((obs, oldV, newV) -> constraints.setMustIncludeOthers(newV));
+        mustIncludeOthers.addListener((obs, oldV, newV) -> {
+            constraints.setMustIncludeOthers(newV);
+            onConstraintsChanged();
+        });
 
         shouldIncludeOthers.set(constraints.isShouldIncludeOthers());
-        shouldIncludeOthers.addListener((obs, oldV, newV) -> constraints.setShouldIncludeOthers(newV));
+        shouldIncludeOthers.addListener((obs, oldV, newV) -> {
+            constraints.setShouldIncludeOthers(newV);
+            onConstraintsChanged();
+        });
 
         mustAvoidOthers.set(constraints.isMustAvoidOthers());
-        mustAvoidOthers.addListener((obs, oldV, newV) -> constraints.setMustAvoidOthers(newV));
+        mustAvoidOthers.addListener((obs, oldV, newV) -> {
+            constraints.setMustAvoidOthers(newV);
+            onConstraintsChanged();
+        });
 
         shouldAvoidOthers.set(constraints.isShouldAvoidOthers());
-        shouldAvoidOthers.addListener((obs, oldV, newV) -> constraints.setShouldAvoidOthers(newV));
+        shouldAvoidOthers.addListener((obs, oldV, newV) -> {
+            constraints.setShouldAvoidOthers(newV);
+            onConstraintsChanged();
+        });
 
         balanceNumeracy.set(constraints.isBalanceNumeracy());
-        balanceNumeracy.addListener((obs, oldV, newV) -> constraints.setBalanceNumeracy(newV));
+        balanceNumeracy.addListener((obs, oldV, newV) -> {
+            constraints.setBalanceNumeracy(newV);
+            onConstraintsChanged();
+        });
 
         balanceLiteracy.set(constraints.isBalanceLiteracy());
-        balanceLiteracy.addListener((obs, oldV, newV) -> constraints.setBalanceLiteracy(newV));
+        balanceLiteracy.addListener((obs, oldV, newV) -> {
+            constraints.setBalanceLiteracy(newV);
+            onConstraintsChanged();
+        });
 
         balanceSocialEmotional.set(constraints.isBalanceSocialEmotional());
-        balanceSocialEmotional.addListener((obs, oldV, newV) -> constraints.setBalanceSocialEmotional(newV));
+        balanceSocialEmotional.addListener((obs, oldV, newV) -> {
+            constraints.setBalanceSocialEmotional(newV);
+            onConstraintsChanged();
+        });
 
         balanceGender.set(constraints.isBalanceGender());
-        balanceGender.addListener((obs, oldV, newV) -> constraints.setBalanceGender(newV));
+        balanceGender.addListener((obs, oldV, newV) -> {
+            constraints.setBalanceGender(newV);
+            onConstraintsChanged();
+        });
 
         minClassSize.set(constraints.getMinClassSize());
-        minClassSize.addListener((obs, oldV, newV) -> constraints.setMinClassSize(newV.intValue()));
+        minClassSize.addListener((obs, oldV, newV) -> {
+            constraints.setMinClassSize(newV.intValue());
+            onConstraintsChanged();
+        });
 
         maxClassSize.set(constraints.getMaxClassSize());
         maxClassSize.addListener((obs, oldV, newV) -> {
             constraints.setMaxClassSize(newV.intValue());
+            onConstraintsChanged();
+        });
+
+        solutionHistoryLimit.addListener((obs, oldV, newV) -> pruneSolutionHistory());
+
+        reloadOnChange.addListener((obs, oldV, newV) -> watchDatafile());
+
+        // Reads the loaded workbook again with the new options, as if it had been saved
+        relationshipOptions.addListener((obs, oldV, newV) -> {
+            watchDatafile();
+            if(dataIsLoaded.get() && datafile != null){
+                reloadDatafile(datafile, newV);
+            }
         });
 
         classMetricVarianceSensitivity.set(constraints.getClassMetricVarianceSensitivity());
-        classMetricVarianceSensitivity.addListener((obs, oldV, newV) -> constraints.setClassMetricVarianceSensitivity(newV.intValue()));
+        classMetricVarianceSensitivity.addListener((obs, oldV, newV) -> {
+            constraints.setClassMetricVarianceSensitivity(newV.intValue());
+            onConstraintsChanged();
+        });
+
+    }
 
+    /**
+     * Hands the edited settings to a running solve as a fresh {@link ConstraintSnapshot}.
+     * Nothing is needed when idle: the next solve snapshots the settings when it starts.
+     */
+    private void onConstraintsChanged(){
+        checkFeasibility();
+        if(runningSolver.get() && solverTask != null){
+            solverTask.changeConstraints(ConstraintSnapshot.current());
+        }
     }
 
     public void runSolver() {
+        solveStarted = true;
+        bestSolutionCountSummary.set("");
         solverService.restart();
     }
 
@@ -139,199 +264,284 @@ public class ApplicationViewModel implements BestSolutionConsumer{
 
     public void loadDatafile(File file) throws DatafileParseException{
         dataIsLoaded.set(false);
-        if(file == null || ! file.exists() || ! file.canRead()){
-            throw new DatafileParseException("Cannot read file:  " + file);
-        }
+        stopWatchingDatafile();
+        datafileReloadProblem.set("");
+        Datafile contents = datafileCache.read(file, relationshipOptions.get());
         datafile = file;
-        try (InputStream fileStream = new FileInputStream(datafile);
-             Workbook workbook = WorkbookFactory.create(fileStream)) {
+        students = contents.getStudents();
+        classes = contents.getClasses();
 
-            Sheet studentSheet = workbook.getSheet("Students");
-            Sheet classSheet = workbook.getSheet("Classes");
+        datafileSummary.set("Loaded " + students.size() + " students for " + classes.size() + " classes");
+        checkFeasibility();
 
-            if (studentSheet == null || classSheet == null) {
-                throw new DatafileParseException("Missing required sheets. Ensure the spreadsheet has 'General', 'Students', and 'Classes' sheets.");
-            }
+        // Pick up any profiles kept alongside the workbook, keeping the selected profile if it is still there
+        String selectedProfileId = solverProfile.get() == null ? SolverProfiles.DEFAULT_PROFILE_ID : solverProfile.get().getId();
+        solverProfiles.setAll(SolverProfiles.loadFor(datafile));
+        solverProfile.set(profileWithId(solverProfiles, selectedProfileId));
 
-            students = fromStudentSheet(studentSheet);
-            classes = fromClassesSheet(classSheet);
+        dataIsLoaded.set(true);
+        watchDatafile();
+    }
 
-            datafileSummary.set("Loaded " + students.size() + " students for " + classes.size() + " classes");
+    /**
+     * Starts watching the loaded workbook, in place of any workbook watched before, if {@link #reloadOnChange} is set.
+     */
+    private void watchDatafile(){
+        stopWatchingDatafile();
+        if(!reloadOnChange.get() || !dataIsLoaded.get() || datafile == null) return;
+        File watched = datafile;
+        RelationshipOptions options = relationshipOptions.get();
+        try{
+            datafileWatcher = new DatafileWatcher(watched, () -> reloadDatafile(watched, options));
+        }catch(IOException e){
+            log.warn("Cannot watch {} for changes: {}", watched, e.getMessage());
+        }
+    }
 
-            dataIsLoaded.set(true);
+    private void stopWatchingDatafile(){
+        if(datafileWatcher != null){
+            datafileWatcher.close();
+            datafileWatcher = null;
+        }
+    }
 
-        } catch (Exception e) {
-            throw new DatafileParseException("Failed to process the Excel file: " + e.getMessage());
+    /**
+     * Reads the watched workbook again after it was saved, on the watcher's thread, or after the
+     * {@link #relationshipOptions} changed. A workbook that can't be read, perhaps because it was saved half way
+     * through an edit, leaves the loaded data as it is.
+     */
+    private void reloadDatafile(File watched, RelationshipOptions options){
+        Datafile contents;
+        try{
+            contents = datafileCache.read(watched, options);
+        }catch(DatafileParseException e){
+            log.warn("Cannot reload {}: {}", watched, e.getMessage());
+            Platform.runLater(() -> {
+                if(watched.equals(datafile) && dataIsLoaded.get()){
+                    datafileReloadProblem.set("Kept the data loaded before, as the saved changes can't be read:\n" + e.getMessage());
+                }
+            });
+            return;
         }
+        Platform.runLater(() -> applyReloadedDatafile(contents));
+    }
+
+    /**
+     * Replaces the loaded students and classes with those read again from the workbook, if they changed. A running
+     * solve is restarted on them, with every student who is unchanged starting in the class they have in that solve's
+     * best solution so far, if it has one, so only new and changed students are placed from scratch.
+     */
+    private void applyReloadedDatafile(Datafile contents){
+        // Cleared or replaced by another workbook since
+        if(!dataIsLoaded.get() || !contents.getFile().equals(datafile)) return;
+        datafileReloadProblem.set("");
+        DatafileDiff diff = DatafileDiff.between(new Datafile(datafile, students, classes), contents);
+        // Saved without a change that matters, such as to formatting
+        if(diff.isEmpty()) return;
+        log.info("Reloaded {}: {}", datafile.getName(), diff);
+
+        // The running task's own best, as the newest solution in the history may be from an earlier solve
+        ClassBuilderSolution best = runningSolver.get() && solverTask != null ? solverTask.getBestSolution() : null;
+        Function<Student, StudentClass> seed = best == null ? null : seedClasses(best, diff, contents.getClasses());
+        students = contents.getStudents();
+        classes = contents.getClasses();
+        datafileSummary.set("Reloaded " + students.size() + " students for " + classes.size() + " classes (" + diff + ")");
+        checkFeasibility();
+
+        if(runningSolver.get()){
+            seedClassOf = seed;
+            runSolver();
+        }
+    }
+
+    /**
+     * @return for each reloaded student, the reloaded class with the code of the class they have in {@code best}, or
+     * {@code null} if they are new or changed, or their class is gone
+     */
+    private static Function<Student, StudentClass> seedClasses(ClassBuilderSolution best, DatafileDiff diff,
+                                                               List<StudentClass> reloadedClasses){
+        Map<String, StudentClass> classesByCode = new HashMap<>();
+        for(StudentClass studentClass : reloadedClasses){
+            classesByCode.putIfAbsent(studentClass.getClassCode(), studentClass);
+        }
+        Map<Student, StudentClass> bestClasses = new HashMap<>();
+        for(StudentClassAssignment assignment : best.getAssignments()){
+            StudentClass studentClass = assignment.getStudentClass();
+            if(studentClass != null){
+                bestClasses.put(assignment.getStudent(), classesByCode.get(studentClass.getClassCode()));
+            }
+        }
+        return student -> {
+            Student previous = diff.previousOf(student);
+            return previous == null ? null : bestClasses.get(previous);
+        };
+    }
+
+    /**
+     * Reports any hard constraint the loaded data can never satisfy under the current settings,
+     * so it can be fixed before solving rather than discovered from a score that never reaches 0hard.
+     */
+    private void checkFeasibility(){
+        if(students == null || classes == null){
+            feasibilityProblems.set("");
+            return;
+        }
+        long start = System.nanoTime();
+        List<String> problems = FeasibilityCheck.findProblems(students, classes, ConstraintSnapshot.current());
+        log.debug("Feasibility check took {}ms", (System.nanoTime() - start) / 1_000_000);
+        problems.forEach(problem -> log.warn("Cannot be satisfied: {}", problem));
+        feasibilityProblems.set(problems.isEmpty() ? "" : "No allocation can meet every hard constraint:\n- " + String.join("\n- ", problems));
+    }
+
+    /**
+     * @return the profile with the given id, or the first profile if there is none
+     */
+    private static SolverProfile profileWithId(List<SolverProfile> profiles, String id){
+        return profiles.stream()
+                .filter(profile -> profile.getId().equals(id))
+                .findFirst()
+                .orElse(profiles.isEmpty() ? null : profiles.getFirst());
     }
 
     public void clearDataFile(){
+        stopWatchingDatafile();
         dataIsLoaded.set(false);
+        datafileReloadProblem.set("");
+        feasibilityProblems.set("");
     }
 
     public void onBestSolutionFound(BestSolutionChangedEvent<ClassBuilderSolution> bestSolutionChangedEvent) {
         ClassBuilderSolution solution = bestSolutionChangedEvent.getNewBestSolution();
+        // Recorded here, off the FX thread, so the solution itself isn't held on to past this event
+        ClassSolutionData solutionData = new ClassSolutionData(solution, bestSolutionChangedEvent.getTimeMillisSpent());
+        log.debug("Found next best solution {}", solution.toBriefString());
         Platform.runLater(() -> {
-            solutions.addFirst(new ClassSolutionData(solution, bestSolutionChangedEvent.getTimeMillisSpent()));
+            ClassSolutionData previous = solutions.isEmpty() ? null : solutions.getFirst();
+            solutionData.setMilestone(solveStarted || previous == null || solutionData.getHardScore() > previous.getHardScore());
+            solveStarted = false;
+            solutions.addFirst(solutionData);
+            pruneSolutionHistory();
         });
-        log.info("Found next best solution {}", solution.toBriefString());
     }
 
-    public String getCurrentSolutionReportHtml(){
-        if(currentSolution.get() == null) return "";
-        // Read required CSS files from resources for the report.
-        String css1 = "";
-        String css2 = "";
-        try {
-            css1 = new String(getClass().getResourceAsStream("/css/classbuilder-report.css").readAllBytes());
-            css2 = new String(getClass().getResourceAsStream("/css/scoring-report.css").readAllBytes());
-        } catch (Exception e) {
-            // Swallow errors or log if necessary.
+    /**
+     * Drops the oldest solutions beyond {@link #solutionHistoryLimit}, except milestones (the first solution of each
+     * solve and each that improved the hard score) and the selected solution, so a long solve can't fill the heap
+     * with history.
+     */
+    private void pruneSolutionHistory(){
+        Integer limit = solutionHistoryLimit.get();
+        if(limit == null || solutions.size() <= limit) return;
+        List<ClassSolutionData> dropped = new ArrayList<>();
+        for(int i = limit; i < solutions.size(); i++){
+            ClassSolutionData solutionData = solutions.get(i);
+            if(!solutionData.isMilestone() && solutionData != currentSolution.get()){
+                dropped.add(solutionData);
+            }
         }
+        if(dropped.isEmpty()) return;
+        solutions.removeAll(dropped);
+        dropped.forEach(solutionReportCache::remove);
+    }
+
+    @Override
+    public void onScoreCalculationSpeed(long scoreCalculationSpeed, String moveThreadCount, boolean solvingEnded) {
+        ScoreCalculatorType calculatorType = scoreCalculatorType.get();
+        boolean singleThreaded = SolverConfig.MOVE_THREAD_COUNT_NONE.equals(moveThreadCount);
+        Platform.runLater(() -> {
+            if(singleThreaded && solvingEnded){
+                singleThreadedScoreCalculationSpeeds.put(calculatorType, scoreCalculationSpeed);
+            }
+            StringBuilder summary = new StringBuilder()
+                    .append(scoreCalculationSpeed).append(" score calculations/s");
+            Long baseline = singleThreadedScoreCalculationSpeeds.get(calculatorType);
+            if(!singleThreaded && baseline != null && baseline > 0){
+                summary.append(String.format(" (%.1fx single threaded)", (double) scoreCalculationSpeed / baseline));
+            }
+            scoreCalculationSpeedSummary.set(summary.toString());
+        });
+        log.debug("Score calculation speed {}/s with move thread count {}", scoreCalculationSpeed, moveThreadCount);
+    }
+
+    @Override
+    public void onBestSolutionCount(long foundCount, long publishedCount) {
+        Platform.runLater(() -> bestSolutionCountSummary.set(
+                publishedCount + " of " + foundCount + " best solutions shown"));
+    }
+
+    /**
+     * @return the selected solution's report, rendered on first view and then kept while it is among the
+     * {@link #SOLUTION_REPORT_CACHE_SIZE} most recently viewed, or {@code null} when nothing is selected
+     */
+    public SolutionReport getCurrentSolutionReport(){
+        if(currentSolution.get() == null) return null;
+        return solutionReportCache.computeIfAbsent(currentSolution.get(), ClassSolutionData::createReport);
+    }
+
+    /**
+     * @return the selected solution's report as a page of its own, for export
+     */
+    public String getCurrentSolutionReportHtml(){
+        SolutionReport report = getCurrentSolutionReport();
+        return report == null ? "" : reportPageHtml(report, "");
+    }
+
+    /**
+     * @return a page showing {@code report} that later reports can be applied to as a {@link SolutionReport.Diff},
+     * with {@code ClassBuilderReport.apply}
+     */
+    public String getSolutionReportPageHtml(SolutionReport report){
+        return reportPageHtml(report, ReportResources.SCRIPT);
+    }
+
+    private static String reportPageHtml(SolutionReport report, String script){
         // Compose the HTML with embedded styles and load into webview.
-        String html = """
+        return """
                     <html>
                     <head>
                     <style>%s</style>
                     <style>%s</style>
+                    <script>%s</script>
                     </head>
                     <body>
                     %s
                     </body>
                     </html>
-                    """.formatted(css1, css2, currentSolution.get().getSolutionReportHtml());
-        return html;
-    }
-
-    /*
-    public void fromGeneralSheet(Sheet generalSheet) {
-
-        // Assumes the first row has "Min Class Size", "Max Class Size"
-        // And the second row has their respective values
-        Row valueRow = generalSheet.getRow(1);
-        if (valueRow != null) {
-            ClassBuilderConstraints.getInstance().setMinClassSize((int) valueRow.getCell(0).getNumericCellValue());
-            ClassBuilderConstraints.getInstance().setMaxClassSize((int) valueRow.getCell(1).getNumericCellValue());
-        }
+                    """.formatted(ReportResources.REPORT_CSS, ReportResources.SCORING_CSS, script, report.toHtml());
     }
 
+    /**
+     * The styles and script of the report page, read from the class path once, when first needed.
      */
-
-
-    public List<Student> fromStudentSheet(Sheet studentSheet) throws DatafileParseException {
-        List<Student> students = new ArrayList<>();
-        // First pass: create students with names & add to list
-        for (int i = 1; i <= studentSheet.getLastRowNum(); i++) {
-            Row row = studentSheet.getRow(i);
-            if (row == null) continue;
-
-            // Skip completely blank rows
-            boolean blank = true;
-            for (int c = 0; c <= 7; c++) {
-                if (row.getCell(c) != null && !row.getCell(c).toString().trim().isEmpty()) { blank = false; break; }
-            }
-            if (blank) continue;
-
-            // Required: name
-            if (row.getCell(0) == null || row.getCell(0).getStringCellValue().trim().isEmpty()) {
-                throw new DatafileParseException(
-                        String.format("Missing required student name in row %d", i + 1)
-                );
-            }
-            //required: numeracy/literacy/social-emotional scores (cells 0, 5, 6, 7)
-            for (int c : new int[]{5, 6, 7}) {
-                if (row.getCell(c) == null || row.getCell(c).getCellType() != org.apache.poi.ss.usermodel.CellType.NUMERIC) {
-                    throw new DatafileParseException(
-                            String.format("Student row %d: Missing or non-numeric required score at column %d", i + 1, c + 1)
-                    );
-                }
-            }
-
-            Student s = new Student();
-            s.setName(row.getCell(0).getStringCellValue().trim());
-            students.add(s);
-        }
-        // Second pass: fill in fields, perform lookup by iterating list
-        for (int i = 1, j = 0; i <= studentSheet.getLastRowNum() && j < students.size(); i++) {
-            Row row = studentSheet.getRow(i);
-            if (row == null) continue;
-
-            Student s = students.get(j++);
-            s.setMustIncludeFriends(resolveByNameList(row.getCell(1), students, s.getName(), "mustIncludeFriends"));
-            s.setShouldIncludeFriends(resolveByNameList(row.getCell(2), students, s.getName(), "shouldIncludeFriends"));
-            s.setCannotBeWith(resolveByNameList(row.getCell(3), students, s.getName(), "cannotBeWith"));
-            s.setAvoidBeingWith(resolveByNameList(row.getCell(4), students, s.getName(), "avoidBeingWith"));
-            s.setNumeracy((int) row.getCell(5).getNumericCellValue());
-            s.setLiteracy((int) row.getCell(6).getNumericCellValue());
-            s.setSocialEmotional((int) row.getCell(7).getNumericCellValue());
-            //gender
-            String genderStr = row.getCell(8, Row.MissingCellPolicy.CREATE_NULL_AS_BLANK).getStringCellValue();
-            switch(genderStr){
-                case "M": s.setGender(Gender.MALE); break;
-                case "F": s.setGender(Gender.FEMALE); break;
-                default: s.setGender(Gender.NA); break;
-            }
-        }
-        return students;
-    }
-
-    // Helper: Find students matching names by iterating
-    private List<Student> resolveByNameList(org.apache.poi.ss.usermodel.Cell cell, List<Student> students,
-                                                   String parentName, String fieldName) throws DatafileParseException{
-        List<String> names = toList(cell);
-        List<Student> resolved = new ArrayList<>();
-        for (String name : names) {
-            Student found = findStudentByName(students, name.trim());
-            if (found != null) {
-                resolved.add(found);
-            } else {
-                throw new DatafileParseException(
-                        String.format("In %s: %s references unknown student '%s' in %s", fieldName, parentName, name, fieldName)
-                );
+    private static final class ReportResources{
+        static final String REPORT_CSS = read("/css/classbuilder-report.css");
+        static final String SCORING_CSS = read("/css/scoring-report.css");
+        static final String SCRIPT = read("/js/classbuilder-report.js");
+
+        private static String read(String path){
+            try(InputStream inputStream = ApplicationViewModel.class.getResourceAsStream(path)){
+                return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+            }catch(Exception e){
+                log.warn("Could not read report resource {}", path, e);
+                return "";
             }
         }
-        return resolved;
     }
 
-    private Student findStudentByName(List<Student> students, String name) {
-        for (Student s : students) {
-            if (s.getName() != null && s.getName().equalsIgnoreCase(name)) {
-                return s;
-            }
-        }
-        return null;
+    public StringProperty datafileSummaryProperty() {
+        return datafileSummary;
     }
 
-    private List<String> toList(org.apache.poi.ss.usermodel.Cell cell) {
-        if (cell == null || cell.getStringCellValue().trim().isEmpty()) return List.of();
-        return Arrays.asList(cell.getStringCellValue().split("\\s*,\\s*"));
+    public StringProperty feasibilityProblemsProperty() {
+        return feasibilityProblems;
     }
 
-    public List<StudentClass> fromClassesSheet(Sheet classSheet) throws DatafileParseException{
-        List<StudentClass> classes = new ArrayList<>();
-        // Skip the header (assume first row, index 0)
-        for (int i = 1; i <= classSheet.getLastRowNum(); i++) {
-            Row row = classSheet.getRow(i);
-            if (row == null) continue;
-            // Required: class code and teacher
-            String code = (row.getCell(0) != null) ? row.getCell(0).getStringCellValue().trim() : "";
-            String teacher = (row.getCell(1) != null) ? row.getCell(1).getStringCellValue().trim() : "";
-            if (code.isEmpty() && teacher.isEmpty()) continue;
-
-            if (code.isEmpty() || teacher.isEmpty()) {
-                log.warn("Skipping class row {}: Missing required class code or teacher name", i + 1);
-                continue;
-            }
-            StudentClass sc = new StudentClass();
-            sc.setClassCode(code);
-            sc.setTeacher(teacher);
-            classes.add(sc);
-        }
-        return classes;
+    public BooleanProperty reloadOnChangeProperty() {
+        return reloadOnChange;
     }
 
-    public StringProperty datafileSummaryProperty() {
-        return datafileSummary;
+    public StringProperty datafileReloadProblemProperty() {
+        return datafileReloadProblem;
     }
 
     public ListProperty<ClassSolutionData> solutionsProperty() {
@@ -398,27 +608,94 @@ public class ApplicationViewModel implements BestSolutionConsumer{
         return classMetricVarianceSensitivity;
     }
 
+    public ObjectProperty<RelationshipOptions> relationshipOptionsProperty() {
+        return relationshipOptions;
+    }
+
+    public ObjectProperty<ScoreCalculatorType> scoreCalculatorTypeProperty() {
+        return scoreCalculatorType;
+    }
+
+    public ListProperty<SolverProfile> solverProfilesProperty() {
+        return solverProfiles;
+    }
+
+    public ObjectProperty<SolverProfile> solverProfileProperty() {
+        return solverProfile;
+    }
+
+    public StringProperty moveThreadCountProperty() {
+        return moveThreadCount;
+    }
+
+    public ObjectProperty<Integer> portfolioSizeProperty() {
+        return portfolioSize;
+    }
+
+    public ObjectProperty<Integer> solutionHistoryLimitProperty() {
+        return solutionHistoryLimit;
+    }
+
+    public StringProperty scoreCalculationSpeedSummaryProperty() {
+        return scoreCalculationSpeedSummary;
+    }
+
+    public IntegerProperty maxBestSolutionsPerSecondProperty() {
+        return maxBestSolutionsPerSecond;
+    }
+
+    public StringProperty bestSolutionCountSummaryProperty() {
+        return bestSolutionCountSummary;
+    }
+
     public void clearAllSolutions() {
         solutions.clear();
+        solutionReportCache.clear();
     }
 
+    /**
+     * One entry in the solution history. Only the scores and each student's class are kept, as class ids of the
+     * solve's {@link CompiledProblem}, which every entry from the same solve shares; the report is rendered from
+     * them again when the entry is viewed.
+     */
     @Getter
-    @Setter
     public static class ClassSolutionData{
 
-        private int hardScore;
-        private int softScore;
-        private String solutionReportHtml;
-        private long generationDurationMillis;
-        private Instant generatedAt;
+        private final int hardScore;
+        private final int softScore;
+        private final long generationDurationMillis;
+        private final Instant generatedAt;
+        //kept by the history however old it gets
+        @Setter
+        private boolean milestone;
+
+        @Getter(AccessLevel.NONE)
+        private final CompiledProblem problem;
+        @Getter(AccessLevel.NONE)
+        private final ConstraintSnapshot constraintSnapshot;
+        @Getter(AccessLevel.NONE)
+        private final int[] classIds;
 
         public ClassSolutionData(ClassBuilderSolution classBuilderSolution, long generationDurationMillis){
             this.hardScore = classBuilderSolution.getScore().hardScore();
             this.softScore = classBuilderSolution.getScore().softScore();
-            this.solutionReportHtml = classBuilderSolution.toHtmlReport();
             this.generationDurationMillis = generationDurationMillis;
             this.generatedAt = Instant.now();
+            this.problem = classBuilderSolution.getCompiledProblem();
+            this.constraintSnapshot = classBuilderSolution.requireConstraintSnapshot();
+            this.classIds = classBuilderSolution.toClassIds();
+        }
+
+        /**
+         * @return a copy of the recorded solution, rebuilt from the class ids
+         */
+        public ClassBuilderSolution toSolution(){
+            return ClassBuilderSolution.fromClassIds(problem, constraintSnapshot, classIds,
+                    HardSoftScore.of(hardScore, softScore));
+        }
 
+        SolutionReport createReport(){
+            return SolutionReport.of(toSolution());
         }
 
         @Override
@@ -5,4 +5,26 @@ import org.optaplanner.core.api.solver.event.BestSolutionChangedEvent;
 
 public interface BestSolutionConsumer {
     void onBestSolutionFound(BestSolutionChangedEvent<ClassBuilderSolution> bestSolutionChangedEvent);
+
+    /**
+     * Called at the end of each solver phase and once more when solving ends, with the score calculation speed
+     * so far. A portfolio of solvers only reports when solving ends. The count includes the calculations done on move threads.
+     *
+     * @param scoreCalculationSpeed score calculations per second
+     * @param moveThreadCount the move thread count the solver was configured with, or for a portfolio of solvers,
+     *                        how many solvers ran (such as {@code "3 solvers"}), the speed being their total
+     * @param solvingEnded true for the final call
+     */
+    default void onScoreCalculationSpeed(long scoreCalculationSpeed, String moveThreadCount, boolean solvingEnded){
+    }
+
+    /**
+     * Called just before each best solution passed on by a {@link CoalescingBestSolutionConsumer}.
+     *
+     * @param foundCount best solutions the solver has found so far
+     * @param publishedCount how many of them have been passed on, this one included. The rest were replaced by a
+     *                       newer best solution before their turn came.
+     */
+    default void onBestSolutionCount(long foundCount, long publishedCount){
+    }
 }
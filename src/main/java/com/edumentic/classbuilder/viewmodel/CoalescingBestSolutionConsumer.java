@@ -0,0 +1,100 @@
+package com.edumentic.classbuilder.viewmodel;
+
+import com.edumentic.classbuilder.solution.ClassBuilderSolution;
+import org.optaplanner.core.api.solver.event.BestSolutionChangedEvent;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sits between the solver and a {@link BestSolutionConsumer}, passing on at most {@code maxPerSecond} best solutions
+ * a second. A best solution found while the last one is still waiting to be passed on replaces it, so the consumer
+ * always gets the latest one and never falls behind.
+ *
+ * <p>
+ *     Early in a solve the solver finds hundreds of best solutions a second. Passing each on costs the solver
+ *     thread the consumer's work and floods the FX event queue. Here the solver thread only records the event, and
+ *     the consumer is called on a publisher thread of its own. {@link #close()} passes on any best solution still
+ *     waiting, so the final one is never lost.
+ * </p>
+ */
+class CoalescingBestSolutionConsumer implements BestSolutionConsumer, AutoCloseable {
+
+    private final BestSolutionConsumer consumer;
+    private final long intervalNanos;
+    private final ScheduledExecutorService publisher;
+    private final AtomicLong foundCount = new AtomicLong();
+    // Held while passing a best solution on, so the consumer gets them one at a time and in order
+    private final Object publishLock = new Object();
+
+    // Guarded by this
+    private BestSolutionChangedEvent<ClassBuilderSolution> waiting;
+    private long lastPublishNanos;
+
+    // Guarded by publishLock
+    private long publishedCount;
+
+    /**
+     * @param maxPerSecond the most best solutions to pass on a second, or 0 for no limit
+     */
+    CoalescingBestSolutionConsumer(BestSolutionConsumer consumer, int maxPerSecond) {
+        this.consumer = consumer;
+        this.intervalNanos = maxPerSecond <= 0 ? 0 : TimeUnit.SECONDS.toNanos(1) / maxPerSecond;
+        // So the first best solution is passed on straight away
+        this.lastPublishNanos = System.nanoTime() - intervalNanos;
+        this.publisher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "BestSolutionPublisher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void onBestSolutionFound(BestSolutionChangedEvent<ClassBuilderSolution> bestSolutionChangedEvent) {
+        foundCount.incrementAndGet();
+        long delayNanos;
+        synchronized (this) {
+            boolean publishPending = waiting != null;
+            waiting = bestSolutionChangedEvent;
+            if (publishPending) return;
+            delayNanos = Math.max(0, lastPublishNanos + intervalNanos - System.nanoTime());
+        }
+        try {
+            publisher.schedule(this::publish, delayNanos, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            // Closed, by a solve that has already ended
+        }
+    }
+
+    @Override
+    public void onScoreCalculationSpeed(long scoreCalculationSpeed, String moveThreadCount, boolean solvingEnded) {
+        consumer.onScoreCalculationSpeed(scoreCalculationSpeed, moveThreadCount, solvingEnded);
+    }
+
+    private void publish() {
+        synchronized (publishLock) {
+            BestSolutionChangedEvent<ClassBuilderSolution> event;
+            synchronized (this) {
+                event = waiting;
+                waiting = null;
+                if (event == null) return;
+                lastPublishNanos = System.nanoTime();
+            }
+            publishedCount++;
+            consumer.onBestSolutionCount(foundCount.get(), publishedCount);
+            consumer.onBestSolutionFound(event);
+        }
+    }
+
+    /**
+     * Passes on the best solution still waiting, if there is one, on the calling thread.
+     */
+    @Override
+    public void close() {
+        publisher.shutdownNow();
+        publish();
+    }
+}
@@ -1,10 +0,0 @@
-package com.edumentic.classbuilder.viewmodel;
-
-public class DatafileParseException extends Exception{
-
-    public DatafileParseException(String message){
-        super(message);
-    }
-
-
-}
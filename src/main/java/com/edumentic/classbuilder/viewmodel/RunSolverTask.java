@@ -2,22 +2,87 @@ package com.edumentic.classbuilder.viewmodel;
 
 import com.edumentic.classbuilder.model.Student;
 import com.edumentic.classbuilder.solution.ClassBuilderSolution;
-import com.edumentic.classbuilder.solution.SolutionScoreCalculator;
-import com.edumentic.classbuilder.solution.StudentClassAssignment;
+import com.edumentic.classbuilder.solution.ConstraintSnapshot;
+import com.edumentic.classbuilder.solution.ScoreCalculatorType;
+import com.edumentic.classbuilder.solution.SolverConfigs;
+import com.edumentic.classbuilder.solution.SolverProfile;
 import javafx.concurrent.Task;
+import lombok.Getter;
+import lombok.Setter;
 import org.optaplanner.core.api.solver.Solver;
 import org.optaplanner.core.api.solver.SolverFactory;
+import org.optaplanner.core.api.solver.change.ProblemChange;
 import org.optaplanner.core.config.solver.SolverConfig;
+import org.optaplanner.core.impl.phase.event.PhaseLifecycleListenerAdapter;
+import org.optaplanner.core.impl.phase.scope.AbstractPhaseScope;
+import org.optaplanner.core.impl.solver.DefaultSolver;
+import org.optaplanner.core.impl.solver.scope.SolverScope;
+
+import java.util.ArrayList;
+import java.util.List;
 
 public class RunSolverTask extends Task<Void> {
 
-    private Solver<ClassBuilderSolution> solver;
+    private volatile Solver<ClassBuilderSolution> solver;
+    private volatile SolverPortfolio portfolio;
     private final BestSolutionConsumer consumer;
     private final ClassBuilderSolution solutionTemplate;
+    private final ScoreCalculatorType scoreCalculatorType;
+
+    /**
+     * Number of threads evaluating moves in parallel: {@link SolverConfig#MOVE_THREAD_COUNT_NONE} (the default,
+     * a single thread), {@link SolverConfig#MOVE_THREAD_COUNT_AUTO} (OptaPlanner picks based on the available
+     * processors) or a number.
+     * <p>
+     *     Single threaded is the default everywhere, in the UI too: move threads only pay off on large cohorts, and
+     *     a solve that isn't the only one running shouldn't take every core.
+     * </p>
+     */
+    @Setter
+    private String moveThreadCount = SolverConfig.MOVE_THREAD_COUNT_NONE;
+
+    /**
+     * The phases and termination to solve with. Without one, OptaPlanner's default phases run until stopped.
+     */
+    @Setter
+    private SolverProfile solverProfile;
+
+    /**
+     * Number of solvers to run side by side as a {@link SolverPortfolio}. With more than one, solver {@code i} is
+     * seeded with {@code i} and configured by the profile {@code i} places after {@link #solverProfile} in
+     * {@link #portfolioProfiles}, but every solver stops on {@link #solverProfile}'s termination.
+     */
+    @Setter
+    private int portfolioSize = 1;
+
+    /**
+     * The profiles a portfolio cycles through. Without them, every solver uses {@link #solverProfile}.
+     */
+    @Setter
+    private List<SolverProfile> portfolioProfiles;
+
+    /**
+     * The most best solutions to pass on to the consumer a second, through a {@link CoalescingBestSolutionConsumer},
+     * or 0 for no limit.
+     */
+    @Setter
+    private int maxBestSolutionsPerSecond = 10;
+
+    /**
+     * The best solution this task's solve has found so far, or {@code null} before its first. Solvers never change a
+     * best solution once it is passed on, so it can be read from any thread.
+     */
+    @Getter
+    private volatile ClassBuilderSolution bestSolution;
 
     public RunSolverTask(BestSolutionConsumer consumer, ClassBuilderSolution solutionTemplate){
+        this(consumer, solutionTemplate, ScoreCalculatorType.INCREMENTAL);
+    }
+
+    public RunSolverTask(BestSolutionConsumer consumer, ClassBuilderSolution solutionTemplate, ScoreCalculatorType scoreCalculatorType){
         this.consumer = consumer;
         this.solutionTemplate = solutionTemplate;
+        this.scoreCalculatorType = scoreCalculatorType;
     }
     @Override
     protected Void call() throws Exception {
@@ -25,17 +90,98 @@ public class RunSolverTask extends Task<Void> {
             solver.terminateEarly();
         }
 
-        SolverFactory<ClassBuilderSolution> solverFactory = SolverFactory.create(new SolverConfig()
-                .withSolutionClass(ClassBuilderSolution.class)
-                .withEntityClasses(StudentClassAssignment.class)
-                .withEasyScoreCalculatorClass(SolutionScoreCalculator.class));
+        if(solutionTemplate.getConstraintSnapshot() == null){
+            solutionTemplate.setConstraintSnapshot(ConstraintSnapshot.current());
+        }
+
+        try(CoalescingBestSolutionConsumer coalescingConsumer = new CoalescingBestSolutionConsumer(consumer, maxBestSolutionsPerSecond)){
+            // Kept before coalescing, which may hold back or drop a best solution
+            BestSolutionConsumer bestSolutionConsumer = event -> {
+                bestSolution = event.getNewBestSolution();
+                coalescingConsumer.onBestSolutionFound(event);
+            };
+            if(portfolioSize > 1){
+                solveWithPortfolio(bestSolutionConsumer);
+            }else{
+                solve(bestSolutionConsumer);
+            }
+        }
+        return null;
+    }
+
+    private void solve(BestSolutionConsumer bestSolutionConsumer){
+        SolverFactory<ClassBuilderSolution> solverFactory = SolverFactory.create(createSolverConfig(solverProfile));
 
 
         // Build the solver
         solver = solverFactory.buildSolver();
-        solver.addEventListener(consumer::onBestSolutionFound);
+        solver.addEventListener(bestSolutionConsumer::onBestSolutionFound);
+        DefaultSolver<ClassBuilderSolution> defaultSolver = (DefaultSolver<ClassBuilderSolution>) solver;
+        defaultSolver.addPhaseLifecycleListener(new PhaseLifecycleListenerAdapter<>() {
+            @Override
+            public void phaseEnded(AbstractPhaseScope<ClassBuilderSolution> phaseScope) {
+                consumer.onScoreCalculationSpeed(scoreCalculationSpeedSoFar(phaseScope.getSolverScope()), moveThreadCount, false);
+            }
+        });
 
         solver.solve(solutionTemplate);
-        return null;
+        consumer.onScoreCalculationSpeed(defaultSolver.getSolverScope().getScoreCalculationSpeed(), moveThreadCount, true);
+    }
+
+    private void solveWithPortfolio(BestSolutionConsumer bestSolutionConsumer) throws Exception {
+        List<Solver<ClassBuilderSolution>> solvers = new ArrayList<>(portfolioSize);
+        List<SolverProfile> profiles = portfolioProfiles == null || portfolioProfiles.isEmpty() || solverProfile == null
+                ? List.of()
+                : portfolioProfiles;
+        int firstProfile = Math.max(profiles.indexOf(solverProfile), 0);
+        for(int i = 0; i < portfolioSize; i++){
+            SolverProfile profile = profiles.isEmpty() ? solverProfile : profiles.get((firstProfile + i) % profiles.size());
+            SolverConfig solverConfig = createSolverConfig(profile)
+                    .withRandomSeed((long) i);
+            if(solverProfile != null){
+                solverConfig.setTerminationConfig(solverProfile.createTerminationConfig());
+            }
+            solvers.add(SolverFactory.<ClassBuilderSolution>create(solverConfig).buildSolver());
+        }
+        SolverPortfolio currentPortfolio = new SolverPortfolio(solvers, bestSolutionConsumer);
+        portfolio = currentPortfolio;
+        String label = portfolioSize + " solvers";
+        currentPortfolio.solve(solutionTemplate);
+        consumer.onScoreCalculationSpeed(currentPortfolio.getScoreCalculationSpeed(), label, true);
+    }
+
+    private SolverConfig createSolverConfig(SolverProfile profile){
+        return SolverConfigs.create(scoreCalculatorType, moveThreadCount,
+                profile == null ? null : profile.forProblem(solutionTemplate));
+    }
+
+    /**
+     * {@link SolverScope#getScoreCalculationSpeed()} needs the solve to have ended, so mid-solve the speed is
+     * worked out up to now instead.
+     */
+    static long scoreCalculationSpeedSoFar(SolverScope<ClassBuilderSolution> solverScope){
+        if(solverScope.getStartingSystemTimeMillis() == null) return 0;
+        long timeMillisSpent = Math.max(solverScope.calculateTimeMillisSpentUpToNow(), 1);
+        return solverScope.getScoreCalculationCount() * 1000 / timeMillisSpent;
+    }
+
+    /**
+     * Swaps the constraints the running solve is scored against. The snapshot is replaced through a problem change,
+     * so the solver applies it between moves instead of the settings changing under a score calculation.
+     * Before the solver has started, the template is updated instead.
+     */
+    public void changeConstraints(ConstraintSnapshot constraintSnapshot){
+        ProblemChange<ClassBuilderSolution> problemChange = constraintSnapshot.toProblemChange();
+        SolverPortfolio currentPortfolio = portfolio;
+        if(currentPortfolio != null && currentPortfolio.isSolving()){
+            currentPortfolio.addProblemChange(problemChange);
+            return;
+        }
+        Solver<ClassBuilderSolution> currentSolver = solver;
+        if(currentSolver == null || !currentSolver.isSolving()){
+            solutionTemplate.setConstraintSnapshot(constraintSnapshot);
+            return;
+        }
+        currentSolver.addProblemChange(problemChange);
     }
 }
@@ -0,0 +1,227 @@
+package com.edumentic.classbuilder.viewmodel;
+
+import com.edumentic.classbuilder.model.StudentClass;
+import com.edumentic.classbuilder.solution.ClassBuilderSolution;
+import com.edumentic.classbuilder.solution.StudentGroupAssignment;
+import lombok.extern.slf4j.Slf4j;
+import org.optaplanner.core.api.score.buildin.hardsoft.HardSoftScore;
+import org.optaplanner.core.api.solver.Solver;
+import org.optaplanner.core.api.solver.change.ProblemChange;
+import org.optaplanner.core.api.solver.event.BestSolutionChangedEvent;
+import org.optaplanner.core.impl.solver.DefaultSolver;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs several solvers at once, each on its own copy of the problem and its own thread, and reports a single
+ * stream of best solutions: a solver's new best is only passed on when it beats every solver's best so far.
+ *
+ * <p>
+ *     Local search results vary a lot with the random seed and the acceptor, so a portfolio of differently
+ *     configured solvers is more reliable than any one of them. Every {@link #SHARE_INTERVAL_SECONDS} seconds,
+ *     a solver that has not improved since the last share and is behind the best of the portfolio is restarted
+ *     from that best solution, through a problem change. Solvers that are still improving are left alone, so the
+ *     portfolio keeps exploring in several places.
+ * </p>
+ */
+@Slf4j
+class SolverPortfolio {
+
+    static final long SHARE_INTERVAL_SECONDS = 15;
+
+    private static final long STOP_POLL_MILLIS = 100;
+
+    private static final String VARIABLE_NAME = "studentClass";
+
+    private final List<Worker> workers = new ArrayList<>();
+    private final BestSolutionConsumer consumer;
+
+    // Guarded by this
+    private ClassBuilderSolution bestSolution;
+    private HardSoftScore bestScore;
+    private Worker bestWorker;
+
+    /**
+     * @param solvers the solvers to run, built but not yet solving
+     */
+    SolverPortfolio(List<Solver<ClassBuilderSolution>> solvers, BestSolutionConsumer consumer) {
+        this.consumer = consumer;
+        for (Solver<ClassBuilderSolution> solver : solvers) {
+            Worker worker = new Worker(solver);
+            solver.addEventListener(event -> onBestSolutionFound(worker, event));
+            workers.add(worker);
+        }
+    }
+
+    /**
+     * Solves a copy of {@code problem} with every solver, returning once they have all finished.
+     * If the calling thread is interrupted or any solver fails, every other solver is stopped early and waited for
+     * first.
+     */
+    void solve(ClassBuilderSolution problem) throws InterruptedException, ExecutionException {
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(workers.size(), runnable -> {
+            Thread thread = new Thread(runnable, "SolverPortfolio-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        ScheduledExecutorService sharing = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "SolverPortfolio-sharing");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            // Taken as they finish, so a solver that fails is noticed while the others are still running
+            CompletionService<ClassBuilderSolution> completion = new ExecutorCompletionService<>(executor);
+            List<Future<?>> futures = new ArrayList<>(workers.size());
+            for (Worker worker : workers) {
+                ClassBuilderSolution copy = problem.copy();
+                futures.add(completion.submit(() -> worker.solver.solve(copy)));
+            }
+            sharing.scheduleWithFixedDelay(this::shareBestSolution,
+                    SHARE_INTERVAL_SECONDS, SHARE_INTERVAL_SECONDS, TimeUnit.SECONDS);
+            boolean finished = false;
+            try {
+                for (int i = 0; i < futures.size(); i++) {
+                    completion.take().get();
+                }
+                finished = true;
+            } finally {
+                if (!finished) {
+                    stop(futures);
+                }
+            }
+        } finally {
+            sharing.shutdownNow();
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Stops every solver and waits for them to return. A solver that hadn't started solving yet would forget being
+     * terminated as it starts, so they are terminated again until every one has returned.
+     */
+    private void stop(List<Future<?>> futures) {
+        boolean interrupted = false;
+        for (Future<?> future : futures) {
+            while (!future.isDone()) {
+                terminateEarly();
+                try {
+                    future.get(STOP_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException | TimeoutException e) {
+                    // Only whether it has returned matters here
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    void terminateEarly() {
+        for (Worker worker : workers) {
+            worker.solver.terminateEarly();
+        }
+    }
+
+    boolean isSolving() {
+        return workers.stream().anyMatch(worker -> worker.solver.isSolving());
+    }
+
+    void addProblemChange(ProblemChange<ClassBuilderSolution> problemChange) {
+        for (Worker worker : workers) {
+            worker.solver.addProblemChange(problemChange);
+        }
+    }
+
+    /**
+     * @return the total score calculation speed of all the solvers
+     */
+    long getScoreCalculationSpeed() {
+        long speed = 0;
+        for (Worker worker : workers) {
+            speed += RunSolverTask.scoreCalculationSpeedSoFar(((DefaultSolver<ClassBuilderSolution>) worker.solver).getSolverScope());
+        }
+        return speed;
+    }
+
+    int size() {
+        return workers.size();
+    }
+
+    private void onBestSolutionFound(Worker worker, BestSolutionChangedEvent<ClassBuilderSolution> event) {
+        HardSoftScore score = event.getNewBestSolution().getScore();
+        synchronized (this) {
+            worker.bestScore = score;
+            worker.improvedSinceShare = true;
+            if (bestScore != null && score.compareTo(bestScore) <= 0) {
+                return;
+            }
+            bestSolution = event.getNewBestSolution();
+            bestScore = score;
+            bestWorker = worker;
+        }
+        consumer.onBestSolutionFound(event);
+    }
+
+    private void shareBestSolution() {
+        synchronized (this) {
+            if (bestSolution == null || !bestScore.isSolutionInitialized()) return;
+            for (Worker worker : workers) {
+                boolean lagging = !worker.improvedSinceShare && worker != bestWorker
+                        && worker.bestScore != null && worker.bestScore.compareTo(bestScore) < 0;
+                worker.improvedSinceShare = false;
+                if (lagging && worker.solver.isSolving()) {
+                    log.debug("Restarting a portfolio solver at {} from the best solution {}", worker.bestScore, bestScore);
+                    worker.solver.addProblemChange(adopt(bestSolution));
+                    worker.bestScore = bestScore;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return a problem change that puts every group in the class it has in {@code solution}, matching the groups
+     * and classes of the working solution to those of {@code solution} by their {@code @PlanningId}
+     */
+    static ProblemChange<ClassBuilderSolution> adopt(ClassBuilderSolution solution) {
+        Map<StudentGroupAssignment, StudentClass> classByGroup = new LinkedHashMap<>();
+        for (StudentGroupAssignment group : solution.getGroupAssignments()) {
+            classByGroup.put(group, group.getStudentClass());
+        }
+        return (workingSolution, problemChangeDirector) -> classByGroup.forEach((group, studentClass) -> {
+            StudentGroupAssignment workingGroup = problemChangeDirector.lookUpWorkingObjectOrFail(group);
+            StudentClass workingClass = problemChangeDirector.lookUpWorkingObjectOrFail(studentClass);
+            if (workingGroup.getStudentClass() != workingClass) {
+                problemChangeDirector.changeVariable(workingGroup, VARIABLE_NAME,
+                        changed -> changed.setStudentClass(workingClass));
+            }
+        });
+    }
+
+    private static class Worker {
+        private final Solver<ClassBuilderSolution> solver;
+        // Guarded by the portfolio
+        private HardSoftScore bestScore;
+        private boolean improvedSinceShare;
+
+        private Worker(Solver<ClassBuilderSolution> solver) {
+            this.solver = solver;
+        }
+    }
+}
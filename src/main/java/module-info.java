@@ -4,10 +4,12 @@ open module classbuilder {
     requires org.optaplanner.core.impl;
     requires org.slf4j;
     requires org.apache.poi.poi;
+    requires org.apache.poi.ooxml;
     requires java.desktop;
     requires org.controlsfx.controls;
     requires javafx.swing;
     requires javafx.web;
+    requires jdk.jsobject;
     requires javafx.fxml;
 
     requires org.kordamp.ikonli.core;
@@ -0,0 +1,43 @@
+/*
+ * Brings a solution report on display up to date with a diff from SolutionReport.Diff, rather than loading the
+ * whole report again. Called from the application through the WebEngine.
+ */
+var ClassBuilderReport = {
+
+    apply: function (diff) {
+        var touched = {};
+        diff.moves.forEach(function (move) {
+            var row = document.getElementById('s-' + move[0]);
+            var from = row.parentNode;
+            var to = document.getElementById('c-' + (move[1] < 0 ? 'none' : move[1]));
+            // Rows are kept in name order, as recorded in data-order
+            var order = Number(row.getAttribute('data-order'));
+            var before = null;
+            for (var i = 0; i < to.rows.length; i++) {
+                if (Number(to.rows[i].getAttribute('data-order')) > order) {
+                    before = to.rows[i];
+                    break;
+                }
+            }
+            to.insertBefore(row, before);
+            touched[from.id] = from;
+            touched[to.id] = to;
+        });
+        Object.keys(touched).forEach(function (id) {
+            ClassBuilderReport.showWhenEmpty(touched[id]);
+        });
+        Object.keys(diff.fragments).forEach(function (id) {
+            document.getElementById(id).innerHTML = diff.fragments[id];
+        });
+    },
+
+    // Shows a class's "No students assigned." in place of its table while it has no students
+    showWhenEmpty: function (body) {
+        var classId = body.id.substring(2);
+        var empty = document.getElementById('e-' + classId);
+        if (!empty) return;
+        var isEmpty = body.rows.length === 0;
+        empty.style.display = isEmpty ? '' : 'none';
+        document.getElementById('t-' + classId).style.display = isEmpty ? 'none' : '';
+    }
+};
@@ -0,0 +1,99 @@
+package com.edumentic.classbuilder.io;
+
+import com.edumentic.classbuilder.model.RelationshipType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class DatafileCacheTest {
+
+    // Kept twice and made to go both ways, so the snapshot has to hold exactly what was resolved
+    private static final RelationshipOptions OPTIONS =
+            new RelationshipOptions(false, Set.of(RelationshipType.MUST_INCLUDE));
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void snapshotReadsBackAsTheWorkbookDoes() throws Exception {
+        File workbook = Workbooks.writeCohort(directory.resolve("cohort.xlsx"));
+        DatafileCache cache = new DatafileCache(directory.resolve("cache"));
+
+        List<String> expected = Workbooks.describe(WorkbookReader.read(workbook, OPTIONS));
+        assertEquals(expected, Workbooks.describe(cache.read(workbook, OPTIONS)));
+        Datafile fromSnapshot = readSnapshot(onlySnapshot(), workbook);
+
+        assertNotNull(fromSnapshot);
+        assertEquals(expected, Workbooks.describe(fromSnapshot));
+        assertEquals(expected, Workbooks.describe(cache.read(workbook, OPTIONS)));
+    }
+
+    @Test
+    void truncatedSnapshotFallsBackToTheWorkbook() throws Exception {
+        File workbook = Workbooks.writeCohort(directory.resolve("cohort.xlsx"));
+        DatafileCache cache = new DatafileCache(directory.resolve("cache"));
+        cache.read(workbook, OPTIONS);
+        Path snapshot = onlySnapshot();
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() / 2);
+        }
+
+        assertFallsBackToTheWorkbook(cache, snapshot, workbook);
+    }
+
+    @Test
+    void snapshotOfAnotherFormatVersionFallsBackToTheWorkbook() throws Exception {
+        File workbook = Workbooks.writeCohort(directory.resolve("cohort.xlsx"));
+        DatafileCache cache = new DatafileCache(directory.resolve("cache"));
+        cache.read(workbook, OPTIONS);
+        Path snapshot = onlySnapshot();
+        // The format version follows the magic number
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, 999), Integer.BYTES);
+        }
+
+        assertFallsBackToTheWorkbook(cache, snapshot, workbook);
+    }
+
+    /**
+     * Checks {@code snapshot} is ignored, that the cache reads the workbook as POI does instead, and that doing so
+     * writes a usable snapshot again.
+     */
+    private void assertFallsBackToTheWorkbook(DatafileCache cache, Path snapshot, File workbook) throws Exception {
+        assertNull(readSnapshot(snapshot, workbook));
+        assertEquals(Workbooks.describe(WorkbookReader.read(workbook, OPTIONS)),
+                Workbooks.describe(cache.read(workbook, OPTIONS)));
+        assertNotNull(readSnapshot(onlySnapshot(), workbook));
+    }
+
+    private Path onlySnapshot() throws IOException {
+        try (Stream<Path> files = Files.list(directory.resolve("cache"))) {
+            List<Path> snapshots = files.filter(file -> file.toString().endsWith(".snapshot")).toList();
+            assertEquals(1, snapshots.size());
+            return snapshots.getFirst();
+        }
+    }
+
+    /**
+     * Reads {@code snapshot} directly, with the workbook hash its name starts with.
+     */
+    private static Datafile readSnapshot(Path snapshot, File workbook) {
+        byte[] hash = HexFormat.of().parseHex(snapshot.getFileName().toString().substring(0, 64));
+        return DatafileCache.readSnapshot(snapshot, workbook, hash, OPTIONS);
+    }
+}
@@ -0,0 +1,115 @@
+package com.edumentic.classbuilder.io;
+
+import com.edumentic.classbuilder.model.RelationshipType;
+import com.edumentic.classbuilder.model.Student;
+import org.apache.poi.ss.usermodel.CellType;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RelationshipResolverTest {
+
+    @Test
+    void reportsEveryUnknownAndSelfReferenceInStudentOrder() {
+        List<Student> students = students("Ann", "Bob", "Cat");
+        List<SheetCell[]> rows = List.of(
+                row("Zed", "Bob", "", "ann"),
+                row("", "Yan, Cat", "", ""),
+                row("Ann", "", " Cat ", "Xi"));
+
+        List<String> problems = new RelationshipResolver(students, RelationshipOptions.DEFAULT).resolve(rows);
+
+        assertEquals(List.of(
+                "In mustIncludeFriends: Ann references unknown student 'Zed' in mustIncludeFriends",
+                "In avoidBeingWith: Ann references themselves",
+                "In shouldIncludeFriends: Bob references unknown student 'Yan' in shouldIncludeFriends",
+                "In cannotBeWith: Cat references themselves",
+                "In avoidBeingWith: Cat references unknown student 'Xi' in avoidBeingWith"), problems);
+    }
+
+    @Test
+    void reportsProblemsInStudentOrderWhenTheColumnsAreResolvedInParallel() {
+        List<String> names = new ArrayList<>();
+        List<SheetCell[]> rows = new ArrayList<>();
+        for (int s = 0; s < RelationshipResolver.PARALLEL_MIN_STUDENTS; s++) {
+            names.add("Student " + s);
+            rows.add(s % 1000 == 0 ? row("Nobody", "", "", "Student " + s) : row("", "", "", ""));
+        }
+
+        List<String> problems = new RelationshipResolver(students(names.toArray(String[]::new)),
+                RelationshipOptions.DEFAULT).resolve(rows);
+
+        List<String> expected = new ArrayList<>();
+        for (int s = 0; s < RelationshipResolver.PARALLEL_MIN_STUDENTS; s += 1000) {
+            expected.add("In mustIncludeFriends: Student " + s
+                    + " references unknown student 'Nobody' in mustIncludeFriends");
+            expected.add("In avoidBeingWith: Student " + s + " references themselves");
+        }
+        assertEquals(expected, problems);
+    }
+
+    @Test
+    void keepsAStudentNamedTwiceOnceOnlyWhenDeduplicating() {
+        List<Student> deduplicated = students("Ann", "Bob");
+        assertTrue(new RelationshipResolver(deduplicated, RelationshipOptions.DEFAULT)
+                .resolve(List.of(row("Bob, bob , BOB", "", "", ""), row("", "", "", ""))).isEmpty());
+        assertEquals(List.of("Bob"), namesOf(RelationshipType.MUST_INCLUDE, deduplicated.get(0)));
+
+        List<Student> kept = students("Ann", "Bob");
+        assertTrue(new RelationshipResolver(kept, new RelationshipOptions(false, Set.of()))
+                .resolve(List.of(row("Bob, bob , BOB", "", "", ""), row("", "", "", ""))).isEmpty());
+        assertEquals(List.of("Bob", "Bob", "Bob"), namesOf(RelationshipType.MUST_INCLUDE, kept.get(0)));
+    }
+
+    @Test
+    void symmetricRelationshipsGoBothWaysAndTheRestOneWay() {
+        List<Student> students = students("Ann", "Bob", "Cat");
+        RelationshipOptions options = new RelationshipOptions(true, Set.of(RelationshipType.CANNOT_BE_WITH));
+
+        List<String> problems = new RelationshipResolver(students, options).resolve(List.of(
+                row("", "Bob", "Bob, Cat", ""),
+                row("", "", "Ann", ""),
+                row("", "", "", "")));
+
+        assertTrue(problems.isEmpty());
+        // Bob already named Ann, so isn't given her twice
+        assertEquals(List.of("Ann"), namesOf(RelationshipType.CANNOT_BE_WITH, students.get(1)));
+        assertEquals(List.of("Ann"), namesOf(RelationshipType.CANNOT_BE_WITH, students.get(2)));
+        assertEquals(List.of("Bob"), namesOf(RelationshipType.SHOULD_INCLUDE, students.get(0)));
+        assertEquals(List.of(), namesOf(RelationshipType.SHOULD_INCLUDE, students.get(1)));
+    }
+
+    private static List<Student> students(String... names) {
+        List<Student> students = new ArrayList<>(names.length);
+        for (String name : names) {
+            Student student = new Student();
+            student.setId((long) students.size());
+            student.setName(name);
+            students.add(student);
+        }
+        return students;
+    }
+
+    /**
+     * @return a student's row with the names in each relationship column, in {@link RelationshipType} order
+     */
+    private static SheetCell[] row(String mustInclude, String shouldInclude, String cannotBeWith,
+                                   String avoidBeingWith) {
+        SheetCell[] cells = new SheetCell[StudentSheetParser.COLUMN_COUNT];
+        String[] names = {mustInclude, shouldInclude, cannotBeWith, avoidBeingWith};
+        for (RelationshipType type : RelationshipType.values()) {
+            cells[StudentSheetParser.columnOf(type)] =
+                    new SheetCell(CellType.STRING, CellType.STRING, names[type.ordinal()]);
+        }
+        return cells;
+    }
+
+    private static List<String> namesOf(RelationshipType type, Student student) {
+        return type.of(student).stream().map(Student::getName).toList();
+    }
+}
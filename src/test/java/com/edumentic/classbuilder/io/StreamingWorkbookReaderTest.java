@@ -0,0 +1,98 @@
+package com.edumentic.classbuilder.io;
+
+import com.edumentic.classbuilder.io.Workbooks.Formula;
+import com.edumentic.classbuilder.model.Student;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StreamingWorkbookReaderTest {
+
+    private static final Object[][] CLASSES = {
+            {"7A", "Ms Smith"},
+            {new Formula("\"7\"&\"B\""), "Mr Jones"},
+    };
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void readsSharedStringsAsPoiDoes() throws Exception {
+        assertReadsAsPoiDoes(false);
+    }
+
+    @Test
+    void readsInlineStringsAsPoiDoes() throws Exception {
+        assertReadsAsPoiDoes(true);
+    }
+
+    /**
+     * Names, relationships and a class code given by formulas, a row of empty strings and a row left out: all read
+     * the same by both readers.
+     */
+    private void assertReadsAsPoiDoes(boolean inlineStrings) throws Exception {
+        File workbook = Workbooks.write(directory.resolve("cohort.xlsx"), inlineStrings, new Object[][]{
+                {"Ann", "Bob", "Cat", "", null, 3, 4, 2, "F"},
+                {"", "", "", "", "", "", "", "", ""},
+                {new Formula("\"B\"&\"ob\""), "Ann", "", new Formula("\"Cat\""), "", 2, 2, 5, "M"},
+                null,
+                {"Cat", null, "Ann, Bob", "", "", 5, 3, 3, new Formula("\"F\"")},
+        }, CLASSES);
+
+        Datafile streamed = StreamingWorkbookReader.read(workbook, RelationshipOptions.DEFAULT);
+        Datafile modelled = WorkbookReader.readWorkbook(workbook, RelationshipOptions.DEFAULT);
+
+        assertEquals(Workbooks.describe(modelled), Workbooks.describe(streamed));
+        assertEquals(List.of("Ann", "Bob", "Cat"), streamed.getStudents().stream().map(Student::getName).toList());
+        assertEquals("7B", streamed.getClasses().get(1).getClassCode());
+    }
+
+    @Test
+    void missingScoreFailsAsWithPoi() throws Exception {
+        assertFailsAsPoiDoes(new Object[][]{
+                {"Ann", "", "", "", "", 3, 4, 2, "F"},
+                {"Bob", "", "", "", "", 2, null, 5, "M"},
+        });
+    }
+
+    @Test
+    void scoreFromAFormulaFailsAsWithPoi() throws Exception {
+        // A formula is never numeric, even with a number as its result
+        assertFailsAsPoiDoes(new Object[][]{
+                {"Ann", "", "", "", "", new Formula("1+2"), 4, 2, "F"},
+        });
+    }
+
+    @Test
+    void unknownNamesFailAsWithPoi() throws Exception {
+        String message = assertFailsAsPoiDoes(new Object[][]{
+                {"Ann", "Zed", "", "", "", 3, 4, 2, "F"},
+                {"Bob", "", "", "Ann, Yan", "", 2, 2, 5, "M"},
+        });
+        assertTrue(message.contains("unknown student 'Zed'"), message);
+        assertTrue(message.contains("unknown student 'Yan'"), message);
+    }
+
+    /**
+     * @return the message both readers failed with
+     */
+    private String assertFailsAsPoiDoes(Object[][] studentRows) throws Exception {
+        File shared = Workbooks.write(directory.resolve("shared.xlsx"), false, studentRows, CLASSES);
+        File inline = Workbooks.write(directory.resolve("inline.xlsx"), true, studentRows, CLASSES);
+
+        String expected = assertThrows(DatafileParseException.class,
+                () -> WorkbookReader.readWorkbook(shared, RelationshipOptions.DEFAULT)).getMessage();
+        assertEquals(expected, assertThrows(DatafileParseException.class,
+                () -> StreamingWorkbookReader.read(shared, RelationshipOptions.DEFAULT)).getMessage());
+        assertEquals(expected, assertThrows(DatafileParseException.class,
+                () -> StreamingWorkbookReader.read(inline, RelationshipOptions.DEFAULT)).getMessage());
+        return expected;
+    }
+}
@@ -0,0 +1,119 @@
+package com.edumentic.classbuilder.io;
+
+import com.edumentic.classbuilder.model.RelationshipType;
+import com.edumentic.classbuilder.model.Student;
+import com.edumentic.classbuilder.model.StudentClass;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFFormulaEvaluator;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes small ClassBuilder workbooks for the tests, and describes what was read from them so two reads can be
+ * compared.
+ */
+final class Workbooks {
+
+    private static final Object[] STUDENT_HEADER = {"Name", "Must include", "Should include", "Cannot be with",
+            "Avoid being with", "Numeracy", "Literacy", "Social-emotional", "Gender"};
+    private static final Object[] CLASS_HEADER = {"Class code", "Teacher"};
+
+    /**
+     * A cell holding a formula, such as {@code 1+2}, written with its result cached as Excel would.
+     */
+    record Formula(String formula) {
+    }
+
+    private Workbooks() {
+    }
+
+    /**
+     * A cohort of six students, each naming others in every relationship column, in two classes.
+     */
+    static File writeCohort(Path file) throws IOException {
+        return write(file, false, new Object[][]{
+                {"Ann", "Bob", "Cat, Dan", "Eve", "", 3, 4, 2, "F"},
+                {"Bob", "Ann", "Cat", "", "Fin", 2, 2, 5, "M"},
+                {"Cat", "", "Ann, ann", "Dan", "", 5, 3, 3, "F"},
+                {"Dan", "Eve", "", "Cat", "Ann", 1, 5, 4, "M"},
+                {"Eve", "", "Fin", "Ann", "", 4, 1, 1, ""},
+                {"Fin", "Dan", "Bob", "", "Eve", 3, 3, 3, "M"},
+        }, new Object[][]{
+                {"7A", "Ms Smith"},
+                {"7B", "Mr Jones"},
+        });
+    }
+
+    /**
+     * Writes a workbook with a headed "Students" and "Classes" sheet.
+     *
+     * @param inlineStrings whether strings are written inline in each cell rather than to the shared strings table
+     * @param studentRows   each cell a {@link String}, {@link Number} or {@link Formula}, or {@code null} for none;
+     *                      a {@code null} row leaves the row out
+     */
+    static File write(Path file, boolean inlineStrings, Object[][] studentRows, Object[][] classRows)
+            throws IOException {
+        try (SXSSFWorkbook workbook = new SXSSFWorkbook(new XSSFWorkbook(), SXSSFWorkbook.DEFAULT_WINDOW_SIZE,
+                false, !inlineStrings);
+             OutputStream out = Files.newOutputStream(file)) {
+            writeSheet(workbook.createSheet("Students"), STUDENT_HEADER, studentRows);
+            writeSheet(workbook.createSheet("Classes"), CLASS_HEADER, classRows);
+            SXSSFFormulaEvaluator.evaluateAllFormulaCells(workbook, false);
+            workbook.write(out);
+        }
+        return file.toFile();
+    }
+
+    private static void writeSheet(Sheet sheet, Object[] header, Object[][] rows) {
+        writeRow(sheet.createRow(0), header);
+        for (int r = 0; r < rows.length; r++) {
+            if (rows[r] != null) writeRow(sheet.createRow(r + 1), rows[r]);
+        }
+    }
+
+    private static void writeRow(Row row, Object[] values) {
+        for (int c = 0; c < values.length; c++) {
+            if (values[c] == null) continue;
+            Cell cell = row.createCell(c);
+            if (values[c] instanceof Formula formula) {
+                cell.setCellFormula(formula.formula());
+            } else if (values[c] instanceof Number number) {
+                cell.setCellValue(number.doubleValue());
+            } else {
+                cell.setCellValue((String) values[c]);
+            }
+        }
+    }
+
+    /**
+     * @return a line for each student, with their scores, gender and the names in each relationship, then one for
+     * each class, in the order they were read
+     */
+    static List<String> describe(Datafile datafile) {
+        List<String> lines = new ArrayList<>();
+        for (Student student : datafile.getStudents()) {
+            StringBuilder line = new StringBuilder(student.getId() + " " + student.getName() + " "
+                    + student.getNumeracy() + "/" + student.getLiteracy() + "/" + student.getSocialEmotional()
+                    + " " + student.getGender());
+            for (RelationshipType type : RelationshipType.values()) {
+                line.append(' ').append(type.name()).append('=')
+                        .append(type.of(student).stream().map(Student::getName).toList());
+            }
+            lines.add(line.toString());
+        }
+        for (StudentClass studentClass : datafile.getClasses()) {
+            lines.add(studentClass.getId() + " " + studentClass.getClassCode() + " " + studentClass.getTeacher());
+        }
+        return lines;
+    }
+}
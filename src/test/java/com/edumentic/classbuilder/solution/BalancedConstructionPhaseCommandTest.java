@@ -0,0 +1,69 @@
+package com.edumentic.classbuilder.solution;
+
+import com.edumentic.classbuilder.model.Student;
+import com.edumentic.classbuilder.model.StudentClass;
+import org.junit.jupiter.api.Test;
+import org.optaplanner.core.config.solver.SolverConfig;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BalancedConstructionPhaseCommandTest {
+
+    private static final SolverProfile BALANCED = FullAssertSolving.profile("constructionHeuristic=BALANCED");
+
+    @Test
+    void dealsEveryGroupOutEvenlyWithoutConflicts() {
+        // No local search steps, so the best solution is the construction's
+        SolverConfig solverConfig = FullAssertSolving.solverConfig(ScoreCalculatorType.INCREMENTAL, BALANCED, 0);
+        for (long seed = 1; seed <= 3; seed++) {
+            ClassBuilderSolution constructed = FullAssertSolving.solve(solverConfig,
+                    RandomCohorts.unassigned(seed, 61, 3, RandomCohorts.constraints(15, 25)));
+
+            for (StudentGroupAssignment group : constructed.getGroupAssignments()) {
+                assertNotNull(group.getStudentClass());
+            }
+            int[] sizes = Arrays.stream(constructed.getClassAggregates()).mapToInt(ClassAggregate::getSize).toArray();
+            assertTrue(Arrays.stream(sizes).max().getAsInt() - Arrays.stream(sizes).min().getAsInt() <= 2,
+                    Arrays.toString(sizes));
+            for (StudentClassAssignment assignment : constructed.getAssignments()) {
+                Student student = assignment.getStudent();
+                for (Student cannotBeWith : student.getCannotBeWith()) {
+                    if (cannotBeWith != student) {
+                        assertFalse(constructed.inSameClass(student, cannotBeWith),
+                                student.getName() + " is with " + cannotBeWith.getName());
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void leavesAssignedGroupsWhereTheyAre() {
+        SolverConfig solverConfig = FullAssertSolving.solverConfig(ScoreCalculatorType.INCREMENTAL, BALANCED, 0);
+        ClassBuilderSolution problem = RandomCohorts.unassigned(4, 30, 3, RandomCohorts.constraints(5, 15, false, true));
+        StudentClass lastClass = problem.getStudentClasses().getLast();
+        for (StudentGroupAssignment group : problem.getGroupAssignments().subList(0, 3)) {
+            group.setStudentClass(lastClass);
+            group.getMembers().forEach(member -> member.setStudentClass(lastClass));
+        }
+
+        ClassBuilderSolution constructed = FullAssertSolving.solve(solverConfig, problem);
+
+        for (StudentGroupAssignment group : constructed.getGroupAssignments().subList(0, 3)) {
+            assertSame(constructed.getStudentClasses().getLast(), group.getStudentClass());
+        }
+        assertEquals(30, Arrays.stream(constructed.getClassAggregates()).mapToInt(ClassAggregate::getSize).sum());
+    }
+
+    @Test
+    void keepsTheScoreCorrectThroughTheLocalSearchAfterIt() {
+        SolverConfig solverConfig = FullAssertSolving.solverConfig(ScoreCalculatorType.INCREMENTAL, BALANCED, 200);
+        FullAssertSolving.solve(solverConfig, RandomCohorts.unassigned(5, 64, 4, RandomCohorts.constraints(12, 20)));
+    }
+}
@@ -0,0 +1,29 @@
+package com.edumentic.classbuilder.solution;
+
+import org.junit.jupiter.api.Test;
+import org.optaplanner.core.config.solver.SolverConfig;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClassBuilderConstraintProviderTest {
+
+    @Test
+    void scoresTheSameFunctionAsTheEasyCalculator() {
+        SolverConfig solverConfig = FullAssertSolving.solverConfig(ScoreCalculatorType.CONSTRAINT_STREAMS,
+                FullAssertSolving.CHANGE_AND_SWAP, 200);
+        FullAssertSolving.solveRandomCohorts(solverConfig, 3);
+        FullAssertSolving.solve(solverConfig,
+                RandomCohorts.unassigned(4, 50, 4, RandomCohorts.constraints(5, 20, false, true)));
+    }
+
+    @Test
+    void scoresSoftConstraintsWhileHardConstraintsAreBroken() {
+        // 60 students can't fill 3 classes of at least 25
+        SolverConfig solverConfig = FullAssertSolving.solverConfig(ScoreCalculatorType.CONSTRAINT_STREAMS,
+                FullAssertSolving.CHANGE_AND_SWAP, 200);
+        ClassBuilderSolution best = FullAssertSolving.solve(solverConfig,
+                RandomCohorts.unassigned(5, 60, 3, RandomCohorts.constraints(25, 30)));
+        assertTrue(best.getScore().hardScore() < 0);
+        assertTrue(best.getScore().softScore() != 0);
+    }
+}
@@ -0,0 +1,56 @@
+package com.edumentic.classbuilder.solution;
+
+import org.junit.jupiter.api.Test;
+import org.optaplanner.core.api.solver.Solver;
+import org.optaplanner.core.api.solver.SolverFactory;
+import org.optaplanner.core.config.solver.SolverConfig;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ConstraintSnapshotTest {
+
+    @Test
+    void swappingTheSnapshotMidSolveKeepsTheIncrementalScoreCorrect() {
+        solveSwappingSnapshot(ScoreCalculatorType.INCREMENTAL);
+    }
+
+    @Test
+    void swappingTheSnapshotMidSolveKeepsTheConstraintStreamsScoreCorrect() {
+        solveSwappingSnapshot(ScoreCalculatorType.CONSTRAINT_STREAMS);
+    }
+
+    @Test
+    void solutionWithoutASnapshotIsRejectedRatherThanScoredAgainstTheSettings() {
+        SolverConfig solverConfig = FullAssertSolving.solverConfig(ScoreCalculatorType.INCREMENTAL,
+                FullAssertSolving.CHANGE_AND_SWAP, 10);
+        ClassBuilderSolution problem = RandomCohorts.unassigned(1, 60, 3, RandomCohorts.constraints(15, 25));
+        problem.setConstraintSnapshot(null);
+
+        assertThrows(IllegalStateException.class, () -> FullAssertSolving.solve(solverConfig, problem));
+    }
+
+    /**
+     * Swaps in a snapshot with different class sizes and with the relationships turned off at the first new best
+     * solution, so every score after it, each checked in FULL_ASSERT, has to be calculated against the new rules.
+     */
+    private static void solveSwappingSnapshot(ScoreCalculatorType scoreCalculatorType) {
+        SolverConfig solverConfig = FullAssertSolving.solverConfig(scoreCalculatorType,
+                FullAssertSolving.CHANGE_AND_SWAP, 200);
+        Solver<ClassBuilderSolution> solver = SolverFactory.<ClassBuilderSolution>create(solverConfig).buildSolver();
+        ConstraintSnapshot changed = RandomCohorts.constraints(10, 30, false, true);
+        AtomicBoolean swapped = new AtomicBoolean();
+        solver.addEventListener(event -> {
+            if (swapped.compareAndSet(false, true)) {
+                solver.addProblemChange(changed.toProblemChange());
+            }
+        });
+
+        ClassBuilderSolution best = solver.solve(RandomCohorts.unassigned(1, 60, 3, RandomCohorts.constraints(15, 25)));
+
+        assertSame(changed, best.getConstraintSnapshot());
+        FullAssertSolving.assertScoreIsRecalculated(best);
+    }
+}
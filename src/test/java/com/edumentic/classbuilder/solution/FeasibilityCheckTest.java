@@ -0,0 +1,90 @@
+package com.edumentic.classbuilder.solution;
+
+import com.edumentic.classbuilder.model.Student;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+class FeasibilityCheckTest {
+
+    @Test
+    void reportsAMinimumClassSizeAboveTheMaximum() {
+        assertEquals(List.of("The minimum class size (30) is larger than the maximum (20)"),
+                FeasibilityCheck.findProblems(unrelated(50), RandomCohorts.classes(2),
+                        RandomCohorts.constraints(30, 20)));
+    }
+
+    @Test
+    void reportsMoreStudentsThanTheClassesHold() {
+        assertEquals(List.of("10 students cannot fit in 2 classes of at most 4 (room for 8)"),
+                FeasibilityCheck.findProblems(unrelated(10), RandomCohorts.classes(2),
+                        RandomCohorts.constraints(0, 4)));
+    }
+
+    @Test
+    void reportsTooFewStudentsToFillTheClasses() {
+        assertEquals(List.of("3 classes of at least 4 need 12 students, but there are only 10"),
+                FeasibilityCheck.findProblems(unrelated(10), RandomCohorts.classes(3),
+                        RandomCohorts.constraints(4, 10)));
+    }
+
+    @Test
+    void reportsAMustIncludeGroupLargerThanAClass() {
+        List<Student> students = unrelated(8);
+        // 0 to 3 are linked one after another, so must all be together
+        for (int s = 0; s < 3; s++) {
+            students.get(s).getMustIncludeFriends().add(students.get(s + 1));
+        }
+
+        assertEquals(List.of("These 4 students must all be together, but a class holds at most 3: "
+                        + "Student 0, Student 1, Student 2, Student 3"),
+                FeasibilityCheck.findProblems(students, RandomCohorts.classes(3), RandomCohorts.constraints(0, 3)));
+    }
+
+    @Test
+    void reportsACannotBeWithInsideAMustIncludeGroup() {
+        List<Student> students = unrelated(6);
+        students.get(0).getMustIncludeFriends().add(students.get(1));
+        students.get(1).getCannotBeWith().add(students.get(0));
+
+        assertEquals(List.of("Student 1 cannot be with Student 0, but they must be together through must include "
+                        + "relationships"),
+                FeasibilityCheck.findProblems(students, RandomCohorts.classes(2), RandomCohorts.constraints(0, 5)));
+    }
+
+    @Test
+    void reportsMoreStudentsWhoCannotBeTogetherThanClasses() {
+        List<Student> students = unrelated(9);
+        // 0 to 3 each name the ones after them, so no two of the four can share one of the 3 classes
+        for (int s = 0; s < 4; s++) {
+            for (int other = s + 1; other < 4; other++) {
+                students.get(s).getCannotBeWith().add(students.get(other));
+            }
+        }
+
+        assertEquals(List.of("4 students cannot be with each other, so they need 4 classes but there are only 3: "
+                        + "Student 0, Student 1, Student 2, Student 3"),
+                FeasibilityCheck.findProblems(students, RandomCohorts.classes(3), RandomCohorts.constraints(0, 5)));
+    }
+
+    @Test
+    void findsNoProblemInALargeFeasibleCohortWithinASecond() {
+        List<Student> students = RandomCohorts.students(1, 2_000);
+        // RandomCohorts has the odd student naming themselves, which is a problem of its own
+        for (Student student : students) {
+            student.getCannotBeWith().remove(student);
+        }
+
+        List<String> problems = assertTimeoutPreemptively(Duration.ofSeconds(1), () -> FeasibilityCheck.findProblems(
+                students, RandomCohorts.classes(80), RandomCohorts.constraints(20, 30)));
+        assertEquals(List.of(), problems);
+    }
+
+    private static List<Student> unrelated(int count) {
+        return RandomCohorts.withoutRelationships(RandomCohorts.students(1, count));
+    }
+}
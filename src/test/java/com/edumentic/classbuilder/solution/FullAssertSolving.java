@@ -0,0 +1,97 @@
+package com.edumentic.classbuilder.solution;
+
+import org.optaplanner.core.api.score.buildin.hardsoft.HardSoftScore;
+import org.optaplanner.core.api.solver.SolverFactory;
+import org.optaplanner.core.config.localsearch.LocalSearchPhaseConfig;
+import org.optaplanner.core.config.partitionedsearch.PartitionedSearchPhaseConfig;
+import org.optaplanner.core.config.phase.PhaseConfig;
+import org.optaplanner.core.config.score.director.ScoreDirectorFactoryConfig;
+import org.optaplanner.core.config.solver.EnvironmentMode;
+import org.optaplanner.core.config.solver.SolverConfig;
+import org.optaplanner.core.config.solver.termination.TerminationConfig;
+
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Short solves in {@link EnvironmentMode#FULL_ASSERT}, where OptaPlanner recalculates every score it is given with
+ * {@link SolutionScoreCalculator} and fails on the first that differs, undoes every move and checks the shadow
+ * variables. Each local search stops after a number of steps rather than a time, so a test does the same work on a
+ * slow machine.
+ */
+public final class FullAssertSolving {
+
+    /**
+     * Only change and swap moves after a first fit construction: the moves every score calculator has to follow,
+     * without the custom moves, which have tests of their own.
+     */
+    public static final SolverProfile CHANGE_AND_SWAP = profile(
+            "constructionHeuristic=FIRST_FIT",
+            "classRotationMoveWeight=0",
+            "nearbyChangeMoveWeight=0",
+            "nearbySwapMoveWeight=0");
+
+    private FullAssertSolving() {
+    }
+
+    /**
+     * @param settings {@code key=value} pairs as in {@code solver-profiles.properties}, without the id
+     */
+    public static SolverProfile profile(String... settings) {
+        Properties properties = new Properties();
+        for (String setting : settings) {
+            int equals = setting.indexOf('=');
+            properties.setProperty("test." + setting.substring(0, equals), setting.substring(equals + 1));
+        }
+        return SolverProfile.fromProperties("test", properties);
+    }
+
+    public static SolverConfig solverConfig(ScoreCalculatorType scoreCalculatorType, SolverProfile profile, int stepCountLimit) {
+        SolverConfig solverConfig = SolverConfigs.create(scoreCalculatorType, SolverConfig.MOVE_THREAD_COUNT_NONE, profile)
+                .withEnvironmentMode(EnvironmentMode.FULL_ASSERT);
+        solverConfig.getScoreDirectorFactoryConfig().setAssertionScoreDirectorFactory(
+                new ScoreDirectorFactoryConfig().withEasyScoreCalculatorClass(SolutionScoreCalculator.class));
+        limitSteps(solverConfig.getPhaseConfigList(), stepCountLimit);
+        // Only there to end a run whose steps don't
+        solverConfig.setTerminationConfig(new TerminationConfig().withSecondsSpentLimit(120L));
+        return solverConfig;
+    }
+
+    public static ClassBuilderSolution solve(SolverConfig solverConfig, ClassBuilderSolution problem) {
+        ClassBuilderSolution best = SolverFactory.<ClassBuilderSolution>create(solverConfig).buildSolver().solve(problem);
+        assertScoreIsRecalculated(best);
+        return best;
+    }
+
+    /**
+     * Solves the random cohorts seeded 1 to {@code count}, each of 60 students in 3 classes of 15 to 25.
+     */
+    public static void solveRandomCohorts(SolverConfig solverConfig, int count) {
+        for (long seed = 1; seed <= count; seed++) {
+            solve(solverConfig, RandomCohorts.unassigned(seed, 60, 3, RandomCohorts.constraints(15, 25)));
+        }
+    }
+
+    /**
+     * Fails unless {@code solution} has a score and it is the one {@link SolutionScoreCalculator} gives it afresh.
+     */
+    public static void assertScoreIsRecalculated(ClassBuilderSolution solution) {
+        HardSoftScore score = solution.getScore();
+        assertNotNull(score);
+        solution.invalidateCompiledProblem();
+        assertEquals(new SolutionScoreCalculator().calculateScore(solution), score);
+    }
+
+    private static void limitSteps(List<PhaseConfig> phaseConfigs, int stepCountLimit) {
+        for (PhaseConfig<?> phaseConfig : phaseConfigs) {
+            if (phaseConfig instanceof LocalSearchPhaseConfig) {
+                phaseConfig.setTerminationConfig(new TerminationConfig().withStepCountLimit(stepCountLimit));
+            } else if (phaseConfig instanceof PartitionedSearchPhaseConfig partitionedSearch) {
+                limitSteps(partitionedSearch.getPhaseConfigList(), stepCountLimit);
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.edumentic.classbuilder.solution;
+
+import org.junit.jupiter.api.Test;
+import org.optaplanner.core.config.solver.SolverConfig;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IncrementalSolutionScoreCalculatorTest {
+
+    @Test
+    void agreesWithTheEasyCalculatorOnRandomCohorts() {
+        SolverConfig solverConfig = FullAssertSolving.solverConfig(ScoreCalculatorType.INCREMENTAL,
+                FullAssertSolving.CHANGE_AND_SWAP, 300);
+        FullAssertSolving.solveRandomCohorts(solverConfig, 4);
+    }
+
+    @Test
+    void agreesWithTheEasyCalculatorWhileHardConstraintsAreBroken() {
+        // 60 students can't fill 3 classes of at least 25, so every score is infeasible, soft constraints and all
+        SolverConfig solverConfig = FullAssertSolving.solverConfig(ScoreCalculatorType.INCREMENTAL,
+                FullAssertSolving.CHANGE_AND_SWAP, 200);
+        ClassBuilderSolution best = FullAssertSolving.solve(solverConfig,
+                RandomCohorts.unassigned(5, 60, 3, RandomCohorts.constraints(25, 30)));
+        assertTrue(best.getScore().hardScore() < 0);
+        assertTrue(best.getScore().softScore() != 0);
+    }
+
+    @Test
+    void agreesWithTheEasyCalculatorWithConstraintsTurnedOff() {
+        SolverConfig solverConfig = FullAssertSolving.solverConfig(ScoreCalculatorType.INCREMENTAL,
+                FullAssertSolving.CHANGE_AND_SWAP, 200);
+        FullAssertSolving.solve(solverConfig,
+                RandomCohorts.unassigned(6, 50, 4, RandomCohorts.constraints(5, 20, false, true)));
+        FullAssertSolving.solve(solverConfig,
+                RandomCohorts.unassigned(7, 50, 4, RandomCohorts.constraints(5, 20, true, false)));
+    }
+}
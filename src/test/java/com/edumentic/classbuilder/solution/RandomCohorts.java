@@ -0,0 +1,122 @@
+package com.edumentic.classbuilder.solution;
+
+import com.edumentic.classbuilder.model.Gender;
+import com.edumentic.classbuilder.model.RelationshipType;
+import com.edumentic.classbuilder.model.Student;
+import com.edumentic.classbuilder.model.StudentClass;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Random students and classes for the solver tests, the same for the same seed.
+ *
+ * <p>
+ *     Every student has random scores and gender, a few students they should be with or avoid, and now and then
+ *     someone they cannot be with. Every {@link #MUST_INCLUDE_EVERY}th student must be with the next, so there are
+ *     must include groups of two or more. A few lists name the same student twice or the student themselves, which
+ *     a workbook can't, but the calculators still have to agree on.
+ * </p>
+ */
+public final class RandomCohorts {
+
+    public static final int MUST_INCLUDE_EVERY = 8;
+
+    private RandomCohorts() {
+    }
+
+    public static List<Student> students(long seed, int count) {
+        Random random = new Random(seed);
+        List<Student> students = new ArrayList<>(count);
+        for (int s = 0; s < count; s++) {
+            Student student = new Student();
+            student.setId((long) s);
+            student.setName("Student " + s);
+            student.setNumeracy(1 + random.nextInt(5));
+            student.setLiteracy(1 + random.nextInt(5));
+            student.setSocialEmotional(1 + random.nextInt(5));
+            student.setGender(Gender.values()[random.nextInt(Gender.values().length)]);
+            students.add(student);
+        }
+        for (int s = 0; s < count; s++) {
+            Student student = students.get(s);
+            student.setShouldIncludeFriends(pick(random, students, random.nextInt(4)));
+            student.setAvoidBeingWith(pick(random, students, random.nextInt(3)));
+            student.setCannotBeWith(random.nextInt(10) == 0 ? pick(random, students, 1) : new ArrayList<>());
+            student.setMustIncludeFriends(s % MUST_INCLUDE_EVERY == 0 && s + 1 < count
+                    ? new ArrayList<>(List.of(students.get(s + 1)))
+                    : new ArrayList<>());
+        }
+        // The odd duplicate and self reference
+        Student first = students.getFirst();
+        first.getShouldIncludeFriends().add(students.get(1));
+        first.getShouldIncludeFriends().add(students.get(1));
+        students.get(2).getAvoidBeingWith().add(students.get(2));
+        return students;
+    }
+
+    public static List<StudentClass> classes(int count) {
+        List<StudentClass> classes = new ArrayList<>(count);
+        for (int c = 0; c < count; c++) {
+            StudentClass studentClass = new StudentClass();
+            studentClass.setId((long) c);
+            studentClass.setClassCode("C" + (c + 1));
+            studentClass.setTeacher("Teacher " + (c + 1));
+            classes.add(studentClass);
+        }
+        return classes;
+    }
+
+    /**
+     * @return every constraint on, with class sizes from {@code minClassSize} to {@code maxClassSize}
+     */
+    public static ConstraintSnapshot constraints(int minClassSize, int maxClassSize) {
+        ClassBuilderConstraints constraints = new ClassBuilderConstraints();
+        constraints.setMinClassSize(minClassSize);
+        constraints.setMaxClassSize(maxClassSize);
+        return ConstraintSnapshot.of(constraints);
+    }
+
+    /**
+     * @return the settings with only the given relationships and metrics on
+     */
+    public static ConstraintSnapshot constraints(int minClassSize, int maxClassSize, boolean relationships, boolean balance) {
+        ClassBuilderConstraints constraints = new ClassBuilderConstraints();
+        constraints.setMinClassSize(minClassSize);
+        constraints.setMaxClassSize(maxClassSize);
+        constraints.setMustIncludeOthers(relationships);
+        constraints.setShouldIncludeOthers(relationships);
+        constraints.setMustAvoidOthers(relationships);
+        constraints.setShouldAvoidOthers(relationships);
+        constraints.setBalanceNumeracy(balance);
+        constraints.setBalanceLiteracy(balance);
+        constraints.setBalanceSocialEmotional(balance);
+        constraints.setBalanceGender(balance);
+        return ConstraintSnapshot.of(constraints);
+    }
+
+    public static ClassBuilderSolution unassigned(long seed, int studentCount, int classCount, ConstraintSnapshot constraints) {
+        return ClassBuilderSolution.createUnassigned(students(seed, studentCount), classes(classCount), constraints);
+    }
+
+    /**
+     * @return students related to nobody, so every student is a component of their own
+     */
+    public static List<Student> withoutRelationships(List<Student> students) {
+        for (Student student : students) {
+            for (RelationshipType type : RelationshipType.values()) {
+                type.set(student, new ArrayList<>());
+            }
+        }
+        return students;
+    }
+
+    private static List<Student> pick(Random random, List<Student> students, int count) {
+        List<Student> picked = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            picked.add(students.get(random.nextInt(students.size())));
+        }
+        return picked;
+    }
+}
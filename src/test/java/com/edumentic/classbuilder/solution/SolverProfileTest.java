@@ -0,0 +1,66 @@
+package com.edumentic.classbuilder.solution;
+
+import com.edumentic.classbuilder.model.Student;
+import org.junit.jupiter.api.Test;
+import org.optaplanner.core.config.partitionedsearch.PartitionedSearchPhaseConfig;
+import org.optaplanner.core.config.solver.SolverConfig;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class SolverProfileTest {
+
+    private static final SolverProfile PARTITIONED = FullAssertSolving.profile(
+            "partitionCount=4", "secondsSpentLimit=600", "unimprovedSecondsSpentLimit=60");
+
+    @Test
+    void timeBudgetAlsoEndsThePartitionedSearch() {
+        SolverConfig solverConfig = PARTITIONED.withSecondsSpentLimit(30L).applyTo(new SolverConfig());
+
+        PartitionedSearchPhaseConfig partitionedSearch =
+                assertInstanceOf(PartitionedSearchPhaseConfig.class, solverConfig.getPhaseConfigList().getFirst());
+        assertEquals(15L, partitionedSearch.getTerminationConfig().getSecondsSpentLimit());
+        assertEquals(30L, solverConfig.getTerminationConfig().getSecondsSpentLimit());
+    }
+
+    @Test
+    void cohortWithFewerComponentsThanPartsIsSolvedAsOne() {
+        ClassBuilderSolution linked = linkedCohort();
+        ClassBuilderSolution unrelated = ClassBuilderSolution.createUnassigned(
+                RandomCohorts.withoutRelationships(RandomCohorts.students(1, 40)), RandomCohorts.classes(2),
+                RandomCohorts.constraints(15, 25));
+
+        SolverProfile linkedProfile = PARTITIONED.forProblem(linked);
+        assertEquals(1, linkedProfile.getPartitionCount());
+        assertFalse(linkedProfile.applyTo(new SolverConfig()).getPhaseConfigList().stream()
+                .anyMatch(PartitionedSearchPhaseConfig.class::isInstance));
+        assertSame(PARTITIONED, PARTITIONED.forProblem(unrelated));
+    }
+
+    @Test
+    void partitionerGivenTooFewComponentsSolvesTheWholeCohort() {
+        // Configured without forProblem, as ClassBuilderQueue is, so the partitioner has to fall back itself
+        SolverConfig solverConfig = FullAssertSolving.solverConfig(ScoreCalculatorType.INCREMENTAL, PARTITIONED, 100);
+        ClassBuilderSolution best = FullAssertSolving.solve(solverConfig, linkedCohort());
+
+        for (StudentGroupAssignment group : best.getGroupAssignments()) {
+            assertNotNull(group.getStudentClass());
+        }
+    }
+
+    /**
+     * Every student should be with the next, so the whole cohort is one component.
+     */
+    private static ClassBuilderSolution linkedCohort() {
+        List<Student> students = RandomCohorts.withoutRelationships(RandomCohorts.students(1, 40));
+        for (int s = 0; s + 1 < students.size(); s++) {
+            students.get(s).getShouldIncludeFriends().add(students.get(s + 1));
+        }
+        return ClassBuilderSolution.createUnassigned(students, RandomCohorts.classes(2), RandomCohorts.constraints(15, 25));
+    }
+}
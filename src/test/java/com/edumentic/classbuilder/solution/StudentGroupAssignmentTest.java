@@ -0,0 +1,51 @@
+package com.edumentic.classbuilder.solution;
+
+import com.edumentic.classbuilder.model.Student;
+import org.junit.jupiter.api.Test;
+import org.optaplanner.core.config.solver.SolverConfig;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class StudentGroupAssignmentTest {
+
+    @Test
+    void mustIncludeChainsCollapseIntoOneGroup() {
+        List<Student> students = RandomCohorts.withoutRelationships(RandomCohorts.students(1, 10));
+        // 0 and 2 both name 1, and 5 names 6 names 7 names 5
+        students.get(0).getMustIncludeFriends().add(students.get(1));
+        students.get(2).getMustIncludeFriends().add(students.get(1));
+        students.get(5).getMustIncludeFriends().add(students.get(6));
+        students.get(6).getMustIncludeFriends().add(students.get(7));
+        students.get(7).getMustIncludeFriends().add(students.get(5));
+
+        ClassBuilderSolution grouped = ClassBuilderSolution.createUnassigned(students, RandomCohorts.classes(2),
+                RandomCohorts.constraints(1, 10));
+        ClassBuilderSolution ungrouped = ClassBuilderSolution.createUnassigned(students, RandomCohorts.classes(2),
+                RandomCohorts.constraints(1, 10, false, true));
+
+        assertEquals(6, grouped.getGroupAssignments().size());
+        assertEquals(List.of(1, 1, 1, 1, 3, 3), grouped.getGroupAssignments().stream()
+                .map(StudentGroupAssignment::getSize).sorted().toList());
+        assertEquals(10, ungrouped.getGroupAssignments().size());
+    }
+
+    @Test
+    void groupMembersStayTogetherThroughEveryKindOfMove() {
+        SolverConfig solverConfig = FullAssertSolving.solverConfig(ScoreCalculatorType.INCREMENTAL,
+                FullAssertSolving.profile("constructionHeuristic=FIRST_FIT_DECREASING"), 300);
+        for (long seed = 1; seed <= 3; seed++) {
+            ClassBuilderSolution best = FullAssertSolving.solve(solverConfig,
+                    RandomCohorts.unassigned(seed, 64, 3, RandomCohorts.constraints(15, 25)));
+
+            assertEquals(64 - 64 / RandomCohorts.MUST_INCLUDE_EVERY, best.getGroupAssignments().size());
+            for (StudentGroupAssignment group : best.getGroupAssignments()) {
+                for (StudentClassAssignment member : group.getMembers()) {
+                    assertSame(group.getStudentClass(), member.getStudentClass());
+                }
+            }
+        }
+    }
+}
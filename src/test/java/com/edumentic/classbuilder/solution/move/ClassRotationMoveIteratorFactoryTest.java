@@ -0,0 +1,63 @@
+package com.edumentic.classbuilder.solution.move;
+
+import com.edumentic.classbuilder.solution.ClassBuilderSolution;
+import com.edumentic.classbuilder.solution.FullAssertSolving;
+import com.edumentic.classbuilder.solution.RandomCohorts;
+import com.edumentic.classbuilder.solution.ScoreCalculatorType;
+import org.junit.jupiter.api.Test;
+import org.optaplanner.core.api.score.buildin.hardsoft.HardSoftScore;
+import org.optaplanner.core.config.solver.SolverConfig;
+import org.optaplanner.core.impl.score.director.InnerScoreDirector;
+
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClassRotationMoveIteratorFactoryTest {
+
+    @Test
+    void originalOrderListsEveryRotationOnce() {
+        // Six students of their own, two to a class: 2 * 2 * 2 ways to pick one from each class, each rotated both ways
+        ClassBuilderSolution solution = RandomCohorts.unassigned(1, 6, 3, RandomCohorts.constraints(1, 5, false, true));
+        InnerScoreDirector<ClassBuilderSolution, HardSoftScore> scoreDirector = MoveFactories.scoreDirectorFor(solution);
+        MoveFactories.assignRoundRobin(scoreDirector);
+
+        List<MultiChangeMove> moves = MoveFactories.originalMoves(new ClassRotationMoveIteratorFactory(), scoreDirector);
+
+        assertEquals(16, moves.size());
+        assertEquals(16, new HashSet<>(moves).size());
+        assertTrue(moves.stream().allMatch(move -> move.isMoveDoable(scoreDirector)));
+    }
+
+    @Test
+    void originalOrderHasNoMovesWithFewerThanThreeClasses() {
+        ClassBuilderSolution solution = RandomCohorts.unassigned(1, 6, 2, RandomCohorts.constraints(1, 5, false, true));
+        InnerScoreDirector<ClassBuilderSolution, HardSoftScore> scoreDirector = MoveFactories.scoreDirectorFor(solution);
+        MoveFactories.assignRoundRobin(scoreDirector);
+
+        assertTrue(MoveFactories.originalMoves(new ClassRotationMoveIteratorFactory(), scoreDirector).isEmpty());
+    }
+
+    @Test
+    void randomRotationsKeepTheScoreCorrect() {
+        SolverConfig solverConfig = FullAssertSolving.solverConfig(ScoreCalculatorType.INCREMENTAL, FullAssertSolving.profile(
+                "constructionHeuristic=FIRST_FIT",
+                "changeMoveWeight=0",
+                "swapMoveWeight=0",
+                "classRotationMoveWeight=1",
+                "nearbyChangeMoveWeight=0",
+                "nearbySwapMoveWeight=0"), 300);
+        FullAssertSolving.solve(solverConfig, RandomCohorts.unassigned(1, 60, 4, RandomCohorts.constraints(10, 20)));
+    }
+
+    @Test
+    void originalOrderRotationsKeepTheScoreCorrect() {
+        SolverConfig solverConfig = MoveFactories.selectingInOriginalOrder(
+                FullAssertSolving.solverConfig(ScoreCalculatorType.INCREMENTAL,
+                        FullAssertSolving.profile("constructionHeuristic=FIRST_FIT"), 5),
+                ClassRotationMoveIteratorFactory.class);
+        FullAssertSolving.solve(solverConfig, RandomCohorts.unassigned(2, 18, 3, RandomCohorts.constraints(4, 8)));
+    }
+}
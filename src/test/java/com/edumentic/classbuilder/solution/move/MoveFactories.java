@@ -0,0 +1,84 @@
+package com.edumentic.classbuilder.solution.move;
+
+import com.edumentic.classbuilder.solution.ClassBuilderSolution;
+import com.edumentic.classbuilder.solution.ScoreCalculatorType;
+import com.edumentic.classbuilder.solution.SolverConfigs;
+import com.edumentic.classbuilder.solution.StudentGroupAssignment;
+import org.optaplanner.core.api.score.buildin.hardsoft.HardSoftScore;
+import org.optaplanner.core.api.solver.SolverFactory;
+import org.optaplanner.core.config.heuristic.selector.common.SelectionCacheType;
+import org.optaplanner.core.config.heuristic.selector.common.SelectionOrder;
+import org.optaplanner.core.config.heuristic.selector.move.factory.MoveIteratorFactoryConfig;
+import org.optaplanner.core.config.localsearch.LocalSearchPhaseConfig;
+import org.optaplanner.core.config.localsearch.decider.acceptor.LocalSearchAcceptorConfig;
+import org.optaplanner.core.config.solver.SolverConfig;
+import org.optaplanner.core.impl.heuristic.selector.move.factory.MoveIteratorFactory;
+import org.optaplanner.core.impl.score.director.InnerScoreDirector;
+import org.optaplanner.core.impl.solver.DefaultSolverFactory;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Runs the move iterator factories outside a solver, and sets a solver up to select from one of them alone.
+ */
+final class MoveFactories {
+
+    private MoveFactories() {
+    }
+
+    /**
+     * @return a score director on {@code solution}, with every shadow variable brought up to date
+     */
+    static InnerScoreDirector<ClassBuilderSolution, HardSoftScore> scoreDirectorFor(ClassBuilderSolution solution) {
+        SolverConfig solverConfig = SolverConfigs.create(ScoreCalculatorType.INCREMENTAL, SolverConfig.MOVE_THREAD_COUNT_NONE, null);
+        InnerScoreDirector<ClassBuilderSolution, HardSoftScore> scoreDirector =
+                ((DefaultSolverFactory<ClassBuilderSolution>) SolverFactory.<ClassBuilderSolution>create(solverConfig))
+                        .<HardSoftScore>getScoreDirectorFactory().buildScoreDirector(false, false);
+        scoreDirector.setWorkingSolution(solution);
+        return scoreDirector;
+    }
+
+    /**
+     * Puts group {@code g} in class {@code g % classCount}, through the score director so every member follows.
+     */
+    static void assignRoundRobin(InnerScoreDirector<ClassBuilderSolution, HardSoftScore> scoreDirector) {
+        ClassBuilderSolution solution = scoreDirector.getWorkingSolution();
+        List<StudentGroupAssignment> groups = solution.getGroupAssignments();
+        for (int g = 0; g < groups.size(); g++) {
+            StudentGroupAssignment group = groups.get(g);
+            scoreDirector.beforeVariableChanged(group, "studentClass");
+            group.setStudentClass(solution.getStudentClasses().get(g % solution.getStudentClasses().size()));
+            scoreDirector.afterVariableChanged(group, "studentClass");
+        }
+        scoreDirector.triggerVariableListeners();
+    }
+
+    static List<MultiChangeMove> originalMoves(MoveIteratorFactory<ClassBuilderSolution, MultiChangeMove> factory,
+                                               InnerScoreDirector<ClassBuilderSolution, HardSoftScore> scoreDirector) {
+        List<MultiChangeMove> moves = new ArrayList<>();
+        Iterator<MultiChangeMove> iterator = factory.createOriginalMoveIterator(scoreDirector);
+        iterator.forEachRemaining(moves::add);
+        return moves;
+    }
+
+    /**
+     * Makes the local search of {@code solverConfig} try every move of {@code factoryClass} in its original order
+     * on every step, under tabu search.
+     */
+    static SolverConfig selectingInOriginalOrder(SolverConfig solverConfig,
+                                                 Class<? extends MoveIteratorFactory> factoryClass) {
+        for (Object phaseConfig : solverConfig.getPhaseConfigList()) {
+            if (phaseConfig instanceof LocalSearchPhaseConfig localSearch) {
+                localSearch.setMoveSelectorConfig(new MoveIteratorFactoryConfig()
+                        .withMoveIteratorFactoryClass(factoryClass)
+                        .withSelectionOrder(SelectionOrder.ORIGINAL)
+                        .withCacheType(SelectionCacheType.JUST_IN_TIME));
+                localSearch.setAcceptorConfig(new LocalSearchAcceptorConfig().withEntityTabuSize(3));
+                localSearch.setForagerConfig(null);
+            }
+        }
+        return solverConfig;
+    }
+}
@@ -0,0 +1,55 @@
+package com.edumentic.classbuilder.solution.move;
+
+import com.edumentic.classbuilder.solution.ClassBuilderSolution;
+import com.edumentic.classbuilder.solution.FullAssertSolving;
+import com.edumentic.classbuilder.solution.RandomCohorts;
+import com.edumentic.classbuilder.solution.ScoreCalculatorType;
+import org.junit.jupiter.api.Test;
+import org.optaplanner.core.api.score.buildin.hardsoft.HardSoftScore;
+import org.optaplanner.core.config.solver.SolverConfig;
+import org.optaplanner.core.impl.score.director.InnerScoreDirector;
+
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NearbyChangeMoveIteratorFactoryTest {
+
+    @Test
+    void originalOrderMovesEveryGroupToEachOtherClassOfItsNearbyGroups() {
+        // Six students of their own in three classes: each has five nearby students, in all three classes
+        ClassBuilderSolution solution = RandomCohorts.unassigned(1, 6, 3, RandomCohorts.constraints(1, 5, false, true));
+        InnerScoreDirector<ClassBuilderSolution, HardSoftScore> scoreDirector = MoveFactories.scoreDirectorFor(solution);
+        MoveFactories.assignRoundRobin(scoreDirector);
+        NearbyChangeMoveIteratorFactory factory = new NearbyChangeMoveIteratorFactory();
+
+        List<MultiChangeMove> moves = MoveFactories.originalMoves(factory, scoreDirector);
+
+        assertEquals(6 * 5, factory.getSize(scoreDirector));
+        assertEquals(6 * 2, moves.size());
+        assertEquals(moves.size(), new HashSet<>(moves).size());
+        assertTrue(moves.stream().allMatch(move -> move.isMoveDoable(scoreDirector)));
+    }
+
+    @Test
+    void randomNearbyChangesKeepTheScoreCorrect() {
+        SolverConfig solverConfig = FullAssertSolving.solverConfig(ScoreCalculatorType.INCREMENTAL, FullAssertSolving.profile(
+                "constructionHeuristic=FIRST_FIT",
+                "changeMoveWeight=0",
+                "swapMoveWeight=0",
+                "classRotationMoveWeight=0",
+                "nearbySwapMoveWeight=0"), 300);
+        FullAssertSolving.solve(solverConfig, RandomCohorts.unassigned(1, 60, 4, RandomCohorts.constraints(10, 20)));
+    }
+
+    @Test
+    void originalOrderNearbyChangesKeepTheScoreCorrect() {
+        SolverConfig solverConfig = MoveFactories.selectingInOriginalOrder(
+                FullAssertSolving.solverConfig(ScoreCalculatorType.INCREMENTAL,
+                        FullAssertSolving.profile("constructionHeuristic=FIRST_FIT"), 10),
+                NearbyChangeMoveIteratorFactory.class);
+        FullAssertSolving.solve(solverConfig, RandomCohorts.unassigned(2, 40, 3, RandomCohorts.constraints(10, 16)));
+    }
+}
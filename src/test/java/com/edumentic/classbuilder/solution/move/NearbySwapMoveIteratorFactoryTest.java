@@ -0,0 +1,69 @@
+package com.edumentic.classbuilder.solution.move;
+
+import com.edumentic.classbuilder.solution.ClassBuilderSolution;
+import com.edumentic.classbuilder.solution.FullAssertSolving;
+import com.edumentic.classbuilder.solution.RandomCohorts;
+import com.edumentic.classbuilder.solution.ScoreCalculatorType;
+import com.edumentic.classbuilder.solution.StudentGroupAssignment;
+import org.junit.jupiter.api.Test;
+import org.optaplanner.core.api.score.buildin.hardsoft.HardSoftScore;
+import org.optaplanner.core.config.solver.SolverConfig;
+import org.optaplanner.core.impl.score.director.InnerScoreDirector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+
+class NearbySwapMoveIteratorFactoryTest {
+
+    @Test
+    void sizeIsOneSwapPerGroupAndNearbyGroup() {
+        ClassBuilderSolution solution = RandomCohorts.unassigned(1, 100, 4, RandomCohorts.constraints(10, 30, false, true));
+        InnerScoreDirector<ClassBuilderSolution, HardSoftScore> scoreDirector = MoveFactories.scoreDirectorFor(solution);
+
+        assertEquals(100 * NearbyChangeMoveIteratorFactory.NEARBY_SIZE_LIMIT,
+                new NearbySwapMoveIteratorFactory().getSize(scoreDirector));
+    }
+
+    @Test
+    void originalOrderSwapsKeepEveryClassTheSameSize() {
+        // Six students of their own, two to a class: each has four nearby students in other classes to trade towards
+        ClassBuilderSolution solution = RandomCohorts.unassigned(1, 6, 3, RandomCohorts.constraints(1, 5, false, true));
+        InnerScoreDirector<ClassBuilderSolution, HardSoftScore> scoreDirector = MoveFactories.scoreDirectorFor(solution);
+        MoveFactories.assignRoundRobin(scoreDirector);
+        NearbySwapMoveIteratorFactory factory = new NearbySwapMoveIteratorFactory();
+
+        List<MultiChangeMove> moves = MoveFactories.originalMoves(factory, scoreDirector);
+
+        assertEquals(6 * 5, factory.getSize(scoreDirector));
+        assertEquals(6 * 4, moves.size());
+        for (MultiChangeMove move : moves) {
+            List<StudentGroupAssignment> groups = new ArrayList<>(move.getPlanningEntities());
+            assertEquals(2, groups.size());
+            assertNotSame(groups.get(0).getStudentClass(), groups.get(1).getStudentClass());
+            assertEquals(groups.get(0).getSize(), groups.get(1).getSize());
+        }
+    }
+
+    @Test
+    void randomNearbySwapsKeepTheScoreCorrect() {
+        SolverConfig solverConfig = FullAssertSolving.solverConfig(ScoreCalculatorType.INCREMENTAL, FullAssertSolving.profile(
+                "constructionHeuristic=FIRST_FIT",
+                "changeMoveWeight=0",
+                "swapMoveWeight=0",
+                "classRotationMoveWeight=0",
+                "nearbyChangeMoveWeight=0"), 300);
+        FullAssertSolving.solve(solverConfig, RandomCohorts.unassigned(1, 60, 4, RandomCohorts.constraints(10, 20)));
+    }
+
+    @Test
+    void originalOrderNearbySwapsKeepTheScoreCorrect() {
+        SolverConfig solverConfig = MoveFactories.selectingInOriginalOrder(
+                FullAssertSolving.solverConfig(ScoreCalculatorType.INCREMENTAL,
+                        FullAssertSolving.profile("constructionHeuristic=FIRST_FIT"), 10),
+                NearbySwapMoveIteratorFactory.class);
+        FullAssertSolving.solve(solverConfig, RandomCohorts.unassigned(2, 40, 3, RandomCohorts.constraints(10, 16)));
+    }
+}
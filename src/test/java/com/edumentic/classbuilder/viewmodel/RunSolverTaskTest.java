@@ -0,0 +1,42 @@
+package com.edumentic.classbuilder.viewmodel;
+
+import com.edumentic.classbuilder.solution.ClassBuilderSolution;
+import com.edumentic.classbuilder.solution.FullAssertSolving;
+import com.edumentic.classbuilder.solution.RandomCohorts;
+import com.edumentic.classbuilder.solution.StudentGroupAssignment;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RunSolverTaskTest {
+
+    @Test
+    void keepsTheBestSolutionEvenWhenItIsHeldBack() throws Exception {
+        List<ClassBuilderSolution> published = Collections.synchronizedList(new ArrayList<>());
+        RunSolverTask task = new RunSolverTask(event -> published.add(event.getNewBestSolution()),
+                RandomCohorts.unassigned(1, 60, 3, RandomCohorts.constraints(15, 25)));
+        task.setSolverProfile(FullAssertSolving.profile("secondsSpentLimit=1"));
+        // Holds back most best solutions, so the published ones lag the solve
+        task.setMaxBestSolutionsPerSecond(1);
+
+        assertNull(task.getBestSolution());
+        task.call();
+
+        ClassBuilderSolution best = task.getBestSolution();
+        assertNotNull(best);
+        assertFalse(published.isEmpty());
+        for (ClassBuilderSolution solution : published) {
+            assertTrue(best.getScore().compareTo(solution.getScore()) >= 0);
+        }
+        for (StudentGroupAssignment group : best.getGroupAssignments()) {
+            assertNotNull(group.getStudentClass());
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.edumentic.classbuilder.viewmodel;
+
+import com.edumentic.classbuilder.solution.ClassBuilderSolution;
+import com.edumentic.classbuilder.solution.FullAssertSolving;
+import com.edumentic.classbuilder.solution.RandomCohorts;
+import com.edumentic.classbuilder.solution.ScoreCalculatorType;
+import com.edumentic.classbuilder.solution.SolverConfigs;
+import com.edumentic.classbuilder.solution.StudentGroupAssignment;
+import org.junit.jupiter.api.Test;
+import org.optaplanner.core.api.score.director.ScoreDirector;
+import org.optaplanner.core.api.solver.Solver;
+import org.optaplanner.core.api.solver.SolverFactory;
+import org.optaplanner.core.config.phase.custom.CustomPhaseConfig;
+import org.optaplanner.core.config.solver.SolverConfig;
+import org.optaplanner.core.impl.phase.custom.CustomPhaseCommand;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+class SolverPortfolioTest {
+
+    @Test
+    void solvesWithEverySolverInFullAssert() throws Exception {
+        SolverConfig solverConfig = FullAssertSolving.solverConfig(ScoreCalculatorType.INCREMENTAL,
+                FullAssertSolving.profile("constructionHeuristic=FIRST_FIT"), 200);
+        List<Solver<ClassBuilderSolution>> solvers = List.of(buildSolver(solverConfig), buildSolver(solverConfig));
+        List<ClassBuilderSolution> published = Collections.synchronizedList(new ArrayList<>());
+
+        new SolverPortfolio(solvers, event -> published.add(event.getNewBestSolution()))
+                .solve(RandomCohorts.unassigned(1, 60, 3, RandomCohorts.constraints(15, 25)));
+
+        assertFalse(published.isEmpty());
+        for (int i = 1; i < published.size(); i++) {
+            assertEquals(1, published.get(i).getScore().compareTo(published.get(i - 1).getScore()));
+        }
+        FullAssertSolving.assertScoreIsRecalculated(published.getLast());
+    }
+
+    @Test
+    void aFailingSolverStopsTheOthers() {
+        // The profile has no termination, so the second solver only ever stops when told to
+        Solver<ClassBuilderSolution> endless = buildSolver(SolverConfigs.create(ScoreCalculatorType.INCREMENTAL,
+                SolverConfig.MOVE_THREAD_COUNT_NONE, FullAssertSolving.profile("constructionHeuristic=FIRST_FIT")));
+        Solver<ClassBuilderSolution> failing = buildSolver(SolverConfigs.create(ScoreCalculatorType.INCREMENTAL,
+                        SolverConfig.MOVE_THREAD_COUNT_NONE, null)
+                .withPhases(new CustomPhaseConfig().withCustomPhaseCommandClassList(List.of(FailingPhaseCommand.class))));
+        SolverPortfolio portfolio = new SolverPortfolio(List.of(endless, failing), event -> {});
+
+        assertTimeoutPreemptively(Duration.ofSeconds(30), () -> assertThrows(ExecutionException.class, () ->
+                portfolio.solve(RandomCohorts.unassigned(1, 60, 3, RandomCohorts.constraints(15, 25)))));
+        assertFalse(endless.isSolving());
+    }
+
+    @Test
+    void adoptMatchesGroupsByIdNotByPosition() {
+        ClassBuilderSolution problem = RandomCohorts.unassigned(2, 40, 4, RandomCohorts.constraints(5, 15));
+        // The solution to adopt: every group in a random class, listed in another order
+        ClassBuilderSolution adopted = problem.copy();
+        Random random = new Random(0);
+        for (StudentGroupAssignment group : adopted.getGroupAssignments()) {
+            group.setStudentClass(adopted.getStudentClasses().get(random.nextInt(adopted.getStudentClasses().size())));
+        }
+        List<StudentGroupAssignment> shuffled = new ArrayList<>(adopted.getGroupAssignments());
+        Collections.shuffle(shuffled, random);
+        adopted.setGroupAssignments(shuffled);
+
+        // Adopted at the first best solution, and with no local search steps after it, the last best solution
+        SolverConfig solverConfig = FullAssertSolving.solverConfig(ScoreCalculatorType.INCREMENTAL,
+                FullAssertSolving.profile("constructionHeuristic=FIRST_FIT"), 0);
+        Solver<ClassBuilderSolution> solver = buildSolver(solverConfig);
+        AtomicBoolean changed = new AtomicBoolean();
+        solver.addEventListener(event -> {
+            if (changed.compareAndSet(false, true)) {
+                solver.addProblemChange(SolverPortfolio.adopt(adopted));
+            }
+        });
+        ClassBuilderSolution best = solver.solve(problem);
+
+        Map<Long, StudentGroupAssignment> adoptedById = adopted.getGroupAssignments().stream()
+                .collect(Collectors.toMap(StudentGroupAssignment::getId, Function.identity()));
+        for (StudentGroupAssignment group : best.getGroupAssignments()) {
+            assertEquals(adoptedById.get(group.getId()).getStudentClass().getId(), group.getStudentClass().getId());
+            group.getMembers().forEach(member -> assertSame(group.getStudentClass(), member.getStudentClass()));
+        }
+        FullAssertSolving.assertScoreIsRecalculated(best);
+    }
+
+    private static Solver<ClassBuilderSolution> buildSolver(SolverConfig solverConfig) {
+        return SolverFactory.<ClassBuilderSolution>create(solverConfig).buildSolver();
+    }
+
+    public static class FailingPhaseCommand implements CustomPhaseCommand<ClassBuilderSolution> {
+        @Override
+        public void changeWorkingSolution(ScoreDirector<ClassBuilderSolution> scoreDirector) {
+            throw new IllegalStateException("Failing on purpose");
+        }
+    }
+}